@@ -0,0 +1,11 @@
+CREATE TABLE `worker_result_history` (
+  `id` int(10) unsigned NOT NULL AUTO_INCREMENT,
+  `worker_id` varchar(256) NOT NULL,
+  `worker_type` varchar(256) DEFAULT NULL,
+  `status` varchar(64) DEFAULT NULL,
+  `start_time` timestamp NULL DEFAULT NULL,
+  `end_time` timestamp NULL DEFAULT NULL,
+  `created_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `query_worker_id` (`worker_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
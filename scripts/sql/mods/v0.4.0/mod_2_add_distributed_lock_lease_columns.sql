@@ -0,0 +1,3 @@
+ALTER TABLE `distributed_lock`
+  ADD COLUMN `lease_owner` varchar(256) NULL DEFAULT NULL,
+  ADD COLUMN `lease_expires_at` timestamp NULL DEFAULT NULL;
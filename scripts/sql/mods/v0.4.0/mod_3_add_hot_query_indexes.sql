@@ -0,0 +1,22 @@
+-- Composite indexes for the access patterns of the DAO layer
+
+-- DmQueueDaoImpl: available requests by status in priority order, pending requests by name
+ALTER TABLE `dm_queue`
+  ADD INDEX `dm_queue_status_priority` (`status`, `priority`, `number_of_retry`, `created_at`),
+  ADD INDEX `dm_queue_storage_name_status` (`data_storage_name`, `status`);
+
+-- RetentionRuleDaoImpl: active rules of a type by project, rules by data storage root
+ALTER TABLE `retention_rule`
+  ADD INDEX `retention_rule_project_type_active` (`project_id`, `type`, `is_active`),
+  ADD INDEX `retention_rule_storage_root` (`data_storage_root`, `project_id`, `type`);
+
+-- PooledStsJobDaoImpl: pooled jobs of a bucket and type in schedule order
+ALTER TABLE `pooled_sts_job`
+  ADD INDEX `query_project_bucket_type_schedule`
+    (`source_bucket`, `source_project`, `type`, `schedule`),
+  DROP INDEX `query_project_bucket`;
+
+-- RetentionJobDaoImpl: latest default or global job of a data storage
+ALTER TABLE `retention_job`
+  ADD INDEX `retention_job_storage_name_type_created`
+    (`retention_rule_data_storage_name`, `retention_rule_type`, `created_at`);
@@ -0,0 +1,4 @@
+ALTER TABLE `dm_queue`
+  ADD COLUMN `claim_owner` varchar(256) NULL DEFAULT NULL,
+  ADD COLUMN `claim_expires_at` timestamp NULL DEFAULT NULL,
+  ADD INDEX `dm_queue_storage_root` (`data_storage_root`);
@@ -0,0 +1,2 @@
+ALTER TABLE `distributed_lock`
+  ADD COLUMN `fencing_token` bigint(20) unsigned NOT NULL DEFAULT 0;
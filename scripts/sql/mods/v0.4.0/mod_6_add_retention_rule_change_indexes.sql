@@ -0,0 +1,4 @@
+-- RetentionRuleDaoImpl: rules created or updated since the high-water mark of the rule index
+ALTER TABLE `retention_rule`
+  ADD INDEX `retention_rule_updated_at` (`updated_at`),
+  ADD INDEX `retention_rule_created_at` (`created_at`);
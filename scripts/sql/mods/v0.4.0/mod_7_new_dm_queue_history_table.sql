@@ -0,0 +1,14 @@
+-- Compact history of the successful DM requests removed from dm_queue by the cleanup task
+CREATE TABLE `dm_queue_history` (
+  `id` bigint(20) unsigned NOT NULL AUTO_INCREMENT,
+  `dm_queue_id` int(10) unsigned NOT NULL,
+  `data_storage_name` varchar(256) NOT NULL,
+  `data_storage_root` varchar(256) NOT NULL,
+  `retention_job_id` int(10) unsigned,
+  `number_of_retry` int(10) NOT NULL DEFAULT 0,
+  `created_at` timestamp NULL DEFAULT NULL,
+  `completed_at` timestamp NULL DEFAULT NULL,
+  `archived_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `dm_queue_history_storage_root` (`data_storage_root`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
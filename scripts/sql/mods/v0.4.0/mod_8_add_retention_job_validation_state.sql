@@ -0,0 +1,13 @@
+-- Tracks whether a retention job still needs validation, so the validation worker reads only the
+-- jobs that are not settled yet instead of joining every job with its validations
+ALTER TABLE `retention_job`
+  ADD COLUMN `validation_state` enum('pending','done') NOT NULL DEFAULT 'pending',
+  ADD INDEX `retention_job_validation_state` (`validation_state`);
+
+-- A job is done once it has validations and none of them is pending
+UPDATE `retention_job` j SET j.`validation_state` = 'done'
+  WHERE EXISTS (
+      SELECT 1 FROM `retention_job_validation` v WHERE v.`retention_job_id` = j.`id`)
+    AND NOT EXISTS (
+      SELECT 1 FROM `retention_job_validation` v
+      WHERE v.`retention_job_id` = j.`id` AND v.`status` = 'pending');
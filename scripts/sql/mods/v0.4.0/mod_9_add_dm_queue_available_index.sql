@@ -0,0 +1,9 @@
+-- DmQueueDaoImpl.getAvailableRequestsPage reads the available (pending or retry) requests in
+-- priority order. dm_queue_status_priority can filter them but not order them, as status is
+-- matched against two values and the order mixes descending and ascending columns. The derived
+-- available column turns the filter into one equality, so the index below returns the rows in
+-- page order and the page query stops after pageSize rows. Descending index parts need MySQL 8.0.
+ALTER TABLE `dm_queue`
+  ADD COLUMN `available` tinyint(1) AS (`status` IN ('pending', 'retry')) VIRTUAL,
+  ADD INDEX `dm_queue_available_priority`
+    (`available`, `priority` DESC, `number_of_retry` DESC, `created_at`, `id`);
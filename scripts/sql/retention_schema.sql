@@ -33,7 +33,11 @@ CREATE TABLE retention_rule (
   `metadata` text NULL,
   UNIQUE KEY `unique_storage_project_type` (`data_storage_name`, `project_id`, `type`),
   INDEX `retention_rule_dataset_name` (`dataset_name`),
-  INDEX `retention_rule_is_active` (`is_active`)
+  INDEX `retention_rule_is_active` (`is_active`),
+  INDEX `retention_rule_project_type_active` (`project_id`, `type`, `is_active`),
+  INDEX `retention_rule_storage_root` (`data_storage_root`, `project_id`, `type`),
+  INDEX `retention_rule_updated_at` (`updated_at`),
+  INDEX `retention_rule_created_at` (`created_at`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 CREATE TABLE retention_rule_history (
@@ -68,8 +72,12 @@ CREATE TABLE retention_job (
   `batch_id` varchar(256) DEFAULT NULL,
   `metadata` text,
   `data_storage_root` varchar(256) DEFAULT NULL,
+  `validation_state` enum('pending','done') NOT NULL DEFAULT 'pending',
   FOREIGN KEY (retention_rule_id) REFERENCES retention_rule(id),
-  INDEX `retention_job_name` (`name`)
+  INDEX `retention_job_name` (`name`),
+  INDEX `retention_job_validation_state` (`validation_state`),
+  INDEX `retention_job_storage_name_type_created`
+    (`retention_rule_data_storage_name`, `retention_rule_type`, `created_at`)
 )ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 CREATE TABLE retention_job_validation (
@@ -102,7 +110,7 @@ CREATE TABLE `pooled_sts_job` (
   `status` varchar(256) DEFAULT NULL,
   PRIMARY KEY (`id`),
   UNIQUE KEY `unique_sts_job_name` (`project_id`,`name`),
-  KEY `query_project_bucket` (`source_bucket`,`source_project`)
+  KEY `query_project_bucket_type_schedule` (`source_bucket`,`source_project`,`type`,`schedule`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 
@@ -116,7 +124,29 @@ CREATE TABLE `dm_queue` (
   `data_storage_root` varchar(256) NOT NULL,
   `retention_job_id` int(10) unsigned,
   `number_of_retry` int(10) NOT NULL DEFAULT 0,
-  PRIMARY KEY (`id`)
+  `claim_owner` varchar(256) NULL DEFAULT NULL,
+  `claim_expires_at` timestamp NULL DEFAULT NULL,
+  `available` tinyint(1) AS (`status` IN ('pending', 'retry')) VIRTUAL,
+  PRIMARY KEY (`id`),
+  KEY `dm_queue_status_priority` (`status`,`priority`,`number_of_retry`,`created_at`),
+  KEY `dm_queue_available_priority`
+    (`available`,`priority` DESC,`number_of_retry` DESC,`created_at`,`id`),
+  KEY `dm_queue_storage_name_status` (`data_storage_name`,`status`),
+  KEY `dm_queue_storage_root` (`data_storage_root`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE `dm_queue_history` (
+  `id` bigint(20) unsigned NOT NULL AUTO_INCREMENT,
+  `dm_queue_id` int(10) unsigned NOT NULL,
+  `data_storage_name` varchar(256) NOT NULL,
+  `data_storage_root` varchar(256) NOT NULL,
+  `retention_job_id` int(10) unsigned,
+  `number_of_retry` int(10) NOT NULL DEFAULT 0,
+  `created_at` timestamp NULL DEFAULT NULL,
+  `completed_at` timestamp NULL DEFAULT NULL,
+  `archived_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `dm_queue_history_storage_root` (`data_storage_root`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 CREATE TABLE `distributed_lock` (
@@ -124,9 +154,24 @@ CREATE TABLE `distributed_lock` (
   `lock_token` varchar(256) NOT NULL,
   `lock_duration` int(10) NOT NULL,
   `created_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `lease_owner` varchar(256) NULL DEFAULT NULL,
+  `lease_expires_at` timestamp NULL DEFAULT NULL,
+  `fencing_token` bigint(20) unsigned NOT NULL DEFAULT 0,
   PRIMARY KEY (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
+CREATE TABLE `worker_result_history` (
+  `id` int(10) unsigned NOT NULL AUTO_INCREMENT,
+  `worker_id` varchar(256) NOT NULL,
+  `worker_type` varchar(256) DEFAULT NULL,
+  `status` varchar(64) DEFAULT NULL,
+  `start_time` timestamp NULL DEFAULT NULL,
+  `end_time` timestamp NULL DEFAULT NULL,
+  `created_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `query_worker_id` (`worker_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
 
 -- TRIGGER SCRIPTS
 -- ------------------------------------------------------
@@ -18,17 +18,19 @@
 
 package com.google.gcs.sdrs;
 
-import com.google.gcs.sdrs.dao.LockDao;
+import com.google.gcs.sdrs.dao.BaseDao;
+import com.google.gcs.sdrs.dao.RetentionRuleDao;
+import com.google.gcs.sdrs.dao.SchemaVerifier;
 import com.google.gcs.sdrs.dao.SingletonDao;
-import com.google.gcs.sdrs.dao.impl.RetentionRuleDaoImpl;
-import com.google.gcs.sdrs.dao.model.DistributedLock;
 import com.google.gcs.sdrs.scheduler.JobScheduler;
+import com.google.gcs.sdrs.scheduler.LeaderElection;
 import com.google.gcs.sdrs.scheduler.runners.DmBatchProcessingRunner;
 import com.google.gcs.sdrs.scheduler.runners.DmQueueCleanupRunner;
+import com.google.gcs.sdrs.scheduler.runners.LeaderOnlyRunner;
 import com.google.gcs.sdrs.service.mq.PubSubMessageQueueManagerImpl;
-import com.google.gcs.sdrs.service.worker.impl.DmBatchProcessingWorker;
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.LogManager;
 import javax.ws.rs.core.UriBuilder;
@@ -75,7 +77,7 @@ public class SdrsApplication {
     startWebServer();
     registerPubSub();
     connectDatabase();
-    initDmDistributedLock();
+    LeaderElection.getInstance().start();
     scheduleDmProcessingRunner();
     scheduleDmQueueCleanupRunner();
   }
@@ -122,24 +124,6 @@ public class SdrsApplication {
     }
   }
 
-  private static void initDmDistributedLock() {
-    LockDao daoDao = SingletonDao.getLockDao();
-    DistributedLock distributedLock = daoDao.initLock(DmBatchProcessingWorker.DM_LOCK_ID);
-    if (distributedLock == null) {
-      logger.error(
-          String.format(
-              "Failed to initialize distributed lock for DM batch processing %s",
-              DmBatchProcessingWorker.DM_LOCK_ID));
-    } else {
-      logger.info(
-          String.format(
-              "DM batch processing lock has been initialized:  tokenName=%s, duration=%d, createdAt=%s",
-              distributedLock.getLockToken(),
-              distributedLock.getLockDuration(),
-              distributedLock.getCreatedAt().toInstant().toString()));
-    }
-  }
-
   private static void scheduleDmQueueCleanupRunner() {
     JobScheduler scheduler = JobScheduler.getInstance();
 
@@ -159,7 +143,11 @@ public class SdrsApplication {
                 "scheduler.task.dmQueueCleanup.timeUnit",
                 DEFAULT_DM_CLEANUP_RUNNER_TIMEUNIT.name()));
 
-    scheduler.submitScheduledJob(new DmQueueCleanupRunner(), initialDelay, frequency, timeUnit);
+    scheduler.submitScheduledJob(
+        new LeaderOnlyRunner(new DmQueueCleanupRunner(), LeaderElection.getInstance()),
+        initialDelay,
+        frequency,
+        timeUnit);
     logger.info("DM queue cleanup runner scheduled successfully.");
   }
 
@@ -182,7 +170,11 @@ public class SdrsApplication {
                 "scheduler.task.dmBatchProcessing.timeUnit",
                 DEFAULT_DM_BATCH_RUNNER_TIMEUNIT.name()));
 
-    scheduler.submitScheduledJob(new DmBatchProcessingRunner(), initialDelay, frequency, timeUnit);
+    scheduler.submitScheduledJob(
+        new DmBatchProcessingRunner(),
+        initialDelay,
+        frequency,
+        timeUnit);
     logger.info("DM batch processing runner scheduled successfully.");
   }
 
@@ -233,12 +225,35 @@ public class SdrsApplication {
   }
 
   private static void connectDatabase() {
-    RetentionRuleDaoImpl retentionRuleDao = new RetentionRuleDaoImpl();
+    // also loads the rule index of the shared DAO
+    RetentionRuleDao retentionRuleDao = SingletonDao.getRetentionRuleDao();
     retentionRuleDao.findGlobalRuleByProjectId("");
-    if (retentionRuleDao.isSessionFactoryAvailable()) {
+    if (BaseDao.isSessionFactoryAvailable()) {
       logger.info("Database is connected");
+      verifyDatabaseSchema();
     } else {
       logger.error("Failed to connect to database");
     }
   }
+
+  /**
+   * Exits when the database lacks a migration SDRS depends on, as the DM queue and the validation
+   * service would silently find no work.
+   */
+  private static void verifyDatabaseSchema() {
+    List<String> problems;
+    try {
+      problems = SchemaVerifier.verify();
+    } catch (RuntimeException ex) {
+      logger.error("Failed to verify the database schema.", ex);
+      return;
+    }
+    if (!problems.isEmpty()) {
+      for (String problem : problems) {
+        logger.error(problem);
+      }
+      logger.error("The database schema is out of date, shutting down.");
+      System.exit(1);
+    }
+  }
 }
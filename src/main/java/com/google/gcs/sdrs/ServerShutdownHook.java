@@ -21,6 +21,7 @@ package com.google.gcs.sdrs;
 import com.google.gcs.sdrs.service.manager.JobManager;
 import com.google.gcs.sdrs.service.mq.PubSubMessageQueueManagerImpl;
 import com.google.gcs.sdrs.scheduler.JobScheduler;
+import com.google.gcs.sdrs.scheduler.LeaderElection;
 import java.util.concurrent.TimeUnit;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.slf4j.Logger;
@@ -52,6 +53,9 @@ public class ServerShutdownHook implements Runnable {
   public void run() {
     logger.info("Running shutdown hook...");
 
+    // Hand the scheduled runners over to another instance before draining work
+    LeaderElection.getInstance().resign();
+
     logger.info("Shutting down Job Manager...");
     jobManager = JobManager.getInstance();
     if (isImmediateShutdown) {
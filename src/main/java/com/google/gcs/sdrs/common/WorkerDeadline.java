@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.common;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The time limit of a running worker. The JobManager binds the deadline to the worker thread, and
+ * workers carry it to the threads they fan out to, so STS, GCS and database calls made on behalf of
+ * the worker can bound their own timeouts by the time left.
+ */
+public final class WorkerDeadline {
+
+  private static final ThreadLocal<WorkerDeadline> current = new ThreadLocal<>();
+
+  private final long timeoutMillis;
+  private volatile long expiresAtMillis = Long.MAX_VALUE;
+  private volatile boolean expired;
+
+  /**
+   * Constructor for a deadline that starts counting once {@link #start()} is called
+   *
+   * @param timeoutMillis how long the worker may run
+   */
+  public WorkerDeadline(long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /** Gets the deadline bound to the current thread, or null if the thread has none */
+  public static WorkerDeadline current() {
+    return current.get();
+  }
+
+  /**
+   * Limits a timeout by the time left before the deadline of the current thread.
+   *
+   * @param timeoutMillis the timeout to apply when there is no deadline
+   * @return the smaller of the timeout and the time left, never below 1 ms as 0 means no timeout
+   */
+  public static int limitTimeout(int timeoutMillis) {
+    WorkerDeadline deadline = current();
+    if (deadline == null) {
+      return timeoutMillis;
+    }
+    return (int) Math.max(1, Math.min(timeoutMillis, deadline.getRemainingMillis()));
+  }
+
+  /** Starts the countdown. Called when the worker starts running rather than when it is queued */
+  public void start() {
+    expiresAtMillis = System.currentTimeMillis() + timeoutMillis;
+  }
+
+  /** Marks the deadline as passed, regardless of the time left */
+  public void expire() {
+    expired = true;
+  }
+
+  public boolean isExpired() {
+    return expired || System.currentTimeMillis() >= expiresAtMillis;
+  }
+
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  /** Gets the time left before the deadline, or the full timeout if it has not started */
+  public long getRemainingMillis() {
+    if (expired) {
+      return 0;
+    }
+    if (expiresAtMillis == Long.MAX_VALUE) {
+      return timeoutMillis;
+    }
+    return Math.max(0, expiresAtMillis - System.currentTimeMillis());
+  }
+
+  /**
+   * Wraps a task so it runs with this deadline bound to its thread
+   *
+   * @param task the task to wrap
+   * @return a Callable that binds and restores the deadline around the task
+   */
+  public <T> Callable<T> bind(Callable<T> task) {
+    return () -> {
+      WorkerDeadline previous = current.get();
+      current.set(this);
+      try {
+        return task.call();
+      } finally {
+        restore(previous);
+      }
+    };
+  }
+
+  /**
+   * Wraps a task so it runs with this deadline bound to its thread
+   *
+   * @param task the task to wrap
+   * @return a Runnable that binds and restores the deadline around the task
+   */
+  public Runnable bind(Runnable task) {
+    return () -> {
+      WorkerDeadline previous = current.get();
+      current.set(this);
+      try {
+        task.run();
+      } finally {
+        restore(previous);
+      }
+    };
+  }
+
+  private static void restore(WorkerDeadline previous) {
+    if (previous == null) {
+      current.remove();
+    } else {
+      current.set(previous);
+    }
+  }
+}
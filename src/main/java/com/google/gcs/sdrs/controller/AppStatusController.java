@@ -19,7 +19,11 @@
 package com.google.gcs.sdrs.controller;
 
 import com.google.gcs.sdrs.dao.BaseDao;
+import com.google.gcs.sdrs.service.manager.Bulkhead;
+import com.google.gcs.sdrs.service.manager.JobManager;
 import com.google.gcs.sdrs.service.mq.PubSubMessageQueueManagerImpl;
+import com.google.gcs.sdrs.util.ClientRegistry;
+import com.google.gcs.sdrs.util.StsRateLimiter;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -55,6 +59,48 @@ public class AppStatusController extends BaseController{
       builder.append("PubSub is DOWN\n");
       logger.error("PubSub topic unreachable ...");
     }
+
+    JobManager jobManager = JobManager.getInstance();
+    builder.append(
+        String.format(
+            "JobManager queue depth: %d/%d, rejected jobs: %d, coalesced jobs: %d\n",
+            jobManager.getQueueDepth(),
+            jobManager.getQueueCapacity(),
+            jobManager.getRejectedJobCount(),
+            jobManager.getCoalescedJobCount()));
+    for (Bulkhead bulkhead : jobManager.getBulkheads()) {
+      builder.append(
+          String.format(
+              "Bulkhead %s: %d/%d threads busy (%.0f%% utilization), queue depth: %d/%d, "
+                  + "completed jobs: %d, rejected jobs: %d, timed out jobs: %d\n",
+              bulkhead.getType().getConfigName(),
+              bulkhead.getActiveCount(),
+              bulkhead.getThreadPoolSize(),
+              bulkhead.getUtilization() * 100,
+              bulkhead.getQueueDepth(),
+              bulkhead.getQueueCapacity(),
+              bulkhead.getCompletedJobCount(),
+              bulkhead.getRejectedJobCount(),
+              bulkhead.getTimedOutJobCount()));
+    }
+    ClientRegistry clientRegistry = ClientRegistry.getInstance();
+    builder.append(
+        String.format(
+            "Google API requests: %d, connections opened: %d (%.0f%% reuse), "
+                + "token refreshes: %d (avg %d ms, max %d ms)\n",
+            clientRegistry.getRequestCount(),
+            clientRegistry.getConnectionCount(),
+            clientRegistry.getConnectionReuseRatio() * 100,
+            clientRegistry.getTokenRefreshCount(),
+            clientRegistry.getAverageTokenRefreshMillis(),
+            clientRegistry.getMaxTokenRefreshMillis()));
+    StsRateLimiter stsRateLimiter = StsRateLimiter.getInstance();
+    builder.append(
+        String.format(
+            "STS concurrency limit: %d, calls in flight: %d, calls waiting: %d\n",
+            stsRateLimiter.getConcurrencyLimit(),
+            stsRateLimiter.getInFlight(),
+            stsRateLimiter.getWaiting()));
     return builder.toString();
   }
 
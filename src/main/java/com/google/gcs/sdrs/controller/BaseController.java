@@ -22,11 +22,13 @@ import com.google.gcs.sdrs.controller.filter.ContainerContextProperties;
 import com.google.gcs.sdrs.controller.filter.UserInfo;
 import com.google.gcs.sdrs.controller.pojo.BaseHttpResponse;
 import com.google.gcs.sdrs.controller.pojo.ErrorResponse;
+import com.google.gcs.sdrs.service.manager.JobQueueFullException;
 import java.io.IOException;
 import java.sql.SQLException;
 import javax.persistence.EntityNotFoundException;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import org.glassfish.grizzly.http.util.HttpStatus;
 import org.slf4j.Logger;
@@ -43,7 +45,13 @@ public abstract class BaseController {
     ErrorResponse errorResponse = new ErrorResponse();
     errorResponse.setMessage(exception.getMessage());
 
-    return Response.status(exception.getStatusCode()).entity(errorResponse).build();
+    Response.ResponseBuilder builder =
+        Response.status(exception.getStatusCode()).entity(errorResponse);
+    if (exception instanceof TooManyRequestsException) {
+      builder.header(
+          HttpHeaders.RETRY_AFTER, ((TooManyRequestsException) exception).getRetryAfterSeconds());
+    }
+    return builder.build();
   }
 
   protected UserInfo getUserInfo() {
@@ -80,6 +88,11 @@ public abstract class BaseController {
       outgoingException = new PersistenceException(exception);
     } else if (exception instanceof IOException) {
       outgoingException = new ServiceLayerException(exception);
+    } else if (exception instanceof JobQueueFullException) {
+      outgoingException =
+          new TooManyRequestsException(
+              "Too many requests in progress. Retry later.",
+              ((JobQueueFullException) exception).getRetryAfterSeconds());
     } else if (exception instanceof EntityNotFoundException) {
       outgoingException = new NotFoundException(exception.getMessage());
     } else if (exception instanceof HttpException) {
@@ -18,6 +18,7 @@
 package com.google.gcs.sdrs.controller;
 
 import com.google.gcs.sdrs.controller.pojo.EventResponse;
+import com.google.gcs.sdrs.controller.pojo.EventStatusResponse;
 import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
 import com.google.gcs.sdrs.controller.pojo.NotificationEventRequest;
 import com.google.gcs.sdrs.controller.validation.FieldValidations;
@@ -35,8 +36,10 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -57,7 +60,8 @@ public class EventsController extends BaseController {
       validateExecutionEvent(request);
       EventResponse eventResponse =
           generateResponse("Execution event received and being processed");
-      service.processExecutionEvent(request, getCorrelationId());
+      String runCorrelationId = service.processExecutionEvent(request, getCorrelationId());
+      attachToRun(eventResponse, runCorrelationId);
       return successResponse(eventResponse);
     } catch (Exception exception) {
       return errorResponse(exception);
@@ -72,7 +76,8 @@ public class EventsController extends BaseController {
     try {
       EventResponse eventResponse =
           generateResponse("Validation event received and being processed");
-      service.processValidationEvent(getCorrelationId());
+      String runCorrelationId = service.processValidationEvent(getCorrelationId());
+      attachToRun(eventResponse, runCorrelationId);
       return successResponse(eventResponse);
     } catch (Exception exception) {
       return errorResponse(exception);
@@ -95,6 +100,23 @@ public class EventsController extends BaseController {
     }
   }
 
+  /** Gets the status and duration of the run started by the request with the correlation id */
+  @GET
+  @Path("/{correlationId}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getEventStatus(@PathParam("correlationId") String correlationId) {
+    try {
+      EventStatusResponse response = service.getEventStatus(correlationId);
+      if (response == null) {
+        throw new ResourceNotFoundException(
+            String.format("No run found for correlation id %s", correlationId));
+      }
+      return successResponse(response);
+    } catch (Exception exception) {
+      return errorResponse(exception);
+    }
+  }
+
   /**
    * Runs validation checks against the "Execution" event request type
    *
@@ -163,6 +185,20 @@ public class EventsController extends BaseController {
     return response;
   }
 
+  /**
+   * Reports the run handling the event. When the event was coalesced into a run started by an
+   * earlier request, the message says so and points at that run's correlation id.
+   */
+  private void attachToRun(EventResponse response, String runCorrelationId) {
+    response.setCorrelationId(runCorrelationId);
+    if (runCorrelationId != null && !runCorrelationId.equals(getCorrelationId())) {
+      response.setMessage(
+          String.format(
+              "An identical event is already being processed. Track it with correlation id %s",
+              runCorrelationId));
+    }
+  }
+
   private Collection<ValidationResult> validateUserCommandedExecutionEvent(
       String target, String projectId) {
     Collection<ValidationResult> validations = new HashSet<>();
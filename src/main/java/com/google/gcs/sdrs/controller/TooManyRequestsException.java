@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.controller;
+
+import javax.ws.rs.core.Response;
+
+/** Exception thrown when the service is too busy to accept a request. */
+public class TooManyRequestsException extends HttpException {
+
+  private final String message;
+  private final int retryAfterSeconds;
+
+  /**
+   * An exception type for rejected requests
+   *
+   * @param message the message to return
+   * @param retryAfterSeconds the value of the Retry-After response header
+   */
+  public TooManyRequestsException(String message, int retryAfterSeconds) {
+    this.message = message;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Gets the message to return
+   *
+   * @return the exception message
+   */
+  @Override
+  public String getMessage() {
+    return message;
+  }
+
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  /** Gets the rejection HTTP status code */
+  @Override
+  public int getStatusCode() {
+    return Response.Status.TOO_MANY_REQUESTS.getStatusCode();
+  }
+}
@@ -20,6 +20,7 @@ package com.google.gcs.sdrs.controller.pojo;
 /** Standard response for event endpoints. */
 public class EventResponse extends BaseHttpResponse {
   private String message;
+  private String correlationId;
 
   public String getMessage() {
     return message;
@@ -28,4 +29,13 @@ public class EventResponse extends BaseHttpResponse {
   public void setMessage(String message) {
     this.message = message;
   }
+
+  /** The correlation id of the run handling the event */
+  public String getCorrelationId() {
+    return correlationId;
+  }
+
+  public void setCorrelationId(String correlationId) {
+    this.correlationId = correlationId;
+  }
 }
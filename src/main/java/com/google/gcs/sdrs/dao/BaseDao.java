@@ -17,12 +17,14 @@
 
 package com.google.gcs.sdrs.dao;
 
+import com.google.gcs.sdrs.common.WorkerDeadline;
 import com.google.gcs.sdrs.dao.model.DistributedLock;
 import com.google.gcs.sdrs.dao.model.DmRequest;
 import com.google.gcs.sdrs.dao.model.PooledStsJob;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
 import com.google.gcs.sdrs.dao.model.RetentionRule;
+import com.google.gcs.sdrs.dao.model.WorkerResultHistory;
 import java.io.Serializable;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
@@ -51,6 +53,11 @@ public abstract class BaseDao<T, Id extends Serializable> implements Dao<T, Id>
   private static final String HIBERNATE_CONNECTION_PASSWORD_ENV = "HIBERNATE_CONNECTION_PASSWORD";
   private static final String HIBERNATE_CONNECTION_PASSWORD_PROPERTY_KEY =
       "hibernate.connection.password";
+  // JPA query timeout in milliseconds, applied by Hibernate to the queries of a session
+  private static final String QUERY_TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+  /** The number of statements sent in one JDBC batch, same as hibernate.jdbc.batch_size */
+  protected static final int JDBC_BATCH_SIZE = 50;
 
   private static StandardServiceRegistry registry;
   private static SessionFactory sessionFactory;
@@ -63,11 +70,44 @@ public abstract class BaseDao<T, Id extends Serializable> implements Dao<T, Id>
     this.type = type;
   }
 
+  /**
+   * Opens a session for a DAO call. Inside a unit of work the call joins the session of the unit.
+   */
   protected Session openSession() {
-    return getSessionFactory().openSession();
+    UnitOfWork unit = UnitOfWork.current();
+    if (unit != null) {
+      return unit.getSession(this::openNewSession);
+    }
+    return openNewSession();
+  }
+
+  private Session openNewSession() {
+    Session session = getSessionFactory().openSession();
+    WorkerDeadline deadline = WorkerDeadline.current();
+    if (deadline != null) {
+      // queries made for a worker with a deadline are cancelled by the driver once it passes
+      session.setProperty(QUERY_TIMEOUT_HINT, (int) Math.max(1, deadline.getRemainingMillis()));
+    }
+    return session;
+  }
+
+  /**
+   * Begins the transaction of a DAO call. Inside a unit of work the call joins the transaction of
+   * the unit, which commits when the unit completes.
+   */
+  protected Transaction beginTransaction(Session session) {
+    UnitOfWork unit = UnitOfWork.current();
+    if (unit != null && unit.owns(session)) {
+      return unit.getTransaction();
+    }
+    return session.beginTransaction();
   }
 
   protected void closeSession(Session session) {
+    UnitOfWork unit = UnitOfWork.current();
+    if (unit != null && unit.owns(session)) {
+      return;
+    }
     try {
       if (session != null && session.isOpen()) {
         session.close();
@@ -78,6 +118,10 @@ public abstract class BaseDao<T, Id extends Serializable> implements Dao<T, Id>
   }
 
   protected void closeSessionWithTransaction(Session session, Transaction transaction) {
+    UnitOfWork unit = UnitOfWork.current();
+    if (unit != null && unit.owns(session)) {
+      return;
+    }
     try {
       if (transaction != null && transaction.isActive()) {
         transaction.commit();
@@ -113,6 +157,7 @@ public abstract class BaseDao<T, Id extends Serializable> implements Dao<T, Id>
                 .addAnnotatedClass(PooledStsJob.class)
                 .addAnnotatedClass(DmRequest.class)
                 .addAnnotatedClass(DistributedLock.class)
+                .addAnnotatedClass(WorkerResultHistory.class)
                 .getMetadataBuilder()
                 .build();
 
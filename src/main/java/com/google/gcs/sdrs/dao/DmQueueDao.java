@@ -23,13 +23,52 @@ import java.util.List;
 
 public interface DmQueueDao extends Dao<DmRequest, Integer> {
 
-  List<DmRequest> getAllAvailableRequestsByPriority();
+  /**
+   * Reads one page of the PENDING and RETRY DM requests that are not claimed, or whose claim has
+   * expired, ordered by priority, number of retries, creation time and id.
+   *
+   * @param after the last DM request of the previous page, or null for the first page
+   * @param pageSize the maximum number of DM requests to return
+   */
+  List<DmRequest> getAvailableRequestsPage(DmRequest after, int pageSize);
+
+  /**
+   * Claims a batch of DM requests of one bucket for the given owner until the lease expires. Only
+   * one owner may hold claims on a bucket at a time, so nothing is claimed while another owner
+   * holds an unexpired claim on any available request of the bucket.
+   *
+   * @param dataStorageRoot the bucket of the DM requests
+   * @param dmRequests the DM requests to claim
+   * @param owner the claim owner
+   * @param leaseSeconds how long the claim lasts
+   * @return the claimed DM requests as they are in the database, in priority order. Empty if the
+   *     bucket is claimed by another owner.
+   */
+  List<DmRequest> claimRequests(
+      String dataStorageRoot, List<DmRequest> dmRequests, String owner, int leaseSeconds);
+
+  /**
+   * Releases every claim held by the given owner.
+   *
+   * @return the number of DM requests released
+   */
+  int releaseClaims(String owner);
 
   List<DmRequest> getByStatus(String status);
 
   List<DmRequest> getPendingDmRequestByName(String dataStorageName, String projectId);
 
-  int deleteSuccessfulDmRequests();
+  /**
+   * Deletes one chunk of the DM requests that were processed successfully, in a transaction of its
+   * own so the locks it takes are held briefly.
+   *
+   * @param lease the lease the cleanup runs under
+   * @param chunkSize the maximum number of DM requests to delete
+   * @param archive whether to copy the DM requests to dm_queue_history before deleting them
+   * @return the number of DM requests deleted. Less than the chunk size once none are left.
+   * @throws StaleLeaseException if the lease has passed to a newer holder
+   */
+  int deleteSuccessfulDmRequests(Lease lease, int chunkSize, boolean archive);
 
   void createRetentionJobUdpateDmStatus(RetentionJob retentionJob, List<DmRequest> dmRequests)
       throws IOException;
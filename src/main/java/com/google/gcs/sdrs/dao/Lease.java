@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+/**
+ * A lease held on a distributed lock. The fencing token increases every time the lease changes
+ * hands, so writes made under the lease can be rejected once a newer holder has taken over.
+ */
+public class Lease {
+
+  private final String lockId;
+  private final String owner;
+  private final long fencingToken;
+
+  public Lease(String lockId, String owner, long fencingToken) {
+    this.lockId = lockId;
+    this.owner = owner;
+    this.fencingToken = fencingToken;
+  }
+
+  public String getLockId() {
+    return lockId;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public long getFencingToken() {
+    return fencingToken;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s held by %s with fencing token %d", lockId, owner, fencingToken);
+  }
+}
@@ -17,17 +17,48 @@
 package com.google.gcs.sdrs.dao;
 
 import com.google.gcs.sdrs.dao.model.DistributedLock;
-import org.hibernate.Session;
 
+/**
+ * Leases on distributed_lock rows. A lease is taken and renewed with short committed updates, so
+ * no database connection or row lock is held while the lease holder works.
+ */
 public interface LockDao extends Dao<DistributedLock, Integer> {
 
-  Session getLockSession();
+  /** The fencing token returned when a lease is not acquired */
+  long NO_LEASE = -1;
 
-  void closeLockSession(Session lockSession);
+  DistributedLock initLock(String lockId);
 
-  DistributedLock obtainLock(Session session, int timeout, String lockId);
+  /**
+   * Acquires or renews the lease on a lock without waiting on a row lock. The lease is granted
+   * when it is free, expired or already held by the owner. The fencing token is incremented
+   * whenever the lease is newly granted and kept when the owner renews an unexpired lease.
+   *
+   * @param lockId the lock to lease
+   * @param owner a unique id of the lease holder
+   * @param leaseSeconds how long the lease lasts unless renewed
+   * @return the fencing token of the lease, or NO_LEASE if another owner holds it
+   */
+  long acquireLease(String lockId, String owner, int leaseSeconds);
 
-  void releaseLock(Session session, DistributedLock distributedLock);
+  /**
+   * Extends a lease the owner holds. Meant to be called by a heartbeat well within the lease.
+   *
+   * @param lockId the leased lock
+   * @param owner the lease holder
+   * @param fencingToken the fencing token the lease was acquired with
+   * @param leaseSeconds how long the lease lasts from now unless renewed
+   * @return false if the lease has passed to another owner since it was acquired
+   */
+  boolean renewLease(String lockId, String owner, long fencingToken, int leaseSeconds);
 
-  DistributedLock initLock(String lockId);
+  /**
+   * Gives up the lease on a lock so another owner can take it over without waiting for it to
+   * expire.
+   *
+   * @param lockId the leased lock
+   * @param owner the lease holder
+   * @param fencingToken the fencing token the lease was acquired with
+   */
+  void releaseLease(String lockId, String owner, long fencingToken);
 }
@@ -30,4 +30,6 @@ public interface PooledStsJobDao extends Dao<PooledStsJob, Integer> {
 
   PooledStsJob getJob(String bucketName, String projectId, String scheduleTimeOfDay, String type);
 
+  List<PooledStsJob> getJobs(String bucketName, String projectId, String type);
+
 }
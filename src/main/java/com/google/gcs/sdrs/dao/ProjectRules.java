@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.model.RetentionRule;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/** The active rules a policy execution applies to a project */
+public class ProjectRules {
+
+  private final String projectId;
+  private final List<RetentionRule> datasetRules;
+  private final List<RetentionRule> defaultRules;
+  private final RetentionRule globalRule;
+
+  public ProjectRules(
+      String projectId,
+      List<RetentionRule> datasetRules,
+      List<RetentionRule> defaultRules,
+      RetentionRule globalRule) {
+    this.projectId = projectId;
+    this.datasetRules = datasetRules;
+    this.defaultRules = defaultRules;
+    this.globalRule = globalRule;
+  }
+
+  public String getProjectId() {
+    return projectId;
+  }
+
+  public List<RetentionRule> getDatasetRules() {
+    return datasetRules;
+  }
+
+  public List<RetentionRule> getDefaultRules() {
+    return defaultRules;
+  }
+
+  /** @return the global rule of the project, or the global default rule if it has none */
+  public RetentionRule getGlobalRule() {
+    return globalRule;
+  }
+
+  /**
+   * Partitions active rules by project in one pass. Every project with dataset or default rules
+   * gets an entry. A project without a global rule of its own gets the global default rule.
+   *
+   * <p>Each project gets its own copy of the global rule, as rule executors change it.
+   *
+   * @param activeRules the active rules, which may be streamed from the database
+   * @param defaultProjectId the project id of the global default rule
+   * @return the rules of each project, ordered by project id
+   */
+  public static Map<String, ProjectRules> partition(
+      Stream<RetentionRule> activeRules, String defaultProjectId) {
+    Map<String, List<RetentionRule>> datasetRules = new TreeMap<>();
+    Map<String, List<RetentionRule>> defaultRules = new TreeMap<>();
+    Map<String, RetentionRule> globalRules = new HashMap<>();
+    Function<String, List<RetentionRule>> newList = projectId -> new ArrayList<>();
+
+    activeRules.forEach(
+        rule -> {
+          if (rule.getType() == RetentionRuleType.DATASET) {
+            datasetRules.computeIfAbsent(rule.getProjectId(), newList).add(rule);
+            defaultRules.computeIfAbsent(rule.getProjectId(), newList);
+          } else if (rule.getType() == RetentionRuleType.DEFAULT) {
+            defaultRules.computeIfAbsent(rule.getProjectId(), newList).add(rule);
+            datasetRules.computeIfAbsent(rule.getProjectId(), newList);
+          } else if (rule.getType() == RetentionRuleType.GLOBAL) {
+            globalRules.putIfAbsent(rule.getProjectId(), rule);
+          }
+        });
+
+    Map<String, ProjectRules> rulesByProject = new LinkedHashMap<>();
+    for (Map.Entry<String, List<RetentionRule>> entry : datasetRules.entrySet()) {
+      String projectId = entry.getKey();
+      RetentionRule globalRule = globalRules.get(projectId);
+      if (globalRule == null) {
+        globalRule = globalRules.get(defaultProjectId);
+      }
+      rulesByProject.put(
+          projectId,
+          new ProjectRules(
+              projectId,
+              entry.getValue(),
+              defaultRules.get(projectId),
+              globalRule == null ? null : new RetentionRule(globalRule)));
+    }
+    return rulesByProject;
+  }
+}
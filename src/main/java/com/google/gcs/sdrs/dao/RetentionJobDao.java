@@ -10,4 +10,12 @@ public interface RetentionJobDao extends Dao<RetentionJob, Integer> {
   List<RetentionJob> findJobsByRuleIdAndProjectId(int ruleId, String projectId);
 
   RetentionJob findLatestDefaultJob(String dataStorageName);
+
+  /**
+   * Inserts new retention jobs in JDBC batches and sets their generated ids. The jobs are inserted
+   * in one transaction, so either all of them are saved or none is.
+   *
+   * @param jobs retention jobs without an id
+   */
+  void saveBatch(List<RetentionJob> jobs);
 }
@@ -19,7 +19,9 @@ package com.google.gcs.sdrs.dao;
 
 import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.dao.model.RetentionRule;
+import java.sql.Timestamp;
 import java.util.List;
+import java.util.Map;
 
 /** Defines available persistence operations for RetentionRule entities */
 public interface RetentionRuleDao extends Dao<RetentionRule, Integer> {
@@ -47,4 +49,21 @@ public interface RetentionRuleDao extends Dao<RetentionRule, Integer> {
   RetentionRule findGlobalRuleByProjectId(String projectId);
 
   List<RetentionRule> findDefaultRulesByProjectId(String projectId);
+
+  /**
+   * Loads every active rule in one pass and partitions them by project, replacing the lookups of
+   * the project ids and of the rules of each project.
+   *
+   * @return the rules of every project with dataset or default rules, or null if they could not
+   *     be read
+   */
+  Map<String, ProjectRules> findActiveRulesByProject();
+
+  /**
+   * Finds the rules created or updated at or after a time, active or not.
+   *
+   * @param since the time to search from, or null for all rules
+   * @return the rules, or null if they could not be read
+   */
+  List<RetentionRule> findRulesChangedSince(Timestamp since);
 }
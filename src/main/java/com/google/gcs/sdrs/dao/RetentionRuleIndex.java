@@ -0,0 +1,323 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.model.RetentionRule;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory index of the retention rules, so the rule lookups of policy runs and rule creates do
+ * not query the database. The index is an immutable snapshot that is swapped atomically, so reads
+ * never lock. A snapshot older than the max staleness is refreshed on the next read by loading only
+ * the rules created or updated since the high-water mark of the previous load, and the whole table
+ * is reloaded periodically.
+ *
+ * <p>Lookups return copies, so callers are free to change the rules they get.
+ */
+public class RetentionRuleIndex {
+
+  private static final Logger logger = LoggerFactory.getLogger(RetentionRuleIndex.class);
+
+  public static final boolean DEFAULT_RULE_INDEX_ENABLED = true;
+  public static final boolean RULE_INDEX_ENABLED =
+      Boolean.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "dao.ruleIndex.enabled", String.valueOf(DEFAULT_RULE_INDEX_ENABLED)));
+
+  public static final int DEFAULT_MAX_STALENESS_SECONDS = 60;
+  public static final int MAX_STALENESS_SECONDS =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "dao.ruleIndex.maxStalenessSeconds", String.valueOf(DEFAULT_MAX_STALENESS_SECONDS)));
+
+  public static final int DEFAULT_OVERLAP_SECONDS = 60;
+  public static final int OVERLAP_SECONDS =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "dao.ruleIndex.overlapSeconds", String.valueOf(DEFAULT_OVERLAP_SECONDS)));
+
+  public static final int DEFAULT_FULL_RELOAD_MINUTES = 60;
+  public static final int FULL_RELOAD_MINUTES =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "dao.ruleIndex.fullReloadMinutes", String.valueOf(DEFAULT_FULL_RELOAD_MINUTES)));
+
+  private final Function<Timestamp, List<RetentionRule>> loader;
+  private final LongSupplier clock;
+  private volatile Snapshot snapshot;
+  private volatile boolean invalidated;
+
+  /**
+   * @param loader loads the rules created or updated at or after a time, or all rules for null.
+   *     Returns null if the rules could not be loaded.
+   */
+  public RetentionRuleIndex(Function<Timestamp, List<RetentionRule>> loader) {
+    this(loader, System::currentTimeMillis);
+  }
+
+  RetentionRuleIndex(Function<Timestamp, List<RetentionRule>> loader, LongSupplier clock) {
+    this.loader = loader;
+    this.clock = clock;
+  }
+
+  /**
+   * Gets a snapshot no older than the max staleness.
+   *
+   * @return the snapshot, or null if the rules have never been loaded
+   */
+  public Snapshot get() {
+    return get(MAX_STALENESS_SECONDS * 1000L);
+  }
+
+  /**
+   * Gets a snapshot no older than the given staleness, refreshing it first if needed. If the
+   * refresh fails the previous snapshot is returned.
+   *
+   * @param maxStalenessMillis how old the snapshot may be. 0 always refreshes.
+   * @return the snapshot, or null if the rules have never been loaded
+   */
+  public Snapshot get(long maxStalenessMillis) {
+    Snapshot current = snapshot;
+    if (current == null
+        || invalidated
+        || clock.getAsLong() - current.refreshedAtMillis >= maxStalenessMillis) {
+      current = refresh(maxStalenessMillis);
+    }
+    return current;
+  }
+
+  /** Makes the next read refresh the snapshot, after a rule was changed by this instance */
+  public void invalidate() {
+    invalidated = true;
+  }
+
+  private synchronized Snapshot refresh(long maxStalenessMillis) {
+    Snapshot current = snapshot;
+    long now = clock.getAsLong();
+    // another reader may have refreshed while this one waited
+    if (current != null
+        && !invalidated
+        && now - current.refreshedAtMillis < maxStalenessMillis) {
+      return current;
+    }
+    invalidated = false;
+
+    boolean fullReload =
+        current == null
+            || current.highWaterMark == null
+            || now - current.loadedAtMillis >= FULL_RELOAD_MINUTES * 60000L;
+    // rows changed in transactions that committed after the previous load started may carry an
+    // earlier time than the high-water mark, so the previous window is read again
+    Timestamp since =
+        fullReload
+            ? null
+            : new Timestamp(current.highWaterMark.getTime() - OVERLAP_SECONDS * 1000L);
+
+    List<RetentionRule> changedRules;
+    try {
+      changedRules = loader.apply(since);
+    } catch (RuntimeException e) {
+      logger.error("Failed to load retention rules into the rule index.", e);
+      changedRules = null;
+    }
+    if (changedRules == null) {
+      logger.warn("The rule index could not be refreshed. The previous snapshot stays in use.");
+      return current;
+    }
+
+    Snapshot refreshed =
+        fullReload
+            ? new Snapshot(changedRules, null, now, now)
+            : current.apply(changedRules, now);
+    snapshot = refreshed;
+    logger.debug(
+        String.format(
+            "Rule index %s with %d changed rules. It holds %d rules.",
+            fullReload ? "reloaded" : "refreshed", changedRules.size(), refreshed.size()));
+    return refreshed;
+  }
+
+  /** An immutable snapshot of the retention rules, indexed by project, bucket and type */
+  public static final class Snapshot {
+    private final Map<Integer, RetentionRule> rulesById;
+    private final Map<String, Map<RetentionRuleType, List<RetentionRule>>> activeByProject;
+    private final Map<String, List<RetentionRule>> byDataStorageRoot;
+    private final List<String> activeNonGlobalProjectIds;
+    private final Timestamp highWaterMark;
+    private final long loadedAtMillis;
+    private final long refreshedAtMillis;
+
+    private Snapshot(
+        List<RetentionRule> rules,
+        Snapshot previous,
+        long loadedAtMillis,
+        long refreshedAtMillis) {
+      Map<Integer, RetentionRule> byId =
+          previous == null ? new HashMap<>() : new HashMap<>(previous.rulesById);
+      Map<String, String> pool = new HashMap<>();
+      Timestamp mark = previous == null ? null : previous.highWaterMark;
+      for (RetentionRule rule : rules) {
+        byId.put(rule.getId(), compact(rule, pool));
+        Timestamp changedAt =
+            rule.getUpdatedAt() != null ? rule.getUpdatedAt() : rule.getCreatedAt();
+        if (changedAt != null && (mark == null || changedAt.after(mark))) {
+          mark = changedAt;
+        }
+      }
+
+      Map<String, Map<RetentionRuleType, List<RetentionRule>>> active = new HashMap<>();
+      Map<String, List<RetentionRule>> byRoot = new HashMap<>();
+      TreeSet<String> projectIds = new TreeSet<>();
+      for (RetentionRule rule : byId.values()) {
+        byRoot.computeIfAbsent(rule.getDataStorageRoot(), k -> new ArrayList<>()).add(rule);
+        if (Boolean.TRUE.equals(rule.getIsActive()) && rule.getType() != null) {
+          active
+              .computeIfAbsent(rule.getProjectId(), k -> new EnumMap<>(RetentionRuleType.class))
+              .computeIfAbsent(rule.getType(), k -> new ArrayList<>())
+              .add(rule);
+          if (rule.getType() != RetentionRuleType.GLOBAL) {
+            projectIds.add(rule.getProjectId());
+          }
+        }
+      }
+
+      this.rulesById = Collections.unmodifiableMap(byId);
+      this.activeByProject = Collections.unmodifiableMap(active);
+      this.byDataStorageRoot = Collections.unmodifiableMap(byRoot);
+      this.activeNonGlobalProjectIds = Collections.unmodifiableList(new ArrayList<>(projectIds));
+      this.highWaterMark = mark;
+      this.loadedAtMillis = loadedAtMillis;
+      this.refreshedAtMillis = refreshedAtMillis;
+    }
+
+    /** Shares the indexes of a snapshot that nothing changed in since */
+    private Snapshot(Snapshot unchanged, long refreshedAtMillis) {
+      this.rulesById = unchanged.rulesById;
+      this.activeByProject = unchanged.activeByProject;
+      this.byDataStorageRoot = unchanged.byDataStorageRoot;
+      this.activeNonGlobalProjectIds = unchanged.activeNonGlobalProjectIds;
+      this.highWaterMark = unchanged.highWaterMark;
+      this.loadedAtMillis = unchanged.loadedAtMillis;
+      this.refreshedAtMillis = refreshedAtMillis;
+    }
+
+    private Snapshot apply(List<RetentionRule> changedRules, long now) {
+      if (changedRules.isEmpty()) {
+        return new Snapshot(this, now);
+      }
+      return new Snapshot(changedRules, this, loadedAtMillis, now);
+    }
+
+    /** Copies a rule with interned strings, so the many rules of a bucket share their strings */
+    private static RetentionRule compact(RetentionRule rule, Map<String, String> pool) {
+      RetentionRule copy = new RetentionRule(rule);
+      copy.setProjectId(intern(rule.getProjectId(), pool));
+      copy.setDataStorageRoot(intern(rule.getDataStorageRoot(), pool));
+      copy.setDataStorageType(intern(rule.getDataStorageType(), pool));
+      copy.setRetentionValue(intern(rule.getRetentionValue(), pool));
+      copy.setUser(intern(rule.getUser(), pool));
+      return copy;
+    }
+
+    private static String intern(String value, Map<String, String> pool) {
+      return value == null ? null : pool.computeIfAbsent(value, String::intern);
+    }
+
+    /** @return copies of the active rules of a type in a project */
+    public List<RetentionRule> findActive(String projectId, RetentionRuleType type) {
+      Map<RetentionRuleType, List<RetentionRule>> byType = activeByProject.get(projectId);
+      return copyOf(byType == null ? null : byType.get(type));
+    }
+
+    /** @return a copy of the active dataset rule of a data storage, or null if there is none */
+    public RetentionRule findActiveDatasetRule(String projectId, String dataStorageName) {
+      for (RetentionRule rule : findActive(projectId, RetentionRuleType.DATASET)) {
+        if (Objects.equals(rule.getDataStorageName(), dataStorageName)) {
+          return rule;
+        }
+      }
+      return null;
+    }
+
+    /** @return copies of the rules of a type set on a bucket of a project */
+    public List<RetentionRule> findByDataStorageRoot(
+        String projectId,
+        String dataStorageRoot,
+        RetentionRuleType type,
+        boolean includeDeactivated) {
+      List<RetentionRule> result = new ArrayList<>();
+      List<RetentionRule> bucketRules = byDataStorageRoot.get(dataStorageRoot);
+      if (bucketRules != null) {
+        for (RetentionRule rule : bucketRules) {
+          if (Objects.equals(rule.getProjectId(), projectId)
+              && rule.getType() == type
+              && (includeDeactivated || Boolean.TRUE.equals(rule.getIsActive()))) {
+            result.add(new RetentionRule(rule));
+          }
+        }
+      }
+      return result;
+    }
+
+    /** @return copies of all active rules */
+    public List<RetentionRule> findAllActive() {
+      List<RetentionRule> result = new ArrayList<>();
+      for (RetentionRule rule : rulesById.values()) {
+        if (Boolean.TRUE.equals(rule.getIsActive())) {
+          result.add(new RetentionRule(rule));
+        }
+      }
+      return result;
+    }
+
+    /** @return the projects that have active dataset or default rules */
+    public List<String> getActiveNonGlobalProjectIds() {
+      return activeNonGlobalProjectIds;
+    }
+
+    /** @return the number of rules in the snapshot, active or not */
+    public int size() {
+      return rulesById.size();
+    }
+
+    private static List<RetentionRule> copyOf(List<RetentionRule> rules) {
+      List<RetentionRule> copies = new ArrayList<>();
+      if (rules != null) {
+        for (RetentionRule rule : rules) {
+          copies.add(new RetentionRule(rule));
+        }
+      }
+      return copies;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.hibernate.Session;
+
+/**
+ * Verifies the columns the database must maintain itself. hbm2ddl only adds missing columns as
+ * plain nullable columns, so a database without the SQL migrations would start but never find
+ * available DM requests or pending validations.
+ */
+public class SchemaVerifier {
+
+  static final String COLUMNS_QUERY =
+      "SELECT TABLE_NAME, COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, EXTRA, GENERATION_EXPRESSION"
+          + " FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE()"
+          + " AND ((TABLE_NAME = 'dm_queue' AND COLUMN_NAME = 'available')"
+          + " OR (TABLE_NAME = 'retention_job' AND COLUMN_NAME = 'validation_state'))";
+
+  private static final String DM_QUEUE_AVAILABLE = "dm_queue.available";
+  private static final String RETENTION_JOB_VALIDATION_STATE = "retention_job.validation_state";
+  private static final String AVAILABLE_MIGRATION = "mod_9_add_dm_queue_available_index.sql";
+  private static final String VALIDATION_STATE_MIGRATION =
+      "mod_8_add_retention_job_validation_state.sql";
+
+  private SchemaVerifier() {}
+
+  /**
+   * Checks the columns in the connected database.
+   *
+   * @return a description of each column that is missing or has another definition, empty when
+   *     the schema is up to date
+   */
+  @SuppressWarnings("unchecked")
+  public static List<String> verify() {
+    Session session = BaseDao.getSessionFactory().openSession();
+    try {
+      return verifyColumns(session.createNativeQuery(COLUMNS_QUERY).getResultList());
+    } finally {
+      session.close();
+    }
+  }
+
+  /**
+   * Checks the columns returned by {@link #COLUMNS_QUERY}.
+   *
+   * @param rows the table name, column name, type, nullability, extra and generation expression
+   *     of each column found
+   * @return a description of each column that is missing or has another definition
+   */
+  static List<String> verifyColumns(List<Object[]> rows) {
+    Map<String, Object[]> columns = new HashMap<>();
+    for (Object[] row : rows) {
+      columns.put(row[0] + "." + row[1], row);
+    }
+    List<String> problems = new ArrayList<>();
+
+    Object[] available = columns.get(DM_QUEUE_AVAILABLE);
+    if (available == null) {
+      problems.add(missing(DM_QUEUE_AVAILABLE, AVAILABLE_MIGRATION));
+    } else {
+      String extra = text(available[4]);
+      String expression = text(available[5]);
+      if (!extra.contains("generated")
+          || !expression.contains("status")
+          || !expression.contains("pending")
+          || !expression.contains("retry")) {
+        problems.add(
+            String.format(
+                "Column %s must be generated from the status of pending and retry requests,"
+                    + " found %s %s %s. Apply %s.",
+                DM_QUEUE_AVAILABLE,
+                available[2],
+                available[4],
+                available[5],
+                AVAILABLE_MIGRATION));
+      }
+    }
+
+    Object[] validationState = columns.get(RETENTION_JOB_VALIDATION_STATE);
+    if (validationState == null) {
+      problems.add(missing(RETENTION_JOB_VALIDATION_STATE, VALIDATION_STATE_MIGRATION));
+    } else if (!"enum('pending','done')".equals(text(validationState[2]))
+        || !"no".equals(text(validationState[3]))) {
+      problems.add(
+          String.format(
+              "Column %s must be enum('pending','done') NOT NULL, found %s nullable %s. Apply %s.",
+              RETENTION_JOB_VALIDATION_STATE,
+              validationState[2],
+              validationState[3],
+              VALIDATION_STATE_MIGRATION));
+    }
+    return problems;
+  }
+
+  private static String missing(String column, String script) {
+    return String.format("Column %s is missing. Apply %s.", column, script);
+  }
+
+  private static String text(Object value) {
+    return value == null ? "" : value.toString().toLowerCase(Locale.ROOT);
+  }
+}
@@ -23,6 +23,7 @@ import com.google.gcs.sdrs.dao.impl.PooledStsJobDaoImpl;
 import com.google.gcs.sdrs.dao.impl.RetentionJobDaoImpl;
 import com.google.gcs.sdrs.dao.impl.RetentionJobValidationDaoImpl;
 import com.google.gcs.sdrs.dao.impl.RetentionRuleDaoImpl;
+import com.google.gcs.sdrs.dao.impl.WorkerResultHistoryDaoImpl;
 
 /** Class to manage singleton DAO instances. */
 public class SingletonDao {
@@ -33,6 +34,7 @@ public class SingletonDao {
   private static PooledStsJobDao pooledStsJobDao;
   private static DmQueueDao dmQueueDao;
   private static LockDao lockDao;
+  private static WorkerResultHistoryDao workerResultHistoryDao;
 
   public static synchronized RetentionRuleDao getRetentionRuleDao() {
     if (retentionRuleDao == null) {
@@ -75,4 +77,11 @@ public class SingletonDao {
     }
     return lockDao;
   }
+
+  public static synchronized WorkerResultHistoryDao getWorkerResultHistoryDao() {
+    if (workerResultHistoryDao == null) {
+      workerResultHistoryDao = new WorkerResultHistoryDaoImpl();
+    }
+    return workerResultHistoryDao;
+  }
 }
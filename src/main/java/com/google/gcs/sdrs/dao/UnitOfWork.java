@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import java.util.function.Supplier;
+import javax.persistence.PersistenceException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs several DAO calls in one Hibernate session and transaction. While a unit of work is active
+ * on a thread, every DAO call made on that thread joins its session instead of opening its own, and
+ * the transaction commits once the work completes, or rolls back if any of it fails. Outside a unit
+ * of work each DAO call keeps running in a session and transaction of its own.
+ *
+ * <p>The session is bound to the calling thread, so DAO calls made on other threads do not join it.
+ * It is opened on the first DAO call and holds a database connection until the work completes, so
+ * the work should not wait on remote services. Leases and claims that other instances must see
+ * right away have to be taken outside a unit of work.
+ */
+public final class UnitOfWork {
+
+  private static final Logger logger = LoggerFactory.getLogger(UnitOfWork.class);
+  private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+  private Session session;
+  private Transaction transaction;
+  private boolean rollbackOnly;
+
+  private UnitOfWork() {}
+
+  /** Work run in a unit of work */
+  @FunctionalInterface
+  public interface Work<R, E extends Exception> {
+    R run() throws E;
+  }
+
+  /**
+   * Runs the work in a unit of work. Work started while another unit of work is active on the
+   * thread joins it, so it commits or rolls back with the outermost work.
+   *
+   * @param work the DAO calls to run together
+   * @return the result of the work
+   * @throws E the exception thrown by the work
+   * @throws PersistenceException if a DAO call failed or the commit failed
+   */
+  public static <R, E extends Exception> R execute(Work<R, E> work) throws E {
+    if (current.get() != null) {
+      return work.run();
+    }
+
+    UnitOfWork unit = new UnitOfWork();
+    current.set(unit);
+    boolean committed = false;
+    try {
+      R result = work.run();
+      unit.commit();
+      committed = true;
+      return result;
+    } finally {
+      current.remove();
+      if (!committed) {
+        unit.rollback();
+      }
+      unit.close();
+    }
+  }
+
+  /** @return the unit of work active on this thread, or null if there is none */
+  static UnitOfWork current() {
+    return current.get();
+  }
+
+  /** Whether a unit of work is active on this thread */
+  public static boolean isActive() {
+    return current.get() != null;
+  }
+
+  /** Makes the unit of work active on this thread roll back once its work completes */
+  public static void markCurrentRollbackOnly() {
+    UnitOfWork unit = current.get();
+    if (unit != null) {
+      unit.rollbackOnly = true;
+    }
+  }
+
+  /** Gets the session of the unit of work, opening it and its transaction on first use */
+  Session getSession(Supplier<Session> sessionOpener) {
+    if (session == null) {
+      session = sessionOpener.get();
+      transaction = session.beginTransaction();
+    }
+    return session;
+  }
+
+  Transaction getTransaction() {
+    return transaction;
+  }
+
+  /** Whether the session belongs to this unit of work, in which case DAOs must not end it */
+  boolean owns(Session session) {
+    return session != null && session == this.session;
+  }
+
+  private void commit() {
+    if (rollbackOnly) {
+      throw new PersistenceException("A DAO call of the unit of work failed. Rolling back.");
+    }
+    if (transaction != null && transaction.isActive()) {
+      transaction.commit();
+    }
+  }
+
+  private void rollback() {
+    try {
+      if (transaction != null && transaction.isActive()) {
+        transaction.rollback();
+      }
+    } catch (RuntimeException e) {
+      logger.error("Failed to roll back the unit of work.", e);
+    }
+  }
+
+  private void close() {
+    try {
+      if (session != null && session.isOpen()) {
+        session.close();
+      }
+    } catch (RuntimeException e) {
+      logger.error("Error closing the Hibernate session of the unit of work.", e);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import com.google.gcs.sdrs.dao.model.WorkerResultHistory;
+
+public interface WorkerResultHistoryDao extends Dao<WorkerResultHistory, Integer> {
+
+  /**
+   * Gets the most recent persisted result of a worker
+   *
+   * @param workerId the worker id, which is the correlation id of the originating request
+   * @return the latest {@link WorkerResultHistory} record, or null if none exists
+   */
+  WorkerResultHistory findLatestByWorkerId(String workerId);
+}
@@ -17,13 +17,20 @@
 package com.google.gcs.sdrs.dao.impl;
 
 import com.google.gcs.sdrs.dao.DmQueueDao;
+import com.google.gcs.sdrs.dao.Lease;
 import com.google.gcs.sdrs.dao.SingletonDao;
+import com.google.gcs.sdrs.dao.StaleLeaseException;
 import com.google.gcs.sdrs.dao.model.DmRequest;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.util.DatabaseConstants;
 import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Order;
@@ -39,12 +46,17 @@ public class DmQueueDaoImpl extends GenericDao<DmRequest, Integer> implements Dm
 
   private static final Logger logger = LoggerFactory.getLogger(DmQueueDaoImpl.class);
 
+  // only the columns the DM batch changes, so claims and timestamps are left to the database
+  private static final String UPDATE_SCHEDULED_DM_REQUEST =
+      "UPDATE dm_queue SET status = ?, priority = ?, number_of_retry = ?, retention_job_id = ?"
+          + " WHERE id = ?";
+
   public DmQueueDaoImpl() {
     super(DmRequest.class);
   }
 
   @Override
-  public List<DmRequest> getAllAvailableRequestsByPriority() {
+  public List<DmRequest> getAvailableRequestsPage(DmRequest after, int pageSize) {
     Session session = null;
     List<DmRequest> result = null;
     try {
@@ -54,21 +66,24 @@ public class DmQueueDaoImpl extends GenericDao<DmRequest, Integer> implements Dm
       CriteriaQuery<DmRequest> query = builder.createQuery(DmRequest.class);
       Root<DmRequest> root = query.from(DmRequest.class);
 
-      Predicate pending_status =
-          (builder.equal(root.get("status"), DatabaseConstants.DM_REQUEST_STATUS_PENDING));
-      Predicate retry_status =
-          (builder.equal(root.get("status"), DatabaseConstants.DM_REQUEST_STATIUS_RETRY));
-      Predicate pending_or_retry = builder.or(pending_status, retry_status);
+      // available is derived from the pending and retry statuses, so that one index both filters
+      // the requests and returns them in page order
+      Predicate available = builder.isTrue(root.get("available"));
 
-      List<Order> orderList = new ArrayList();
-      orderList.add(builder.desc(root.get("priority")));
-      orderList.add(builder.desc(root.get("numberOfRetry")));
-      orderList.add(builder.asc(root.get("createdAt")));
+      Predicate unclaimed =
+          builder.or(
+              builder.isNull(root.get("claimOwner")),
+              builder.lessThan(
+                  root.<Timestamp>get("claimExpiresAt"), builder.currentTimestamp()));
 
-      query.where(pending_or_retry);
-      query.orderBy(orderList);
+      if (after != null) {
+        query.where(available, unclaimed, buildKeysetPredicate(builder, root, after));
+      } else {
+        query.where(available, unclaimed);
+      }
+      query.orderBy(buildPriorityOrder(builder, root));
 
-      result = session.createQuery(query).getResultList();
+      result = session.createQuery(query).setMaxResults(pageSize).getResultList();
       closeSession(session);
     } catch (Exception e) {
       handleRuntimeException(e, null);
@@ -79,6 +94,131 @@ public class DmQueueDaoImpl extends GenericDao<DmRequest, Integer> implements Dm
     return result;
   }
 
+  /** id breaks ties so that the order, and therefore the keyset, is total */
+  private List<Order> buildPriorityOrder(CriteriaBuilder builder, Root<DmRequest> root) {
+    List<Order> orderList = new ArrayList();
+    orderList.add(builder.desc(root.get("priority")));
+    orderList.add(builder.desc(root.get("numberOfRetry")));
+    orderList.add(builder.asc(root.get("createdAt")));
+    orderList.add(builder.asc(root.get("id")));
+    return orderList;
+  }
+
+  /**
+   * Builds the predicate selecting the rows that sort strictly after the given DM request in
+   * (priority desc, numberOfRetry desc, createdAt asc, id asc) order.
+   */
+  private Predicate buildKeysetPredicate(
+      CriteriaBuilder builder, Root<DmRequest> root, DmRequest after) {
+    Predicate samePriority = builder.equal(root.get("priority"), after.getPriority());
+    Predicate sameRetry =
+        builder.and(
+            samePriority, builder.equal(root.get("numberOfRetry"), after.getNumberOfRetry()));
+    Predicate sameCreatedAt =
+        builder.and(sameRetry, builder.equal(root.get("createdAt"), after.getCreatedAt()));
+
+    return builder.or(
+        builder.lessThan(root.<Integer>get("priority"), after.getPriority()),
+        builder.and(
+            samePriority,
+            builder.lessThan(root.<Integer>get("numberOfRetry"), after.getNumberOfRetry())),
+        builder.and(
+            sameRetry,
+            builder.greaterThan(root.<Timestamp>get("createdAt"), after.getCreatedAt())),
+        builder.and(sameCreatedAt, builder.greaterThan(root.<Integer>get("id"), after.getId())));
+  }
+
+  @Override
+  public List<DmRequest> claimRequests(
+      String dataStorageRoot, List<DmRequest> dmRequests, String owner, int leaseSeconds) {
+    List<DmRequest> result = new ArrayList<>();
+    if (dataStorageRoot == null || dmRequests == null || dmRequests.isEmpty()) {
+      return result;
+    }
+    List<Integer> ids = dmRequests.stream().map(DmRequest::getId).collect(Collectors.toList());
+    List<String> available =
+        Arrays.asList(
+            DatabaseConstants.DM_REQUEST_STATUS_PENDING,
+            DatabaseConstants.DM_REQUEST_STATIUS_RETRY);
+
+    Session session = null;
+    Transaction transaction = null;
+    try {
+      session = openSession();
+      transaction = beginTransaction(session);
+
+      // The locking read covers every row of the bucket, so concurrent claims of the same bucket
+      // serialize and each sees the claims committed before it. A bucket is claimed as a whole
+      // because updating its STS job is a read-modify-write.
+      Number claimedByOthers =
+          (Number)
+              session
+                  .createNativeQuery(
+                      "SELECT COUNT(*) FROM dm_queue WHERE data_storage_root = :root"
+                          + " AND status IN (:statuses) AND claim_owner <> :owner"
+                          + " AND claim_expires_at > NOW() FOR UPDATE")
+                  .setParameter("root", dataStorageRoot)
+                  .setParameterList("statuses", available)
+                  .setParameter("owner", owner)
+                  .getSingleResult();
+
+      if (claimedByOthers.intValue() == 0) {
+        session
+            .createNativeQuery(
+                "UPDATE dm_queue SET claim_owner = :owner,"
+                    + " claim_expires_at = DATE_ADD(NOW(), INTERVAL :leaseSeconds SECOND)"
+                    + " WHERE id IN (:ids) AND data_storage_root = :root"
+                    + " AND status IN (:statuses)")
+            .setParameter("owner", owner)
+            .setParameter("leaseSeconds", leaseSeconds)
+            .setParameterList("ids", ids)
+            .setParameter("root", dataStorageRoot)
+            .setParameterList("statuses", available)
+            .executeUpdate();
+
+        CriteriaBuilder builder = session.getCriteriaBuilder();
+        CriteriaQuery<DmRequest> query = builder.createQuery(DmRequest.class);
+        Root<DmRequest> root = query.from(DmRequest.class);
+        query
+            .select(root)
+            .where(root.get("id").in(ids), builder.equal(root.get("claimOwner"), owner))
+            .orderBy(buildPriorityOrder(builder, root));
+        result = session.createQuery(query).getResultList();
+      }
+      closeSessionWithTransaction(session, transaction);
+    } catch (Exception e) {
+      handleRuntimeException(e, transaction);
+    } finally {
+      closeSession(session);
+    }
+
+    return result;
+  }
+
+  @Override
+  public int releaseClaims(String owner) {
+    Session session = null;
+    Transaction transaction = null;
+    int result = 0;
+    try {
+      session = openSession();
+      transaction = beginTransaction(session);
+      result =
+          session
+              .createNativeQuery(
+                  "UPDATE dm_queue SET claim_owner = NULL, claim_expires_at = NULL"
+                      + " WHERE claim_owner = :owner")
+              .setParameter("owner", owner)
+              .executeUpdate();
+      closeSessionWithTransaction(session, transaction);
+    } catch (Exception e) {
+      handleRuntimeException(e, transaction);
+    } finally {
+      closeSession(session);
+    }
+    return result;
+  }
+
   @Override
   public List<DmRequest> getPendingDmRequestByName(String dataStorageName, String projectId) {
     if (dataStorageName == null || projectId == null) {
@@ -114,17 +254,45 @@ public class DmQueueDaoImpl extends GenericDao<DmRequest, Integer> implements Dm
   }
 
   @Override
-  public int deleteSuccessfulDmRequests() {
+  @SuppressWarnings("unchecked")
+  public int deleteSuccessfulDmRequests(Lease lease, int chunkSize, boolean archive) {
     Session session = null;
     Transaction transaction = null;
     int result = 0;
     try {
       session = openSession();
-      transaction = session.beginTransaction();
-      result = session.createQuery("delete from DmRequest where status=:status")
-          .setParameter("status", DatabaseConstants.DM_REQUEST_STATUS_SUCCESS)
-          .executeUpdate();
+      transaction = beginTransaction(session);
+      checkLease(session, lease);
+      // locking the chunk first keeps the archived rows and the deleted rows the same
+      List<Number> ids =
+          session
+              .createNativeQuery(
+                  "SELECT id FROM dm_queue WHERE status = :status LIMIT :limit FOR UPDATE")
+              .setParameter("status", DatabaseConstants.DM_REQUEST_STATUS_SUCCESS)
+              .setParameter("limit", chunkSize)
+              .getResultList();
+      if (!ids.isEmpty()) {
+        if (archive) {
+          session
+              .createNativeQuery(
+                  "INSERT INTO dm_queue_history (dm_queue_id, data_storage_name,"
+                      + " data_storage_root, retention_job_id, number_of_retry, created_at,"
+                      + " completed_at) SELECT id, data_storage_name, data_storage_root,"
+                      + " retention_job_id, number_of_retry, created_at, updated_at"
+                      + " FROM dm_queue WHERE id IN (:ids)")
+              .setParameterList("ids", ids)
+              .executeUpdate();
+        }
+        result =
+            session
+                .createNativeQuery("DELETE FROM dm_queue WHERE id IN (:ids)")
+                .setParameterList("ids", ids)
+                .executeUpdate();
+      }
       closeSessionWithTransaction(session, transaction);
+    } catch (StaleLeaseException e) {
+      handleRuntimeException(e, transaction);
+      throw e;
     } catch (Exception e) {
       handleRuntimeException(e, transaction);
     } finally{
@@ -163,21 +331,16 @@ public class DmQueueDaoImpl extends GenericDao<DmRequest, Integer> implements Dm
     Transaction transaction = null;
     try {
       session = openSession();
-      transaction = session.beginTransaction();
+      transaction = beginTransaction(session);
       Integer retentionJobId = (Integer) session.save(retentionJob);
 
       dmRequests.stream().forEach(request -> request.setRetentionJobId(retentionJobId));
-      int i = 0;
-
-      // database batch update
-      for (DmRequest dmRequest : dmRequests) {
-        session.saveOrUpdate(dmRequest);
-
-        if (++i % 20 == 0) {
-          session.flush();
-          session.clear();
-        }
-      }
+      executeBatch(
+          session,
+          UPDATE_SCHEDULED_DM_REQUEST,
+          dmRequests,
+          DmQueueDaoImpl::bindScheduledUpdate,
+          null);
       closeSessionWithTransaction(session, transaction);
     } catch (Exception e) {
       handleRuntimeException(e, transaction);
@@ -190,4 +353,13 @@ public class DmQueueDaoImpl extends GenericDao<DmRequest, Integer> implements Dm
       closeSession(session);
     }
   }
+
+  private static void bindScheduledUpdate(PreparedStatement statement, DmRequest dmRequest)
+      throws SQLException {
+    statement.setString(1, dmRequest.getStatus());
+    statement.setInt(2, dmRequest.getPriority());
+    statement.setInt(3, dmRequest.getNumberOfRetry());
+    statement.setInt(4, dmRequest.getRetentionJobId());
+    statement.setInt(5, dmRequest.getId());
+  }
 }
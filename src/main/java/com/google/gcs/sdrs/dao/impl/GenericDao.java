@@ -19,8 +19,17 @@
 package com.google.gcs.sdrs.dao.impl;
 
 import com.google.gcs.sdrs.dao.BaseDao;
+import com.google.gcs.sdrs.dao.Lease;
+import com.google.gcs.sdrs.dao.StaleLeaseException;
+import com.google.gcs.sdrs.dao.UnitOfWork;
 import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
+import java.util.function.ObjIntConsumer;
+import javax.persistence.PersistenceException;
 import javax.persistence.criteria.CriteriaQuery;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
@@ -52,13 +61,13 @@ public class GenericDao<T, Id extends Serializable> extends BaseDao<T, Id> {
     Transaction transaction = null;
     try {
       session = openSession();
-      transaction = session.beginTransaction();
+      transaction = beginTransaction(session);
 
       int i = 0;
       for (T entity : entities) {
         session.saveOrUpdate(entity);
 
-        if (++i % 20 == 0) { // 20, same as the JDBC batch size
+        if (++i % JDBC_BATCH_SIZE == 0) {
           // flush a batch of inserts and release memory:
           session.flush();
           session.clear();
@@ -83,7 +92,7 @@ public class GenericDao<T, Id extends Serializable> extends BaseDao<T, Id> {
     Id result = null;
     try {
       session = openSession();
-      transaction = session.beginTransaction();
+      transaction = beginTransaction(session);
       result = (Id) session.save(entity);
       closeSessionWithTransaction(session, transaction);
     } catch (Exception e) {
@@ -103,7 +112,7 @@ public class GenericDao<T, Id extends Serializable> extends BaseDao<T, Id> {
     Session session = null;
     try {
       session = openSession();
-      transaction = session.beginTransaction();
+      transaction = beginTransaction(session);
       session.update(entity);
       closeSessionWithTransaction(session, transaction);
     } catch (Exception e) {
@@ -162,7 +171,7 @@ public class GenericDao<T, Id extends Serializable> extends BaseDao<T, Id> {
     Transaction transaction = null;
     try {
       session = openSession();
-      transaction = session.beginTransaction();
+      transaction = beginTransaction(session);
       session.delete(entity);
       closeSessionWithTransaction(session, transaction);
     } catch (Exception e) {
@@ -187,8 +196,94 @@ public class GenericDao<T, Id extends Serializable> extends BaseDao<T, Id> {
     return foundEntity;
   }
 
+  /** Binds the parameters of a batched statement to the values of one entity */
+  @FunctionalInterface
+  protected interface StatementBinder<E> {
+    void bind(PreparedStatement statement, E entity) throws SQLException;
+  }
+
+  /**
+   * Writes entities with JDBC batches of {@link #JDBC_BATCH_SIZE} statements. Hibernate does not
+   * batch inserts of entities with database generated ids, so bulk writes go through this instead.
+   * The statements run in the transaction of the session and bypass its persistence context.
+   *
+   * @param session a session with an active transaction
+   * @param sql the statement run for every entity
+   * @param entities the entities to write
+   * @param binder binds the statement parameters of an entity
+   * @param generatedIdSetter receives the id generated for every inserted entity, or null if the
+   *     statement does not generate ids
+   */
+  protected <E> void executeBatch(
+      Session session,
+      String sql,
+      List<E> entities,
+      StatementBinder<E> binder,
+      ObjIntConsumer<E> generatedIdSetter) {
+    if (entities == null || entities.isEmpty()) {
+      return;
+    }
+    // write the pending changes of the session first so the statements run in order
+    session.flush();
+    session.doWork(
+        connection -> {
+          int keys =
+              generatedIdSetter == null
+                  ? Statement.NO_GENERATED_KEYS
+                  : Statement.RETURN_GENERATED_KEYS;
+          try (PreparedStatement statement = connection.prepareStatement(sql, keys)) {
+            for (int start = 0; start < entities.size(); start += JDBC_BATCH_SIZE) {
+              List<E> batch =
+                  entities.subList(start, Math.min(start + JDBC_BATCH_SIZE, entities.size()));
+              for (E entity : batch) {
+                binder.bind(statement, entity);
+                statement.addBatch();
+              }
+              statement.executeBatch();
+              if (generatedIdSetter != null) {
+                try (ResultSet generatedIds = statement.getGeneratedKeys()) {
+                  for (E entity : batch) {
+                    if (generatedIds.next()) {
+                      generatedIdSetter.accept(entity, generatedIds.getInt(1));
+                    }
+                  }
+                }
+              }
+            }
+          }
+        });
+  }
+
+  /**
+   * Fences a write transaction with a lease. The check takes a shared lock on the lease row, so the
+   * lease cannot pass to a newer holder until the transaction ends.
+   *
+   * @param session a session with an active transaction
+   * @param lease the lease the write is made under
+   * @throws StaleLeaseException if a newer holder has taken the lease over
+   */
+  protected void checkLease(Session session, Lease lease) {
+    Object fencingToken =
+        session
+            .createNativeQuery(
+                "SELECT fencing_token FROM distributed_lock WHERE id = :id LOCK IN SHARE MODE")
+            .setParameter("id", lease.getLockId())
+            .uniqueResult();
+    if (fencingToken == null || ((Number) fencingToken).longValue() != lease.getFencingToken()) {
+      throw new StaleLeaseException(lease);
+    }
+  }
+
+  /**
+   * Handles a failed DAO call. On its own the call's transaction is rolled back and the error is
+   * logged. Inside a unit of work the error is rethrown and the whole unit rolls back.
+   */
   public void handleRuntimeException(Exception e, Transaction transaction) {
     logger.error("Runtime Exception: ", e);
+    if (UnitOfWork.isActive()) {
+      UnitOfWork.markCurrentRollbackOnly();
+      throw e instanceof RuntimeException ? (RuntimeException) e : new PersistenceException(e);
+    }
     if (transaction != null && transaction.isActive()) {
       transaction.rollback();
     }
@@ -18,15 +18,7 @@ package com.google.gcs.sdrs.dao.impl;
 
 import com.google.gcs.sdrs.dao.LockDao;
 import com.google.gcs.sdrs.dao.model.DistributedLock;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.sql.Timestamp;
-import java.time.Instant;
-import java.util.GregorianCalendar;
-import java.util.UUID;
-import org.hibernate.LockMode;
-import org.hibernate.LockOptions;
-import org.hibernate.PessimisticLockException;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 import org.slf4j.Logger;
@@ -34,105 +26,20 @@ import org.slf4j.LoggerFactory;
 
 /** Hibernate based LockDao implementation */
 public class LockDaoImpl extends GenericDao<DistributedLock, Integer> implements LockDao {
-  private static final Logger logger = LoggerFactory.getLogger(DmQueueDaoImpl.class);
+  private static final Logger logger = LoggerFactory.getLogger(LockDaoImpl.class);
 
   public LockDaoImpl() {
     super(DistributedLock.class);
   }
 
   /**
-   * To use a distributed lock a user has to start a lock session, which is a Hibernate session in
-   * this implementation
-   *
-   * @return a Hibernate(JPA) session
-   */
-  public Session getLockSession() {
-    return openSession();
-  }
-
-  /**
-   * Close the lock session after the lock is released.
-   *
-   * @param lockSession a lock session, which is a Hibernate session in this implementation
-   */
-  public void closeLockSession(Session lockSession) {
-    if (lockSession != null && lockSession.isOpen()) {
-      closeSession(lockSession);
-    }
-  }
-
-  /**
-   * Get a exclusive lock. The method uses JPA PESSIMISTIC_WRITE lock, which translates into an
-   * exclusive row-level lock for the underlining database.
-   *
-   * @param lockSession a Hiberneate session.
-   * @return a DistributedLock if lock is acquired or null otherwise.
-   */
-  public DistributedLock obtainLock(Session lockSession, int timeout, String lockId) {
-    if (lockSession == null || lockId == null) {
-      return null;
-    }
-    DistributedLock distributedLock = null;
-    try {
-      lockSession.beginTransaction();
-
-      distributedLock =
-          lockSession.get(
-              DistributedLock.class,
-              lockId,
-              new LockOptions(LockMode.PESSIMISTIC_WRITE).setTimeOut(timeout));
-      distributedLock.setLockToken(generateUniqueToken(Thread.currentThread().getName()));
-      distributedLock.setCreatedAt(new Timestamp(System.currentTimeMillis()));
-    } catch (PessimisticLockException e) {
-      logger.info("Lock wait timeout exceeded.", e);
-    } catch (Exception e) {
-      logger.info("Failed to acquire lock.", e);
-    }
-
-    return distributedLock;
-  }
-
-  /**
-   * Reelase the lock by committing the transaction.
-   *
-   * @param lockSession a Hibernate session.
-   * @param distributedLock a DistributedLock entity
-   */
-  public void releaseLock(Session lockSession, DistributedLock distributedLock) {
-    if (distributedLock == null
-        || lockSession == null
-        || !lockSession.isOpen()
-        || lockSession.getTransaction() == null
-        || !lockSession.getTransaction().isActive()) {
-      return;
-    }
-    try {
-      distributedLock.getCreatedAt().toInstant();
-      long duration =
-          Instant.now().toEpochMilli() - distributedLock.getCreatedAt().toInstant().toEpochMilli();
-
-      distributedLock.setLockDuration(duration);
-
-      logger.debug(
-          String.format(
-              "tokenName=%s, duration=%d, createdAt=%s",
-              distributedLock.getLockToken(),
-              distributedLock.getLockDuration(),
-              distributedLock.getCreatedAt().toInstant().toString()));
-      lockSession.update(distributedLock);
-      closeSessionWithTransaction(lockSession, lockSession.getTransaction());
-    } catch (Exception e) {
-      logger.info("Failed to release lock.", e);
-    }
-  }
-
-  /**
-   * Distributed lock is implemented using database exclusive row-level lock. The method provisions
-   * the record in the table before the distributed lock can be used.
+   * Distributed locks are leases on rows of the distributed_lock table. The method provisions the
+   * record in the table before the lease can be used.
    *
    * @param lockId a unique lock ID.
    * @return
    */
+  @Override
   public DistributedLock initLock(String lockId) {
     Session session = openSession();
     DistributedLock distributedLock = session.get(DistributedLock.class, lockId);
@@ -142,26 +49,111 @@ public class LockDaoImpl extends GenericDao<DistributedLock, Integer> implements
       distributedLock.setCreatedAt(new Timestamp(System.currentTimeMillis()));
       distributedLock.setLockDuration(0);
       distributedLock.setId(lockId);
-      Transaction transaction = session.beginTransaction();
+      Transaction transaction = beginTransaction(session);
       session.save(distributedLock);
-      transaction.commit();
+      closeSessionWithTransaction(session, transaction);
     }
     closeSession(session);
     return distributedLock;
   }
 
-  private String generateUniqueToken(String seed) {
-    String uniqueToken = seed + "-";
+  /**
+   * Acquires or renews a lease with a single conditional update, so competing owners never wait on
+   * each other. Expiry is computed with the database clock, which all instances share. MySQL
+   * assigns the SET clauses in order, so the fencing token is decided from the previous holder
+   * before the owner is overwritten.
+   */
+  @Override
+  public long acquireLease(String lockId, String owner, int leaseSeconds) {
+    Session session = null;
+    Transaction transaction = null;
+    long fencingToken = NO_LEASE;
+    try {
+      session = openSession();
+      transaction = beginTransaction(session);
+      int updated =
+          session
+              .createNativeQuery(
+                  "UPDATE distributed_lock"
+                      + " SET fencing_token = IF(lease_owner = :owner"
+                      + " AND lease_expires_at >= NOW(), fencing_token, fencing_token + 1),"
+                      + " lease_owner = :owner,"
+                      + " lease_expires_at = DATE_ADD(NOW(), INTERVAL :leaseSeconds SECOND)"
+                      + " WHERE id = :id AND (lease_owner IS NULL OR lease_owner = :owner"
+                      + " OR lease_expires_at IS NULL OR lease_expires_at < NOW())")
+              .setParameter("owner", owner)
+              .setParameter("leaseSeconds", leaseSeconds)
+              .setParameter("id", lockId)
+              .executeUpdate();
+      if (updated == 1) {
+        Number token =
+            (Number)
+                session
+                    .createNativeQuery("SELECT fencing_token FROM distributed_lock WHERE id = :id")
+                    .setParameter("id", lockId)
+                    .getSingleResult();
+        fencingToken = token.longValue();
+      }
+      closeSessionWithTransaction(session, transaction);
+    } catch (Exception e) {
+      handleRuntimeException(e, transaction);
+      return NO_LEASE;
+    } finally {
+      closeSession(session);
+    }
+    return fencingToken;
+  }
+
+  @Override
+  public boolean renewLease(String lockId, String owner, long fencingToken, int leaseSeconds) {
+    Session session = null;
+    Transaction transaction = null;
+    int updated = 0;
     try {
-      InetAddress inetAddress = InetAddress.getLocalHost();
-      uniqueToken = uniqueToken + inetAddress.getAddress().toString() + "-";
-      uniqueToken = uniqueToken + inetAddress.getHostName() + "-";
-      uniqueToken = uniqueToken + GregorianCalendar.getInstance().getTimeInMillis();
-    } catch (UnknownHostException e) {
-      UUID uuid = UUID.randomUUID();
-      uniqueToken = uniqueToken + uuid.toString() + "-";
-      uniqueToken = uniqueToken + GregorianCalendar.getInstance().getTimeInMillis();
+      session = openSession();
+      transaction = beginTransaction(session);
+      updated =
+          session
+              .createNativeQuery(
+                  "UPDATE distributed_lock"
+                      + " SET lease_expires_at = DATE_ADD(NOW(), INTERVAL :leaseSeconds SECOND)"
+                      + " WHERE id = :id AND lease_owner = :owner AND fencing_token = :token")
+              .setParameter("leaseSeconds", leaseSeconds)
+              .setParameter("id", lockId)
+              .setParameter("owner", owner)
+              .setParameter("token", fencingToken)
+              .executeUpdate();
+      closeSessionWithTransaction(session, transaction);
+    } catch (Exception e) {
+      handleRuntimeException(e, transaction);
+      return false;
+    } finally {
+      closeSession(session);
+    }
+    return updated == 1;
+  }
+
+  @Override
+  public void releaseLease(String lockId, String owner, long fencingToken) {
+    Session session = null;
+    Transaction transaction = null;
+    try {
+      session = openSession();
+      transaction = beginTransaction(session);
+      // the fencing token stays, so the next holder gets a higher one
+      session
+          .createNativeQuery(
+              "UPDATE distributed_lock SET lease_owner = NULL, lease_expires_at = NULL"
+                  + " WHERE id = :id AND lease_owner = :owner AND fencing_token = :token")
+          .setParameter("id", lockId)
+          .setParameter("owner", owner)
+          .setParameter("token", fencingToken)
+          .executeUpdate();
+      closeSessionWithTransaction(session, transaction);
+    } catch (Exception e) {
+      handleRuntimeException(e, transaction);
+    } finally {
+      closeSession(session);
     }
-    return uniqueToken;
   }
 }
@@ -65,23 +65,7 @@ public class PooledStsJobDaoImpl extends GenericDao<PooledStsJob, Integer>
   @Override
   public PooledStsJob getJob(
       String sourceBucket, String sourceProjectId, String scheduleTimeOfDay, String type) {
-    Session session = openSession();
-    CriteriaBuilder builder = session.getCriteriaBuilder();
-    CriteriaQuery<PooledStsJob> query = builder.createQuery(PooledStsJob.class);
-    Root<PooledStsJob> root = query.from(PooledStsJob.class);
-
-    List<Predicate> predicates = new ArrayList<>();
-    predicates.add(builder.equal(root.get("sourceBucket"), sourceBucket));
-    predicates.add(builder.equal(root.get("sourceProject"), sourceProjectId));
-    predicates.add(builder.equal(root.get("type"), type));
-
-    query
-        .select(root)
-        .where(predicates.toArray(new Predicate[predicates.size()]))
-        .orderBy(builder.asc(root.get("schedule")));
-
-    List<PooledStsJob> result = session.createQuery(query).getResultList();
-    closeSession(session);
+    List<PooledStsJob> result = getJobs(sourceBucket, sourceProjectId, type);
     PooledStsJob pooledStsJob = null;
     if (result != null && !result.isEmpty()) {
       if (scheduleTimeOfDay == null) {
@@ -101,6 +85,29 @@ public class PooledStsJobDaoImpl extends GenericDao<PooledStsJob, Integer>
     return pooledStsJob;
   }
 
+  /** Returns the pooled STS jobs of the bucket and type in schedule order */
+  @Override
+  public List<PooledStsJob> getJobs(String sourceBucket, String sourceProjectId, String type) {
+    Session session = openSession();
+    CriteriaBuilder builder = session.getCriteriaBuilder();
+    CriteriaQuery<PooledStsJob> query = builder.createQuery(PooledStsJob.class);
+    Root<PooledStsJob> root = query.from(PooledStsJob.class);
+
+    List<Predicate> predicates = new ArrayList<>();
+    predicates.add(builder.equal(root.get("sourceBucket"), sourceBucket));
+    predicates.add(builder.equal(root.get("sourceProject"), sourceProjectId));
+    predicates.add(builder.equal(root.get("type"), type));
+
+    query
+        .select(root)
+        .where(predicates.toArray(new Predicate[predicates.size()]))
+        .orderBy(builder.asc(root.get("schedule")));
+
+    List<PooledStsJob> result = session.createQuery(query).getResultList();
+    closeSession(session);
+    return result;
+  }
+
   @Override
   public Boolean deleteAllJobsByBucketName(String sourceBucket, String sourceProject) {
     Session session = null;
@@ -108,7 +115,7 @@ public class PooledStsJobDaoImpl extends GenericDao<PooledStsJob, Integer>
     boolean isDeleted = false;
     try {
       session = openSession();
-      transaction = session.beginTransaction();
+      transaction = beginTransaction(session);
 
       CriteriaBuilder builder = session.getCriteriaBuilder();
       CriteriaDelete<PooledStsJob> delete = builder.createCriteriaDelete(PooledStsJob.class);
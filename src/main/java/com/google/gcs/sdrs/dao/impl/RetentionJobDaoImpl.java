@@ -21,16 +21,26 @@ package com.google.gcs.sdrs.dao.impl;
 import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.dao.RetentionJobDao;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.List;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.hibernate.query.Query;
 
 public class RetentionJobDaoImpl extends GenericDao<RetentionJob, Integer>
     implements RetentionJobDao {
 
+  // created_at falls back to the column default for jobs that do not set it
+  private static final String INSERT_RETENTION_JOB =
+      "INSERT INTO retention_job (name, retention_rule_id, retention_rule_version,"
+          + " retention_rule_type, retention_rule_data_storage_name, retention_rule_project_id,"
+          + " created_at, batch_id, metadata, data_storage_root, type)"
+          + " VALUES (?, ?, ?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP), ?, ?, ?, ?)";
+
   public RetentionJobDaoImpl() {
     super(RetentionJob.class);
   }
@@ -92,4 +102,47 @@ public class RetentionJobDaoImpl extends GenericDao<RetentionJob, Integer>
     closeSession(session);
     return retentionJob;
   }
+
+  @Override
+  public void saveBatch(List<RetentionJob> jobs) {
+    Session session = null;
+    Transaction transaction = null;
+    try {
+      session = openSession();
+      transaction = beginTransaction(session);
+      executeBatch(
+          session,
+          INSERT_RETENTION_JOB,
+          jobs,
+          RetentionJobDaoImpl::bindInsert,
+          RetentionJob::setId);
+      closeSessionWithTransaction(session, transaction);
+    } catch (Exception e) {
+      // the ids of a rolled back batch do not exist
+      jobs.forEach(job -> job.setId(null));
+      handleRuntimeException(e, transaction);
+      throw e;
+    } finally {
+      closeSession(session);
+    }
+  }
+
+  private static void bindInsert(PreparedStatement statement, RetentionJob job)
+      throws SQLException {
+    statement.setString(1, job.getName());
+    statement.setObject(2, job.getRetentionRuleId());
+    statement.setObject(3, job.getRetentionRuleVersion());
+    statement.setString(
+        4,
+        job.getRetentionRuleType() == null
+            ? null
+            : job.getRetentionRuleType().toDatabaseRepresentation());
+    statement.setString(5, job.getRetentionRuleDataStorageName());
+    statement.setString(6, job.getRetentionRuleProjectId());
+    statement.setTimestamp(7, job.getCreatedAt());
+    statement.setString(8, job.getBatchId());
+    statement.setString(9, job.getMetadata());
+    statement.setString(10, job.getDataStorageRoot());
+    statement.setString(11, job.getType());
+  }
 }
@@ -22,16 +22,19 @@ import com.google.gcs.sdrs.common.RetentionJobStatusType;
 import com.google.gcs.sdrs.dao.RetentionJobValidationDao;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
+import com.google.gcs.sdrs.dao.util.DatabaseConstants;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Join;
-import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Root;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +44,16 @@ public class RetentionJobValidationDaoImpl extends GenericDao<RetentionJobValida
 
   private static final Logger logger = LoggerFactory.getLogger(RetentionJobValidationDaoImpl.class);
 
+  private static final String INSERT_VALIDATION =
+      "INSERT INTO retention_job_validation (retention_job_id, job_operation_name, status,"
+          + " batch_id, start_time, end_time, metadata) VALUES (?, ?, ?, ?, ?, ?, ?)";
+  private static final String UPDATE_VALIDATION =
+      "UPDATE retention_job_validation SET retention_job_id = ?, job_operation_name = ?,"
+          + " status = ?, batch_id = ?, start_time = ?, end_time = ?, metadata = ? WHERE id = ?";
+
+  private static final String UPDATE_JOB_VALIDATION_STATE =
+      "UPDATE retention_job SET validation_state = ? WHERE id = ?";
+
   public RetentionJobValidationDaoImpl() {
     super(RetentionJobValidation.class);
   }
@@ -48,58 +61,34 @@ public class RetentionJobValidationDaoImpl extends GenericDao<RetentionJobValida
   /**
    * Get a Collection of {@link RetentionJob}s that are still in a pending state.
    *
-   * <p>Immediately-run. Any immediately-run jobs in the retention_job but not in the
-   * retention_job_validation or status is pending
-   *
-   * <p>Daily. Any daily job in the retention_job but does not have a record in the
-   * retention_job_validation or status is pending for today
+   * <p>A job is pending until it has validations and none of them is pending. The state is kept
+   * on the retention_job row by {@link #saveOrUpdateBatch}, so this is a single indexed read that
+   * does not grow with the number of settled jobs.
    *
    * @return a Collection of {@link RetentionJob}s
    */
   @Override
   public List<RetentionJob> findAllPendingRetentionJobs() {
-    // Using a set means if a duplicate job is added from one of the query results, it will be
-    // skipped
-    Set<RetentionJob> results = new HashSet<>();
-
-    results.addAll(findAllSingleRunPendingJobs());
-    results.addAll(findAllSingleRunJobsWithNoStatus());
-    return new ArrayList<>(results);
-  }
-
-  /**
-   * Get all DATASET/USER RetentionJobs with a RetentionJobValidation.status of pending
-   *
-   * @return a list of RententionJob
-   */
-  private List<RetentionJob> findAllSingleRunPendingJobs() {
-    Session session = openSession();
-    CriteriaBuilder builder = session.getCriteriaBuilder();
-    CriteriaQuery<RetentionJob> query = builder.createQuery(RetentionJob.class);
-    Root<RetentionJob> job = query.from(RetentionJob.class);
-    Join<RetentionJob, RetentionJobValidation> jobValidation =
-        job.join("jobValidations", JoinType.INNER);
-    jobValidation.on(builder.equal(jobValidation.get("status"), RetentionJobStatusType.PENDING));
-    List<RetentionJob> results = session.createQuery(query).getResultList();
-    closeSession(session);
-    return results;
-  }
-
-  /**
-   * Get all DATASET/USER RetentionJobs without a corresponding RetentionJobValidation record
-   *
-   * @return a list of RententionJob
-   */
-  private List<RetentionJob> findAllSingleRunJobsWithNoStatus() {
-    Session session = openSession();
-    CriteriaBuilder builder = session.getCriteriaBuilder();
-    CriteriaQuery<RetentionJob> query = builder.createQuery(RetentionJob.class);
-    Root<RetentionJob> job = query.from(RetentionJob.class);
-    Join<RetentionJob, RetentionJobValidation> jobValidation =
-        job.join("jobValidations", JoinType.LEFT);
-    query.where(builder.isNull(jobValidation.get("id")));
-    List<RetentionJob> results = session.createQuery(query).getResultList();
-    closeSession(session);
+    Session session = null;
+    List<RetentionJob> results = null;
+    try {
+      session = openSession();
+      CriteriaBuilder builder = session.getCriteriaBuilder();
+      CriteriaQuery<RetentionJob> query = builder.createQuery(RetentionJob.class);
+      Root<RetentionJob> job = query.from(RetentionJob.class);
+      query
+          .select(job)
+          .where(
+              builder.equal(
+                  job.get("validationState"),
+                  DatabaseConstants.RETENTION_JOB_VALIDATION_STATE_PENDING));
+      results = session.createQuery(query).getResultList();
+      closeSession(session);
+    } catch (Exception e) {
+      handleRuntimeException(e, null);
+    } finally {
+      closeSession(session);
+    }
     return results;
   }
 
@@ -123,4 +112,94 @@ public class RetentionJobValidationDaoImpl extends GenericDao<RetentionJobValida
     closeSession(session);
     return results;
   }
+
+  /**
+   * Inserts the new validations and updates the existing ones in JDBC batches, all in one
+   * transaction. The validation state of their retention jobs is updated in the same transaction:
+   * a job is done when none of its validations in the batch is pending.
+   *
+   * @param validations validations without an id are inserted and get their generated id
+   */
+  @Override
+  public void saveOrUpdateBatch(List<RetentionJobValidation> validations) {
+    Map<Boolean, List<RetentionJobValidation>> byExisting =
+        validations.stream().collect(Collectors.partitioningBy(v -> v.getId() != null));
+    Session session = null;
+    Transaction transaction = null;
+    try {
+      session = openSession();
+      transaction = beginTransaction(session);
+      executeBatch(
+          session,
+          UPDATE_VALIDATION,
+          byExisting.get(true),
+          RetentionJobValidationDaoImpl::bindUpdate,
+          null);
+      executeBatch(
+          session,
+          INSERT_VALIDATION,
+          byExisting.get(false),
+          RetentionJobValidationDaoImpl::bindInsert,
+          RetentionJobValidation::setId);
+      executeBatch(
+          session,
+          UPDATE_JOB_VALIDATION_STATE,
+          new ArrayList<>(toValidationStates(validations).entrySet()),
+          RetentionJobValidationDaoImpl::bindValidationState,
+          null);
+      closeSessionWithTransaction(session, transaction);
+    } catch (Exception e) {
+      handleRuntimeException(e, transaction);
+    } finally {
+      closeSession(session);
+    }
+  }
+
+  /** Maps each retention job of the validations to its validation state */
+  private static Map<Integer, String> toValidationStates(
+      List<RetentionJobValidation> validations) {
+    Map<Integer, String> states = new TreeMap<>();
+    for (RetentionJobValidation validation : validations) {
+      if (validation.getRetentionJobId() == null) {
+        continue;
+      }
+      if (validation.getStatus() == RetentionJobStatusType.PENDING) {
+        states.put(
+            validation.getRetentionJobId(),
+            DatabaseConstants.RETENTION_JOB_VALIDATION_STATE_PENDING);
+      } else {
+        states.putIfAbsent(
+            validation.getRetentionJobId(),
+            DatabaseConstants.RETENTION_JOB_VALIDATION_STATE_DONE);
+      }
+    }
+    return states;
+  }
+
+  private static void bindValidationState(
+      PreparedStatement statement, Map.Entry<Integer, String> jobState) throws SQLException {
+    statement.setString(1, jobState.getValue());
+    statement.setInt(2, jobState.getKey());
+  }
+
+  private static void bindInsert(PreparedStatement statement, RetentionJobValidation validation)
+      throws SQLException {
+    statement.setObject(1, validation.getRetentionJobId());
+    statement.setString(2, validation.getJobOperationName());
+    statement.setString(
+        3,
+        validation.getStatus() == null
+            ? null
+            : validation.getStatus().toDatabaseRepresentation());
+    statement.setString(4, validation.getBatchId());
+    statement.setTimestamp(5, validation.getStartTime());
+    statement.setTimestamp(6, validation.getEndTime());
+    statement.setString(7, validation.getMetadata());
+  }
+
+  private static void bindUpdate(PreparedStatement statement, RetentionJobValidation validation)
+      throws SQLException {
+    bindInsert(statement, validation);
+    statement.setInt(8, validation.getId());
+  }
 }
@@ -19,10 +19,16 @@ package com.google.gcs.sdrs.dao.impl;
 
 import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.ProjectRules;
 import com.google.gcs.sdrs.dao.RetentionRuleDao;
+import com.google.gcs.sdrs.dao.RetentionRuleIndex;
 import com.google.gcs.sdrs.dao.model.RetentionRule;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
@@ -39,8 +45,68 @@ public class RetentionRuleDaoImpl extends GenericDao<RetentionRule, Integer>
 
   private static final Logger logger = LoggerFactory.getLogger(RetentionRuleDaoImpl.class);
 
+  // null when disabled, in which case every lookup queries the database
+  private final RetentionRuleIndex ruleIndex;
+
   public RetentionRuleDaoImpl() {
     super(RetentionRule.class);
+    ruleIndex =
+        RetentionRuleIndex.RULE_INDEX_ENABLED
+            ? new RetentionRuleIndex(this::findRulesChangedSince)
+            : null;
+  }
+
+  /** @return a snapshot of the rules, or null if the index is disabled or was never loaded */
+  private RetentionRuleIndex.Snapshot getRuleSnapshot() {
+    return ruleIndex == null ? null : ruleIndex.get();
+  }
+
+  @Override
+  public Integer save(RetentionRule entity) {
+    Integer id = super.save(entity);
+    invalidateRuleIndex();
+    return id;
+  }
+
+  @Override
+  public void update(RetentionRule entity) {
+    super.update(entity);
+    invalidateRuleIndex();
+  }
+
+  private void invalidateRuleIndex() {
+    if (ruleIndex != null) {
+      ruleIndex.invalidate();
+    }
+  }
+
+  @Override
+  public List<RetentionRule> findRulesChangedSince(Timestamp since) {
+    Session session = null;
+    List<RetentionRule> result = null;
+    try {
+      session = openSession();
+      CriteriaBuilder builder = session.getCriteriaBuilder();
+      CriteriaQuery<RetentionRule> query = builder.createQuery(RetentionRule.class);
+      Root<RetentionRule> root = query.from(RetentionRule.class);
+      query.select(root);
+      if (since != null) {
+        // updated_at is only set once a rule is first updated
+        query.where(
+            builder.or(
+                builder.greaterThanOrEqualTo(root.<Timestamp>get("updatedAt"), since),
+                builder.and(
+                    builder.isNull(root.get("updatedAt")),
+                    builder.greaterThanOrEqualTo(root.<Timestamp>get("createdAt"), since))));
+      }
+      result = session.createQuery(query).getResultList();
+      closeSession(session);
+    } catch (Exception e) {
+      handleRuntimeException(e, null);
+    } finally {
+      closeSession(session);
+    }
+    return result;
   }
 
   /**
@@ -52,6 +118,10 @@ public class RetentionRuleDaoImpl extends GenericDao<RetentionRule, Integer>
    */
   @Override
   public RetentionRule findDatasetRuleByBusinessKey(String projectId, String dataStorage) {
+    RetentionRuleIndex.Snapshot rules = getRuleSnapshot();
+    if (rules != null) {
+      return rules.findActiveDatasetRule(projectId, dataStorage);
+    }
     Session session = openSession();
     CriteriaBuilder builder = session.getCriteriaBuilder();
     CriteriaQuery<RetentionRule> query = builder.createQuery(RetentionRule.class);
@@ -113,6 +183,17 @@ public class RetentionRuleDaoImpl extends GenericDao<RetentionRule, Integer>
    */
   @Override
   public RetentionRule findGlobalRuleByProjectId(String projectId) {
+    RetentionRuleIndex.Snapshot rules = getRuleSnapshot();
+    if (rules != null) {
+      List<RetentionRule> globalRules = rules.findActive(projectId, RetentionRuleType.GLOBAL);
+      if (globalRules.isEmpty()) {
+        globalRules =
+            rules.findActive(
+                SdrsApplication.getAppConfigProperty("sts.defaultProjectId"),
+                RetentionRuleType.GLOBAL);
+      }
+      return globalRules.isEmpty() ? null : globalRules.get(0);
+    }
     Session session = openSession();
     RetentionRule globalDefaultRule = null;
     CriteriaBuilder builder = session.getCriteriaBuilder();
@@ -159,6 +240,10 @@ public class RetentionRuleDaoImpl extends GenericDao<RetentionRule, Integer>
    */
   @Override
   public List<String> getAllDatasetRuleProjectIds() {
+    RetentionRuleIndex.Snapshot rules = getRuleSnapshot();
+    if (rules != null) {
+      return new ArrayList<>(rules.getActiveNonGlobalProjectIds());
+    }
     Session session = openSession();
     CriteriaBuilder builder = session.getCriteriaBuilder();
     CriteriaQuery<String> criteria = builder.createQuery(String.class);
@@ -185,6 +270,10 @@ public class RetentionRuleDaoImpl extends GenericDao<RetentionRule, Integer>
    */
   @Override
   public List<RetentionRule> findDatasetRulesByProjectId(String projectId) {
+    RetentionRuleIndex.Snapshot rules = getRuleSnapshot();
+    if (rules != null) {
+      return rules.findActive(projectId, RetentionRuleType.DATASET);
+    }
     Session session = openSession();
     CriteriaBuilder builder = session.getCriteriaBuilder();
     CriteriaQuery<RetentionRule> criteria = builder.createQuery(RetentionRule.class);
@@ -218,6 +307,12 @@ public class RetentionRuleDaoImpl extends GenericDao<RetentionRule, Integer>
       String dataStorageRoot,
       RetentionRuleType retentionRuleType,
       Boolean includeDeactivated) {
+    // rule creates check the rules of the bucket before writing, so the snapshot is refreshed first
+    RetentionRuleIndex.Snapshot rules = ruleIndex == null ? null : ruleIndex.get(0);
+    if (rules != null) {
+      return rules.findByDataStorageRoot(
+          projectId, dataStorageRoot, retentionRuleType, includeDeactivated);
+    }
     Session session = openSession();
     CriteriaBuilder builder = session.getCriteriaBuilder();
     CriteriaQuery<RetentionRule> query = builder.createQuery(RetentionRule.class);
@@ -238,8 +333,49 @@ public class RetentionRuleDaoImpl extends GenericDao<RetentionRule, Integer>
     return result;
   }
 
+  @Override
+  public Map<String, ProjectRules> findActiveRulesByProject() {
+    String defaultProjectId = SdrsApplication.getAppConfigProperty("sts.defaultProjectId");
+    RetentionRuleIndex.Snapshot rules = getRuleSnapshot();
+    if (rules != null) {
+      return ProjectRules.partition(rules.findAllActive().stream(), defaultProjectId);
+    }
+
+    Session session = null;
+    Map<String, ProjectRules> result = null;
+    try {
+      session = openSession();
+      CriteriaBuilder builder = session.getCriteriaBuilder();
+      CriteriaQuery<RetentionRule> criteria = builder.createQuery(RetentionRule.class);
+      Root<RetentionRule> root = criteria.from(RetentionRule.class);
+      criteria.select(root).where(builder.equal(root.get("isActive"), true));
+
+      // Integer.MIN_VALUE makes the MySQL driver stream the rows instead of buffering them all
+      try (Stream<RetentionRule> activeRules =
+          session
+              .createQuery(criteria)
+              .setReadOnly(true)
+              .setFetchSize(Integer.MIN_VALUE)
+              .stream()) {
+        // the rules are only read, so the session does not need to keep track of them
+        Session streamSession = session;
+        result = ProjectRules.partition(activeRules.peek(streamSession::detach), defaultProjectId);
+      }
+      closeSession(session);
+    } catch (Exception e) {
+      handleRuntimeException(e, null);
+    } finally {
+      closeSession(session);
+    }
+    return result;
+  }
+
   @Override
   public List<RetentionRule> findDefaultRulesByProjectId(String projectId) {
+    RetentionRuleIndex.Snapshot rules = getRuleSnapshot();
+    if (rules != null) {
+      return rules.findActive(projectId, RetentionRuleType.DEFAULT);
+    }
     Session session = openSession();
     CriteriaBuilder builder = session.getCriteriaBuilder();
     CriteriaQuery<RetentionRule> criteria = builder.createQuery(RetentionRule.class);
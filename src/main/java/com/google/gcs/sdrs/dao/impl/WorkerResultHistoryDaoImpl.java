@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao.impl;
+
+import com.google.gcs.sdrs.dao.WorkerResultHistoryDao;
+import com.google.gcs.sdrs.dao.model.WorkerResultHistory;
+import java.util.List;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+public class WorkerResultHistoryDaoImpl extends GenericDao<WorkerResultHistory, Integer>
+    implements WorkerResultHistoryDao {
+
+  public WorkerResultHistoryDaoImpl() {
+    super(WorkerResultHistory.class);
+  }
+
+  @Override
+  public WorkerResultHistory findLatestByWorkerId(String workerId) {
+    WorkerResultHistory history = null;
+    Session session = openSession();
+    try {
+      CriteriaBuilder builder = session.getCriteriaBuilder();
+      CriteriaQuery<WorkerResultHistory> criteria =
+          builder.createQuery(WorkerResultHistory.class);
+      Root<WorkerResultHistory> root = criteria.from(WorkerResultHistory.class);
+      criteria
+          .select(root)
+          .where(builder.equal(root.get("workerId"), workerId))
+          .orderBy(builder.desc(root.get("id")));
+
+      Query<WorkerResultHistory> query = session.createQuery(criteria).setMaxResults(1);
+      List<WorkerResultHistory> result = query.getResultList();
+      if (!result.isEmpty()) {
+        history = result.get(0);
+      }
+    } finally {
+      closeSession(session);
+    }
+    return history;
+  }
+}
@@ -38,6 +38,15 @@ public class DistributedLock {
   @Column(name = "created_at", nullable = false)
   private Timestamp createdAt;
 
+  @Column(name = "lease_owner")
+  private String leaseOwner;
+
+  @Column(name = "lease_expires_at")
+  private Timestamp leaseExpiresAt;
+
+  @Column(name = "fencing_token", nullable = false)
+  private long fencingToken;
+
   public String getId() {
     return id;
   }
@@ -69,4 +78,28 @@ public class DistributedLock {
   public void setCreatedAt(Timestamp createdAt) {
     this.createdAt = createdAt;
   }
+
+  public String getLeaseOwner() {
+    return leaseOwner;
+  }
+
+  public void setLeaseOwner(String leaseOwner) {
+    this.leaseOwner = leaseOwner;
+  }
+
+  public Timestamp getLeaseExpiresAt() {
+    return leaseExpiresAt;
+  }
+
+  public void setLeaseExpiresAt(Timestamp leaseExpiresAt) {
+    this.leaseExpiresAt = leaseExpiresAt;
+  }
+
+  public long getFencingToken() {
+    return fencingToken;
+  }
+
+  public void setFencingToken(long fencingToken) {
+    this.fencingToken = fencingToken;
+  }
 }
@@ -64,10 +64,24 @@ public class DmRequest {
   @Column(name = "project_id")
   private String projectId;
 
+  @Column(name = "claim_owner")
+  private String claimOwner;
+
+  @Column(name = "claim_expires_at")
+  private Timestamp claimExpiresAt;
+
+  // derived by the database from the status, true for pending and retry requests
+  @Column(name = "available", insertable = false, updatable = false)
+  private Boolean available;
+
   public Integer getId() {
     return id;
   }
 
+  public void setId(Integer id) {
+    this.id = id;
+  }
+
 
   public Timestamp getCreatedAt() {
     return createdAt;
@@ -138,4 +152,24 @@ public class DmRequest {
   public void setProjectId(String projectId) {
     this.projectId = projectId;
   }
+
+  public String getClaimOwner() {
+    return claimOwner;
+  }
+
+  public void setClaimOwner(String claimOwner) {
+    this.claimOwner = claimOwner;
+  }
+
+  public Timestamp getClaimExpiresAt() {
+    return claimExpiresAt;
+  }
+
+  public void setClaimExpiresAt(Timestamp claimExpiresAt) {
+    this.claimExpiresAt = claimExpiresAt;
+  }
+
+  public Boolean getAvailable() {
+    return available;
+  }
 }
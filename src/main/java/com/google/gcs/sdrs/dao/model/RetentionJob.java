@@ -78,6 +78,10 @@ public class RetentionJob {
   @Column(name = "type")
   private String type;
 
+  // maintained by the database default and the validation DAO only
+  @Column(name = "validation_state", insertable = false, updatable = false)
+  private String validationState;
+
   @OneToMany(mappedBy = "retentionJobId")
   private List<RetentionJobValidation> jobValidations;
 
@@ -182,4 +186,8 @@ public class RetentionJob {
   public void setType(String type) {
     this.type = type;
   }
+
+  public String getValidationState() {
+    return validationState;
+  }
 }
@@ -80,6 +80,24 @@ public class RetentionRule {
 
   public RetentionRule() {}
 
+  /** Copies a rule, so that changes to the copy do not affect the original */
+  public RetentionRule(RetentionRule rule) {
+    this.id = rule.id;
+    this.datasetName = rule.datasetName;
+    this.dataStorageName = rule.dataStorageName;
+    this.projectId = rule.projectId;
+    this.type = rule.type;
+    this.version = rule.version;
+    this.isActive = rule.isActive;
+    this.createdAt = rule.createdAt;
+    this.updatedAt = rule.updatedAt;
+    this.user = rule.user;
+    this.retentionValue = rule.retentionValue;
+    this.metadata = rule.metadata;
+    this.dataStorageRoot = rule.dataStorageRoot;
+    this.dataStorageType = rule.dataStorageType;
+  }
+
   public Integer getId() {
     return id;
   }
@@ -140,10 +158,18 @@ public class RetentionRule {
     return createdAt;
   }
 
+  public void setCreatedAt(Timestamp createdAt) {
+    this.createdAt = createdAt;
+  }
+
   public Timestamp getUpdatedAt() {
     return updatedAt;
   }
 
+  public void setUpdatedAt(Timestamp updatedAt) {
+    this.updatedAt = updatedAt;
+  }
+
   public String getUser() {
     return user;
   }
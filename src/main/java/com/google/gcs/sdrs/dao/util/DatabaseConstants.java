@@ -28,6 +28,8 @@ public class DatabaseConstants {
   public static final String STS_JOB_STATUS_SUCCESS = "success";
   public static final String STS_JOB_STATUS_PENDING = "pending";
   public static final String STS_JOB_STATUS_ERROR = "error";
+  public static final String RETENTION_JOB_VALIDATION_STATE_PENDING = "pending";
+  public static final String RETENTION_JOB_VALIDATION_STATE_DONE = "done";
   public static final String RETENTION_PERIOD_UNIT_DAY = "day";
   public static final String RETENTION_PERIOD_UNIT_MONTH = "month";
   public static final String RETENTION_PERIOD_UNIT_VERSION = "version";
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.scheduler;
+
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.dao.Lease;
+import com.google.gcs.sdrs.dao.LockDao;
+import com.google.gcs.sdrs.dao.SingletonDao;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Elects one SDRS instance to run the scheduled runners, using a lease on a distributed_lock row.
+ * Every instance tries to acquire the lease at a fixed interval and the holder renews it with the
+ * same heartbeat. The instance holding it is the leader until it stops renewing, at which point
+ * another instance takes over once the lease expires, or right away if the leader resigned on
+ * shutdown. Every change of leader increments the lease's fencing token, which the leader's writes
+ * are checked against.
+ */
+public class LeaderElection {
+
+  public static final String DEFAULT_LOCK_ID = "scheduler-leader";
+  public static final int DEFAULT_LEASE_SECONDS = 30;
+  public static final int DEFAULT_RENEW_SECONDS = 10;
+  public static final String LOCK_ID =
+      SdrsApplication.getAppConfigProperty("scheduler.leaderElection.lockId", DEFAULT_LOCK_ID);
+  public static final int LEASE_SECONDS =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "scheduler.leaderElection.leaseSeconds", String.valueOf(DEFAULT_LEASE_SECONDS)));
+  public static final int RENEW_SECONDS =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "scheduler.leaderElection.renewSeconds", String.valueOf(DEFAULT_RENEW_SECONDS)));
+
+  private static LeaderElection instance;
+  private static final Logger logger = LoggerFactory.getLogger(LeaderElection.class);
+
+  private final LockDao lockDao;
+  private final String lockId;
+  private final String owner;
+  private final int leaseSeconds;
+  private ScheduledExecutorService renewer;
+  private volatile boolean leader;
+  private volatile long fencingToken = LockDao.NO_LEASE;
+  // Local time after which leadership lapses if it has not been renewed
+  private volatile long leaseValidUntilNanos;
+  private volatile boolean resigned;
+
+  /**
+   * Gets the leader election of this instance and creates one if it doesn't exist.
+   *
+   * @return The LeaderElection instance.
+   */
+  public static synchronized LeaderElection getInstance() {
+    if (instance == null) {
+      instance =
+          new LeaderElection(SingletonDao.getLockDao(), LOCK_ID, buildOwnerId(), LEASE_SECONDS);
+    }
+    return instance;
+  }
+
+  LeaderElection(LockDao lockDao, String lockId, String owner, int leaseSeconds) {
+    this.lockDao = lockDao;
+    this.lockId = lockId;
+    this.owner = owner;
+    this.leaseSeconds = leaseSeconds;
+  }
+
+  /** Provisions the lease row and starts competing for leadership */
+  public synchronized void start() {
+    if (renewer != null) {
+      return;
+    }
+    lockDao.initLock(lockId);
+    renewer =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "leaderElection");
+              thread.setDaemon(true);
+              return thread;
+            });
+    renewer.scheduleWithFixedDelay(this::renew, 0, RENEW_SECONDS, TimeUnit.SECONDS);
+    logger.info(
+        String.format(
+            "Leader election started for %s as %s. Lease %d s, renewed every %d s.",
+            lockId, owner, leaseSeconds, RENEW_SECONDS));
+  }
+
+  /** Tries to acquire or renew the lease. Leadership is kept only while renewals succeed */
+  synchronized void renew() {
+    if (resigned) {
+      return;
+    }
+    boolean wasLeader = isLeader();
+    // Take the local validity from before the round trip so it never outlasts the database lease
+    long renewalStartNanos = System.nanoTime();
+    long token;
+    try {
+      if (fencingToken != LockDao.NO_LEASE
+          && lockDao.renewLease(lockId, owner, fencingToken, leaseSeconds)) {
+        token = fencingToken;
+      } else {
+        token = lockDao.acquireLease(lockId, owner, leaseSeconds);
+      }
+    } catch (RuntimeException e) {
+      logger.error("Failed to renew the scheduler leader lease.", e);
+      token = LockDao.NO_LEASE;
+    }
+
+    fencingToken = token;
+    if (token != LockDao.NO_LEASE) {
+      leaseValidUntilNanos = renewalStartNanos + TimeUnit.SECONDS.toNanos(leaseSeconds);
+      leader = true;
+      if (!wasLeader) {
+        logger.info(
+            String.format(
+                "%s became the scheduler leader with fencing token %d.", owner, fencingToken));
+      }
+    } else {
+      leader = false;
+      if (wasLeader) {
+        logger.warn(String.format("%s lost the scheduler leadership.", owner));
+      }
+    }
+  }
+
+  /** Whether this instance holds an unexpired lease and should run the scheduled runners */
+  public boolean isLeader() {
+    return !resigned && leader && System.nanoTime() - leaseValidUntilNanos < 0;
+  }
+
+  /**
+   * The lease this instance leads under, for fencing the writes made as the leader.
+   *
+   * @return the current lease, or null if this instance is not the leader
+   */
+  public Lease getLease() {
+    long token = fencingToken;
+    return isLeader() && token != LockDao.NO_LEASE ? new Lease(lockId, owner, token) : null;
+  }
+
+  /** Stops competing for leadership and frees the lease so another instance takes over promptly */
+  public synchronized void resign() {
+    boolean wasLeader = isLeader();
+    resigned = true;
+    leader = false;
+    if (renewer != null) {
+      renewer.shutdownNow();
+    }
+    if (wasLeader) {
+      lockDao.releaseLease(lockId, owner, fencingToken);
+      logger.info(String.format("%s resigned the scheduler leadership.", owner));
+    }
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  private static String buildOwnerId() {
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      host = "unknown-host";
+    }
+    // the random part keeps a restarted instance from inheriting the lease of its predecessor
+    return host + "-" + UUID.randomUUID().toString();
+  }
+}
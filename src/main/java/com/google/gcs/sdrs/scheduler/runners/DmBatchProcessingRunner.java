@@ -18,6 +18,7 @@
 package com.google.gcs.sdrs.scheduler.runners;
 
 import com.google.gcs.sdrs.service.manager.JobManager;
+import com.google.gcs.sdrs.service.manager.JobQueueFullException;
 import com.google.gcs.sdrs.service.worker.Worker;
 import com.google.gcs.sdrs.service.worker.impl.DmBatchProcessingWorker;
 import java.util.UUID;
@@ -38,6 +39,11 @@ public class DmBatchProcessingRunner implements Runnable {
     String uuid = UUID.randomUUID().toString();
     logger.info(String.format("Submitting DM batch processing job %s", uuid));
     Worker dmBatchProcessingWorker = new DmBatchProcessingWorker(uuid);
-    JobManager.getInstance().submitJob(dmBatchProcessingWorker);
+    try {
+      JobManager.getInstance().submitJob(dmBatchProcessingWorker);
+    } catch (JobQueueFullException e) {
+      // Catch here so the scheduled task is not cancelled. The next run picks up the batch.
+      logger.warn(String.format("DM batch processing job %s skipped: %s", uuid, e.getMessage()));
+    }
   }
 }
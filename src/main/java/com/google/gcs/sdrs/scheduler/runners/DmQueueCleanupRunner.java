@@ -14,23 +14,109 @@
  * Any software provided by Google hereunder is distributed “AS IS”,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
  *
- */
 
 package com.google.gcs.sdrs.scheduler.runners;
 
+import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.dao.DmQueueDao;
+import com.google.gcs.sdrs.dao.Lease;
 import com.google.gcs.sdrs.dao.SingletonDao;
+import com.google.gcs.sdrs.dao.StaleLeaseException;
+import com.google.gcs.sdrs.scheduler.LeaderElection;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Remove successfully processed requests from the queue. */
+/**
+ * Remove successfully processed requests from the queue. The requests are deleted in chunks, each
+ * in a short transaction of its own and with a pause in between, so the cleanup never holds locks
+ * on the queue for long and DM batch processing keeps writing to it while the cleanup runs.
+ */
 public class DmQueueCleanupRunner implements Runnable {
   private static final Logger logger = LoggerFactory.getLogger(DmQueueCleanupRunner.class);
 
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+  public static final int CHUNK_SIZE =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "scheduler.task.dmQueueCleanup.chunkSize", String.valueOf(DEFAULT_CHUNK_SIZE)));
+
+  public static final int DEFAULT_PAUSE_MILLIS = 200;
+  public static final int PAUSE_MILLIS =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "scheduler.task.dmQueueCleanup.pauseMillis", String.valueOf(DEFAULT_PAUSE_MILLIS)));
+
+  public static final boolean DEFAULT_ARCHIVE = false;
+  public static final boolean ARCHIVE =
+      Boolean.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "scheduler.task.dmQueueCleanup.archive", String.valueOf(DEFAULT_ARCHIVE)));
+
+  private final DmQueueDao dmQueueDao;
+  private final Supplier<Lease> leaseSupplier;
+  private final int chunkSize;
+  private final long pauseMillis;
+  private final boolean archive;
+
+  public DmQueueCleanupRunner() {
+    this(
+        SingletonDao.getDmQueueDao(),
+        () -> LeaderElection.getInstance().getLease(),
+        CHUNK_SIZE,
+        PAUSE_MILLIS,
+        ARCHIVE);
+  }
+
+  DmQueueCleanupRunner(
+      DmQueueDao dmQueueDao,
+      Supplier<Lease> leaseSupplier,
+      int chunkSize,
+      long pauseMillis,
+      boolean archive) {
+    this.dmQueueDao = dmQueueDao;
+    this.leaseSupplier = leaseSupplier;
+    this.chunkSize = Math.max(1, chunkSize);
+    this.pauseMillis = pauseMillis;
+    this.archive = archive;
+  }
+
   @Override
   public void run() {
-    DmQueueDao dmQueueDao = SingletonDao.getDmQueueDao();
-    int result = dmQueueDao.deleteSuccessfulDmRequests();
-    logger.info(String.format("Removed %d successfully processed DM requests.", result));
+    long startMillis = System.currentTimeMillis();
+    int removed = 0;
+    int chunks = 0;
+    try {
+      while (true) {
+        // leadership is checked again for every chunk, so a cleanup stops soon after it is lost
+        Lease lease = leaseSupplier.get();
+        if (lease == null) {
+          logger.info("Stopping DM queue cleanup. This instance is not the scheduler leader.");
+          break;
+        }
+        int deleted = dmQueueDao.deleteSuccessfulDmRequests(lease, chunkSize, archive);
+        removed += deleted;
+        chunks++;
+        if (deleted < chunkSize) {
+          break;
+        }
+        Thread.sleep(pauseMillis);
+      }
+    } catch (StaleLeaseException e) {
+      logger.warn("DM queue cleanup stopped. The scheduler leadership passed on.", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.warn("DM queue cleanup interrupted.");
+    }
+
+    long elapsedMillis = Math.max(1, System.currentTimeMillis() - startMillis);
+    logger.info(
+        String.format(
+            "Removed %d successfully processed DM requests%s in %d chunks in %d ms (%.2f rows/s).",
+            removed,
+            archive ? " to dm_queue_history" : "",
+            chunks,
+            elapsedMillis,
+            removed * 1000.0 / elapsedMillis));
   }
 }
@@ -17,18 +17,40 @@
 
 package com.google.gcs.sdrs.service;
 
+import com.google.gcs.sdrs.controller.pojo.EventStatusResponse;
 import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
 import com.google.gcs.sdrs.controller.pojo.NotificationEventRequest;
+import com.google.gcs.sdrs.service.manager.JobQueueFullException;
 
 /** Interface exposing event behaviors. */
 public interface EventsService {
 
-  /** Process an execution service event asynchronously */
-  void processExecutionEvent(ExecutionEventRequest request, String correlationId);
+  /**
+   * Process an execution service event asynchronously
+   *
+   * @return the correlation id of the run handling the event, which belongs to an earlier request
+   *     when the event is attached to equivalent in-flight work
+   */
+  String processExecutionEvent(ExecutionEventRequest request, String correlationId)
+      throws JobQueueFullException;
 
-  /** Procees the validation service event asynchronously */
-  void processValidationEvent(String correlationId);
+  /**
+   * Procees the validation service event asynchronously
+   *
+   * @return the correlation id of the run handling the event, which belongs to an earlier request
+   *     when a validation run is already in flight
+   */
+  String processValidationEvent(String correlationId) throws JobQueueFullException;
 
   /** Process the notification service event asynchronously */
-  void processDeleteNotificationEvent(NotificationEventRequest request, String correlationId);
+  void processDeleteNotificationEvent(NotificationEventRequest request, String correlationId)
+      throws JobQueueFullException;
+
+  /**
+   * Gets the status of the run started by an event
+   *
+   * @param correlationId the correlation id of the request that started the run
+   * @return the run status, or null if the run is unknown
+   */
+  EventStatusResponse getEventStatus(String correlationId);
 }
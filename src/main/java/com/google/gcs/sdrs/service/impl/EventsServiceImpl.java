@@ -17,14 +17,23 @@
 
 package com.google.gcs.sdrs.service.impl;
 
+import com.google.gcs.sdrs.common.ExecutionEventType;
+import com.google.gcs.sdrs.controller.pojo.EventChildStatus;
+import com.google.gcs.sdrs.controller.pojo.EventStatusResponse;
 import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
 import com.google.gcs.sdrs.controller.pojo.NotificationEventRequest;
 import com.google.gcs.sdrs.service.EventsService;
 import com.google.gcs.sdrs.service.manager.JobManager;
+import com.google.gcs.sdrs.service.manager.JobQueueFullException;
+import com.google.gcs.sdrs.service.manager.WorkerResultRegistry;
+import com.google.gcs.sdrs.service.worker.WorkerResult;
 import com.google.gcs.sdrs.service.worker.Worker;
 import com.google.gcs.sdrs.service.worker.impl.DeleteNotificationWorker;
 import com.google.gcs.sdrs.service.worker.impl.ExecuteRetentionWorker;
 import com.google.gcs.sdrs.service.worker.impl.ValidationWorker;
+import java.util.ArrayList;
+import java.util.List;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,24 +41,42 @@ import org.slf4j.LoggerFactory;
 public class EventsServiceImpl implements EventsService {
 
   JobManager jobManager;
+  WorkerResultRegistry resultRegistry;
 
+  static final String VALIDATION_COALESCING_KEY = "VALIDATION:global";
   private static final Logger logger = LoggerFactory.getLogger(EventsServiceImpl.class);
 
   public EventsServiceImpl() {
     jobManager = JobManager.getInstance();
+    resultRegistry = WorkerResultRegistry.getInstance();
   }
 
+  /**
+   * Submits an execution job to the JobManager. A POLICY execution is coalesced with an in-flight
+   * POLICY execution of the same scope.
+   *
+   * @return the correlation id of the run handling the event
+   */
   @Override
-  public void processExecutionEvent(ExecutionEventRequest request, String correlationId) {
+  public String processExecutionEvent(ExecutionEventRequest request, String correlationId)
+      throws JobQueueFullException {
     Worker worker = new ExecuteRetentionWorker(request, correlationId);
+    if (request.getExecutionEventType() == ExecutionEventType.POLICY) {
+      return jobManager.submitJob(worker, buildPolicyCoalescingKey(request));
+    }
     jobManager.submitJob(worker);
+    return correlationId;
   }
 
-  /** Submits a validation job to the JobManager. */
+  /**
+   * Submits a validation job to the JobManager, unless a validation run is already in flight.
+   *
+   * @return the correlation id of the run handling the event
+   */
   @Override
-  public void processValidationEvent(String correlationId) {
+  public String processValidationEvent(String correlationId) throws JobQueueFullException {
     Worker worker = new ValidationWorker(correlationId);
-    jobManager.submitJob(worker);
+    return jobManager.submitJob(worker, VALIDATION_COALESCING_KEY);
   }
 
   /**
@@ -57,11 +84,88 @@ public class EventsServiceImpl implements EventsService {
    *
    * @param request
    * @param correlationId
+   * @throws JobQueueFullException when the JobManager can not accept more work
    */
   @Override
   public void processDeleteNotificationEvent(
-      NotificationEventRequest request, String correlationId) {
+      NotificationEventRequest request, String correlationId) throws JobQueueFullException {
     Worker worker = new DeleteNotificationWorker(request, correlationId);
-    JobManager.getInstance().submitJob(worker);
+    jobManager.submitJob(worker);
+  }
+
+  /**
+   * Gets the status of the run started by an event
+   *
+   * @param correlationId the correlation id of the request that started the run
+   * @return the run status, or null if the run is unknown
+   */
+  @Override
+  public EventStatusResponse getEventStatus(String correlationId) {
+    WorkerResult result = resultRegistry.find(correlationId);
+    if (result == null) {
+      return null;
+    }
+
+    return buildEventStatusResponse(result, System.currentTimeMillis());
+  }
+
+  /**
+   * Builds the status response of a run, including the status and timing of each unit of work the
+   * run fanned out to. Results loaded from the persisted history have no children.
+   */
+  static EventStatusResponse buildEventStatusResponse(WorkerResult result, long nowMillis) {
+    EventStatusResponse response = new EventStatusResponse();
+    response.setCorrelationId(result.getId());
+    response.setType(result.getType());
+    response.setStatus(String.valueOf(result.getStatus()));
+    response.setStartTime(formatTime(result.getStartTime()));
+    response.setEndTime(formatTime(result.getEndTime()));
+    response.setDurationMillis(getDurationMillis(result, nowMillis));
+
+    List<WorkerResult> childResults = result.getChildResults();
+    if (!childResults.isEmpty()) {
+      List<EventChildStatus> children = new ArrayList<>();
+      for (WorkerResult childResult : childResults) {
+        EventChildStatus child = new EventChildStatus();
+        child.setId(childResult.getId());
+        child.setType(childResult.getType());
+        child.setStatus(String.valueOf(childResult.getStatus()));
+        child.setStartTime(formatTime(childResult.getStartTime()));
+        child.setEndTime(formatTime(childResult.getEndTime()));
+        child.setDurationMillis(getDurationMillis(childResult, nowMillis));
+        children.add(child);
+      }
+      response.setChildren(children);
+    }
+    return response;
+  }
+
+  private static String formatTime(DateTime time) {
+    return time != null ? time.toString() : null;
+  }
+
+  /** Gets the duration of a result, up to now while it is still running */
+  private static Long getDurationMillis(WorkerResult result, long nowMillis) {
+    if (result.getStartTime() == null) {
+      return null;
+    }
+    long endMillis = result.getEndTime() != null ? result.getEndTime().getMillis() : nowMillis;
+    return endMillis - result.getStartTime().getMillis();
+  }
+
+  /**
+   * Builds the key identifying equivalent POLICY executions. The scope follows the way the worker
+   * selects the rules to run: a single target of a project, a whole project, or every project.
+   */
+  static String buildPolicyCoalescingKey(ExecutionEventRequest request) {
+    String projectId = request.getProjectId();
+    String target = request.getTarget();
+    if (projectId == null || projectId.isEmpty()) {
+      return ExecutionEventType.POLICY + ":global";
+    }
+    if (target == null || target.isEmpty()) {
+      return String.format("%s:project:%s", ExecutionEventType.POLICY, projectId);
+    }
+    return String.format("%s:target:%s:%s", ExecutionEventType.POLICY, projectId, target);
   }
 }
@@ -26,6 +26,7 @@ import com.google.gcs.sdrs.dao.PooledStsJobDao;
 import com.google.gcs.sdrs.dao.SingletonDao;
 import com.google.gcs.sdrs.dao.model.PooledStsJob;
 import com.google.gcs.sdrs.service.JobPoolService;
+import com.google.gcs.sdrs.service.worker.rule.impl.PooledJobCache;
 import com.google.gcs.sdrs.util.CredentialsUtil;
 import com.google.gcs.sdrs.util.StsUtil;
 import java.io.IOException;
@@ -68,6 +69,8 @@ public class JobPoolServiceImpl implements JobPoolService {
   public Integer createJob(PooledJobCreateRequest request) {
     PooledStsJob pooledStsJob = convertToEntity(request);
     pooledStsJob.setId(pooledStsJobDao.save(pooledStsJob));
+    PooledJobCache.getInstance()
+        .invalidatePool(pooledStsJob.getSourceBucket(), pooledStsJob.getSourceProject());
     return pooledStsJob.getId();
   }
 
@@ -80,6 +83,7 @@ public class JobPoolServiceImpl implements JobPoolService {
       for (PooledJobCreateRequest pooledJobCreateRequest : pooledJobCreateRequests) {
         pooledStsJobDao.save(convertToEntity(pooledJobCreateRequest));
       }
+      PooledJobCache.getInstance().invalidatePool(sourceBucket, sourceProject);
       return true;
     } else {
       return false;
@@ -172,7 +176,9 @@ public class JobPoolServiceImpl implements JobPoolService {
 
   @Override
   public Boolean deleteAllJobsByBucketName(String sourceBucket, String sourceProject) {
-    return pooledStsJobDao.deleteAllJobsByBucketName(sourceBucket, sourceProject);
+    Boolean isDeleted = pooledStsJobDao.deleteAllJobsByBucketName(sourceBucket, sourceProject);
+    PooledJobCache.getInstance().invalidatePool(sourceBucket, sourceProject);
+    return isDeleted;
   }
 
   protected PooledStsJob convertToEntity(PooledJobCreateRequest request) {
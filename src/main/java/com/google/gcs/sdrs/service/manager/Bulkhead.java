@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.service.manager;
+
+import com.google.gcs.sdrs.service.worker.WorkerBulkhead;
+import com.google.gcs.sdrs.service.worker.WorkerPriority;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An isolated JobManager pool with its own threads and bounded priority queue. Workers of one
+ * bulkhead never wait for threads of another.
+ */
+public class Bulkhead {
+
+  private final WorkerBulkhead type;
+  private final int threadPoolSize;
+  private final int queueCapacity;
+  private final int deadlineSeconds;
+  private final ThreadPoolExecutor executorService;
+  private final AtomicLong submissionSequence = new AtomicLong(0);
+  private final AtomicLong rejectedJobCount = new AtomicLong(0);
+  private final AtomicLong completedJobCount = new AtomicLong(0);
+  private final AtomicLong timedOutJobCount = new AtomicLong(0);
+
+  /**
+   * Constructor for a bulkhead
+   *
+   * @param type the bulkhead workers are assigned to
+   * @param threadPoolSize the number of workers that can run at once
+   * @param queueCapacity the number of workers that can wait for a thread
+   * @param deadlineSeconds how long a worker may run before it is cancelled, 0 for no limit
+   */
+  Bulkhead(WorkerBulkhead type, int threadPoolSize, int queueCapacity, int deadlineSeconds) {
+    this.type = type;
+    this.threadPoolSize = Math.max(1, threadPoolSize);
+    this.queueCapacity = queueCapacity;
+    this.deadlineSeconds = Math.max(0, deadlineSeconds);
+    String threadPrefix = "jobManager-" + type.getConfigName() + "-";
+    AtomicInteger threadCount = new AtomicInteger(0);
+    ThreadFactory threadFactory =
+        runnable -> new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+    // Only PrioritizedJob instances are queued, so the natural ordering applies
+    executorService =
+        new ThreadPoolExecutor(
+            this.threadPoolSize,
+            this.threadPoolSize,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(Math.max(1, queueCapacity)),
+            threadFactory);
+  }
+
+  /** Whether no more workers can wait for a thread */
+  boolean isFull() {
+    return getQueueDepth() >= queueCapacity;
+  }
+
+  /**
+   * Queues a task for execution
+   *
+   * @param task the task to run
+   * @param priority the priority of the worker backing the task
+   * @throws RejectedExecutionException when the bulkhead is shut down
+   */
+  void execute(Runnable task, WorkerPriority priority) {
+    executorService.execute(
+        new PrioritizedJob(task, priority, submissionSequence.incrementAndGet()));
+  }
+
+  long recordRejection() {
+    return rejectedJobCount.incrementAndGet();
+  }
+
+  void recordCompletion() {
+    completedJobCount.incrementAndGet();
+  }
+
+  void recordTimeout() {
+    timedOutJobCount.incrementAndGet();
+  }
+
+  void shutdown() {
+    executorService.shutdown();
+  }
+
+  void shutdownNow() {
+    executorService.shutdownNow();
+  }
+
+  boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return executorService.awaitTermination(timeout, unit);
+  }
+
+  public WorkerBulkhead getType() {
+    return type;
+  }
+
+  public int getThreadPoolSize() {
+    return threadPoolSize;
+  }
+
+  /** Gets how long a worker may run before it is cancelled, 0 for no limit */
+  public int getDeadlineSeconds() {
+    return deadlineSeconds;
+  }
+
+  /** Gets the number of threads currently running a worker */
+  public int getActiveCount() {
+    return executorService.getActiveCount();
+  }
+
+  /** Gets the fraction of threads currently running a worker, between 0 and 1 */
+  public double getUtilization() {
+    return (double) getActiveCount() / threadPoolSize;
+  }
+
+  /** Gets the number of submitted workers waiting for a thread */
+  public int getQueueDepth() {
+    return executorService.getQueue().size();
+  }
+
+  /** Gets the maximum number of workers that can wait for a thread */
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /** Gets the number of workers rejected because the queue was full */
+  public long getRejectedJobCount() {
+    return rejectedJobCount.get();
+  }
+
+  /** Gets the number of workers that have completed */
+  public long getCompletedJobCount() {
+    return completedJobCount.get();
+  }
+
+  /** Gets the number of workers cancelled because they ran past the deadline */
+  public long getTimedOutJobCount() {
+    return timedOutJobCount.get();
+  }
+}
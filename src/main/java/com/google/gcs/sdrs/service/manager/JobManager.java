@@ -18,44 +18,69 @@
 
 package com.google.gcs.sdrs.service.manager;
 
-import com.google.gcs.sdrs.scheduler.JobScheduler;
+import com.google.gcs.sdrs.common.WorkerDeadline;
 import com.google.gcs.sdrs.service.worker.Worker;
+import com.google.gcs.sdrs.service.worker.WorkerBulkhead;
 import com.google.gcs.sdrs.service.worker.WorkerResult;
 
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.builder.fluent.Configurations;
 import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * JobManager for creating and managing worker threads.
+ * JobManager for creating and managing worker threads. Each worker runs in the {@link Bulkhead} of
+ * its {@link WorkerBulkhead}, where it waits in a bounded queue ordered by
+ * {@link com.google.gcs.sdrs.service.worker.WorkerPriority} and is rejected once the queue is full.
+ * A worker running past the deadline of its bulkhead is cancelled and reported as TIMED_OUT.
+ * Worker results are handed to the {@link JobManagerMonitor} as each worker completes. Equivalent
+ * work submitted while a worker is in flight can be coalesced into that worker.
  */
 public class JobManager {
-  CompletionService<WorkerResult> completionService;
   AtomicInteger activeWorkerCount = new AtomicInteger(0);
+  final JobManagerMonitor monitor;
+  WorkerResultRegistry resultRegistry;
 
-  private ExecutorService executorService;
+  final Map<WorkerBulkhead, Bulkhead> bulkheads = new EnumMap<>(WorkerBulkhead.class);
+  private final AtomicLong coalescedJobCount = new AtomicLong(0);
+  // Keyed by coalescing key. Entries are removed from worker threads as workers complete.
+  private final Map<String, Worker> inFlightJobs = new ConcurrentHashMap<>();
+  // Cancels workers that run past the deadline of their bulkhead
+  private final ScheduledExecutorService deadlineTimer =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "jobManager-deadline");
+            thread.setDaemon(true);
+            return thread;
+          });
 
   private static JobManager instance;
-  private static JobScheduler scheduler;
-  private static JobManagerMonitor monitor;
   private static int DEFAULT_THREAD_POOL_SIZE = 10;
   private static int DEFAULT_SLEEP_MINUTES = 5;
-  private static int DEFAULT_MONITOR_INITIAL_DELAY = 0;
-  private static int DEFAULT_MONITOR_FREQUENCY = 30;
-  private static TimeUnit DEFAULT_MONITOR_TIME_UNIT = TimeUnit.MINUTES;
+  private static int DEFAULT_QUEUE_CAPACITY = 100;
+  private static int DEFAULT_RETRY_AFTER_SECONDS = 30;
+  private static int DEFAULT_DEADLINE_SECONDS = WorkerBulkhead.DEFAULT.getDefaultDeadlineSeconds();
   private static int THREAD_POOL_SIZE;
   private static int SLEEP_MINUTES;
-  private static int MONITOR_INITIAL_DELAY;
-  private static int MONITOR_FREQUENCY;
-  private static TimeUnit MONITOR_TIME_UNIT = TimeUnit.SECONDS;
+  private static int QUEUE_CAPACITY;
+  private static int RETRY_AFTER_SECONDS;
+  private static int DEADLINE_SECONDS;
   private static final Logger logger = LoggerFactory.getLogger(JobManager.class);
 
   /**
@@ -66,11 +91,6 @@ public class JobManager {
     if (instance == null) {
       logger.info("JobManager not created. Creating...");
       instance = new JobManager();
-
-      monitor = new JobManagerMonitor(instance);
-      scheduler = JobScheduler.getInstance();
-      scheduler.submitScheduledJob(monitor,
-          MONITOR_INITIAL_DELAY, MONITOR_FREQUENCY, MONITOR_TIME_UNIT);
     }
 
     return instance;
@@ -81,8 +101,8 @@ public class JobManager {
    */
   public void shutDownJobManagerNow(){
     logger.info("Forcing shutdown now...");
-    executorService.shutdownNow();
-    scheduler.shutdownSchedulerNow();
+    bulkheads.values().forEach(Bulkhead::shutdownNow);
+    deadlineTimer.shutdownNow();
 
     // Ensure the job manager instance is destroyed
     instance = null;
@@ -97,15 +117,20 @@ public class JobManager {
     logger.info("Shutting down JobManager.");
     // waits nicely for executing tasks to finish, and won't spawn new ones
     logger.info("Attempting graceful shutdown...");
-    executorService.shutdown();
+    bulkheads.values().forEach(Bulkhead::shutdown);
+    // the bulkheads share one shutdown deadline
+    long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(SLEEP_MINUTES);
     try {
-      if (!executorService.awaitTermination(SLEEP_MINUTES, TimeUnit.MINUTES)) {
-        executorService.shutdownNow();
+      for (Bulkhead bulkhead : bulkheads.values()) {
+        long remaining = deadline - System.nanoTime();
+        if (!bulkhead.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+          bulkhead.shutdownNow();
+        }
       }
     } catch (InterruptedException e) {
-      executorService.shutdownNow();
+      bulkheads.values().forEach(Bulkhead::shutdownNow);
     }
-    scheduler.shutdownScheduler();
+    deadlineTimer.shutdownNow();
 
     // Ensure the job manager instance is destroyed
     instance = null;
@@ -116,33 +141,243 @@ public class JobManager {
   /**
    * Submits a callable worker for execution
    * @param job A callable that returns a WorkerResult record.
+   * @throws JobQueueFullException when the job queue is at capacity
    */
-  public void submitJob(Worker job) {
-    completionService.submit(job);
+  public synchronized void submitJob(Worker job) throws JobQueueFullException {
+    enqueue(job, null);
+  }
+
+  /**
+   * Submits a callable worker for execution unless equivalent work is already in flight. While a
+   * worker submitted with the same coalescing key is queued or running, the new worker is dropped
+   * and the caller is attached to the existing one.
+   * @param job A callable that returns a WorkerResult record.
+   * @param coalescingKey identifies equivalent work, such as an event type and its scope
+   * @return the id of the worker handling the work, which is the correlation id of the request
+   *     that started it
+   * @throws JobQueueFullException when the job queue is at capacity
+   */
+  public synchronized String submitJob(Worker job, String coalescingKey)
+      throws JobQueueFullException {
+    Worker inFlightJob = inFlightJobs.get(coalescingKey);
+    if (inFlightJob != null) {
+      long coalesced = coalescedJobCount.incrementAndGet();
+      logger.info(
+          String.format(
+              "Job %s coalesced into in-flight job %s for %s. Total coalesced: %d",
+              job.getWorkerResult().getId(),
+              inFlightJob.getWorkerResult().getId(),
+              coalescingKey,
+              coalesced));
+      return inFlightJob.getWorkerResult().getId();
+    }
+
+    inFlightJobs.put(coalescingKey, job);
+    try {
+      enqueue(job, coalescingKey);
+    } catch (JobQueueFullException ex) {
+      inFlightJobs.remove(coalescingKey, job);
+      throw ex;
+    }
+    return job.getWorkerResult().getId();
+  }
+
+  private void enqueue(Worker job, String coalescingKey) throws JobQueueFullException {
+    Bulkhead bulkhead = getBulkhead(job.getBulkhead());
+    if (bulkhead.isFull()) {
+      rejectJob(job, bulkhead);
+    }
+
+    WorkerDeadline deadline =
+        bulkhead.getDeadlineSeconds() > 0
+            ? new WorkerDeadline(TimeUnit.SECONDS.toMillis(bulkhead.getDeadlineSeconds()))
+            : null;
+    FutureTask<WorkerResult> future =
+        new FutureTask<WorkerResult>(deadline == null ? job : deadline.bind(job)) {
+          @Override
+          protected void done() {
+            if (isTimedOut(this, deadline)) {
+              // runs on the deadline timer while the worker thread may still be busy, so the
+              // worker is completed by withDeadline once its thread is free
+              markTimedOut(job, bulkhead, deadline);
+            } else {
+              complete(job, this, coalescingKey, bulkhead);
+            }
+          }
+        };
+    job.getWorkerResult().setStatus(WorkerResult.WorkerResultStatus.QUEUED);
+    resultRegistry.register(job.getWorkerResult());
+    // Count the worker before it can run so the completion callback never sees a stale count
     activeWorkerCount.incrementAndGet();
+    try {
+      bulkhead.execute(
+          deadline == null
+              ? future
+              : withDeadline(
+                  future, deadline, () -> complete(job, future, coalescingKey, bulkhead)),
+          job.getPriority());
+    } catch (RejectedExecutionException ex) {
+      activeWorkerCount.decrementAndGet();
+      rejectJob(job, bulkhead);
+    }
     logger.debug("Active Workers after submission: " + activeWorkerCount.get());
-    logger.info("Job submitted: " + job.getWorkerResult().toString());
+    logger.info(
+        String.format(
+            "Job submitted to %s bulkhead with %s priority: %s",
+            bulkhead.getType().getConfigName(),
+            job.getPriority(),
+            job.getWorkerResult().toString()));
+  }
+
+  /**
+   * Releases the coalescing key and the bulkhead slot of a worker and hands its result to the
+   * monitor. Called once the worker no longer uses its thread.
+   */
+  private void complete(
+      Worker job, FutureTask<WorkerResult> future, String coalescingKey, Bulkhead bulkhead) {
+    if (coalescingKey != null) {
+      inFlightJobs.remove(coalescingKey, job);
+    }
+    bulkhead.recordCompletion();
+    monitor.onWorkerComplete(job, future);
+  }
+
+  private static boolean isTimedOut(FutureTask<WorkerResult> future, WorkerDeadline deadline) {
+    return future.isCancelled() && deadline != null && deadline.isExpired();
+  }
+
+  /**
+   * Wraps a worker's task so its deadline starts counting once it leaves the queue. When the
+   * deadline passes the task is cancelled, interrupting the worker thread so the worker can stop
+   * and free its thread. A timed out worker is completed only after it returns, so equivalent work
+   * stays coalesced into it and its bulkhead slot stays taken while it still runs.
+   */
+  private Runnable withDeadline(
+      FutureTask<WorkerResult> future, WorkerDeadline deadline, Runnable completeTimedOut) {
+    return () -> {
+      deadline.start();
+      ScheduledFuture<?> timeout =
+          deadlineTimer.schedule(
+              () -> {
+                deadline.expire();
+                future.cancel(true);
+              },
+              deadline.getTimeoutMillis(),
+              TimeUnit.MILLISECONDS);
+      try {
+        future.run();
+      } finally {
+        timeout.cancel(false);
+        if (isTimedOut(future, deadline)) {
+          completeTimedOut.run();
+        }
+      }
+    };
+  }
+
+  private void markTimedOut(Worker job, Bulkhead bulkhead, WorkerDeadline deadline) {
+    WorkerResult result = job.getWorkerResult();
+    result.setStatus(WorkerResult.WorkerResultStatus.TIMED_OUT);
+    result.setEndTime(DateTime.now(DateTimeZone.UTC));
+    bulkhead.recordTimeout();
+    logger.warn(
+        String.format(
+            "Worker %s exceeded the %d ms deadline of the %s bulkhead and was cancelled.",
+            result.getId(), deadline.getTimeoutMillis(), bulkhead.getType().getConfigName()));
+  }
+
+  /**
+   * Gets the bulkhead workers of the given type run in. Types without a configured bulkhead run in
+   * the default one.
+   */
+  public Bulkhead getBulkhead(WorkerBulkhead type) {
+    Bulkhead bulkhead = type == null ? null : bulkheads.get(type);
+    return bulkhead != null ? bulkhead : bulkheads.get(WorkerBulkhead.DEFAULT);
+  }
+
+  /** Gets every bulkhead, in {@link WorkerBulkhead} order */
+  public Collection<Bulkhead> getBulkheads() {
+    return Collections.unmodifiableCollection(bulkheads.values());
+  }
+
+  /** Gets the number of submitted workers waiting for a thread across all bulkheads */
+  public int getQueueDepth() {
+    return bulkheads.values().stream().mapToInt(Bulkhead::getQueueDepth).sum();
+  }
+
+  /** Gets the maximum number of workers that can wait for a thread across all bulkheads */
+  public int getQueueCapacity() {
+    return bulkheads.values().stream().mapToInt(Bulkhead::getQueueCapacity).sum();
+  }
+
+  /** Gets the number of workers rejected since the JobManager was created */
+  public long getRejectedJobCount() {
+    return bulkheads.values().stream().mapToLong(Bulkhead::getRejectedJobCount).sum();
+  }
+
+  /** Gets the number of workers attached to equivalent in-flight work instead of running */
+  public long getCoalescedJobCount() {
+    return coalescedJobCount.get();
+  }
+
+  private void rejectJob(Worker job, Bulkhead bulkhead) throws JobQueueFullException {
+    long rejected = bulkhead.recordRejection();
+    String message =
+        String.format(
+            "Job queue of %s bulkhead is full (%d/%d). Rejected job %s. Total rejections: %d",
+            bulkhead.getType().getConfigName(),
+            bulkhead.getQueueDepth(),
+            bulkhead.getQueueCapacity(),
+            job.getWorkerResult().getId(),
+            rejected);
+    logger.warn(message);
+    throw new JobQueueFullException(message, RETRY_AFTER_SECONDS);
   }
 
   private JobManager () {
+    Configuration config = null;
     try{
-      Configuration config = new Configurations().xml("applicationConfig.xml");
+      config = new Configurations().xml("applicationConfig.xml");
       THREAD_POOL_SIZE = config.getInt("jobManager.threadPoolSize");
       SLEEP_MINUTES = config.getInt("jobManager.shutdownSleepMinutes");
-      MONITOR_INITIAL_DELAY = config.getInt("jobManager.monitor.initialDelay");
-      MONITOR_FREQUENCY = config.getInt("jobManager.monitor.frequency");
-      MONITOR_TIME_UNIT = TimeUnit.valueOf(config.getString("jobManager.monitor.timeUnit"));
+      QUEUE_CAPACITY = config.getInt("jobManager.queueCapacity", DEFAULT_QUEUE_CAPACITY);
+      RETRY_AFTER_SECONDS =
+          config.getInt("jobManager.retryAfterSeconds", DEFAULT_RETRY_AFTER_SECONDS);
+      DEADLINE_SECONDS = config.getInt("jobManager.deadlineSeconds", DEFAULT_DEADLINE_SECONDS);
     } catch (ConfigurationException ex) {
       logger.error("Configuration file could not be read. Using defaults: " + ex.getMessage());
       THREAD_POOL_SIZE = DEFAULT_THREAD_POOL_SIZE;
       SLEEP_MINUTES = DEFAULT_SLEEP_MINUTES;
-      MONITOR_INITIAL_DELAY = DEFAULT_MONITOR_INITIAL_DELAY;
-      MONITOR_FREQUENCY = DEFAULT_MONITOR_FREQUENCY;
-      MONITOR_TIME_UNIT = DEFAULT_MONITOR_TIME_UNIT;
+      QUEUE_CAPACITY = DEFAULT_QUEUE_CAPACITY;
+      RETRY_AFTER_SECONDS = DEFAULT_RETRY_AFTER_SECONDS;
+      DEADLINE_SECONDS = DEFAULT_DEADLINE_SECONDS;
     }
 
-    executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
-    completionService = new ExecutorCompletionService<>(executorService);
+    monitor = new JobManagerMonitor(this);
+    resultRegistry = WorkerResultRegistry.getInstance();
+    bulkheads.put(
+        WorkerBulkhead.DEFAULT,
+        new Bulkhead(
+            WorkerBulkhead.DEFAULT, THREAD_POOL_SIZE, QUEUE_CAPACITY, DEADLINE_SECONDS));
+    for (WorkerBulkhead type : WorkerBulkhead.values()) {
+      if (type == WorkerBulkhead.DEFAULT) {
+        continue;
+      }
+      String prefix = "jobManager.bulkheads." + type.getConfigName();
+      int threadPoolSize = type.getDefaultThreadPoolSize();
+      int queueCapacity = type.getDefaultQueueCapacity();
+      int deadlineSeconds = type.getDefaultDeadlineSeconds();
+      if (config != null) {
+        threadPoolSize = config.getInt(prefix + ".threadPoolSize", threadPoolSize);
+        queueCapacity = config.getInt(prefix + ".queueCapacity", queueCapacity);
+        deadlineSeconds = config.getInt(prefix + ".deadlineSeconds", deadlineSeconds);
+      }
+      bulkheads.put(type, new Bulkhead(type, threadPoolSize, queueCapacity, deadlineSeconds));
+      logger.info(
+          String.format(
+              "Bulkhead %s created with %d threads, a queue of %d and a deadline of %d seconds.",
+              type.getConfigName(), threadPoolSize, queueCapacity, deadlineSeconds));
+    }
     logger.info("JobManager instance created.");
   }
 }
@@ -18,66 +18,73 @@
 
 package com.google.gcs.sdrs.service.manager;
 
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gcs.sdrs.service.worker.Worker;
 import com.google.gcs.sdrs.service.worker.WorkerResult;
 
 /**
- * A Runnable background monitoring thread for the results of workers managed by the JobManager.
+ * Handles the results of workers managed by the JobManager. Each worker reports to the monitor
+ * from its own thread as soon as it completes, so no thread is held waiting for results.
  */
-class JobManagerMonitor implements Runnable {
+class JobManagerMonitor {
 
   private JobManager jobManager;
   private static final Logger logger = LoggerFactory.getLogger(JobManagerMonitor.class);
 
   /**
-   * Constructor for the job manager monitor thread
-   * @param jobManager the job manager instance that this thread will monitor
+   * Constructor for the job manager monitor
+   * @param jobManager the job manager instance whose workers this monitor reports on
    */
   JobManagerMonitor(JobManager jobManager){
     this.jobManager = jobManager;
   }
 
   /**
-   * Runs the monitoring thread.
+   * Records the result of a completed worker. Called once per worker when its future is done, so
+   * reading the result never blocks.
+   * @param job the completed worker
+   * @param callResult the completed future of the worker
    */
-  public void run() {
-    logger.info("Looking for worker results...");
-    if (jobManager.activeWorkerCount.get() > 0) {
-      try{
-        getWorkerResults();
-      } catch (InterruptedException ex){
-        logger.error("Could not retrieve results. Job Manager interrupted:" + ex.getCause());
+  void onWorkerComplete(Worker job, Future<WorkerResult> callResult) {
+    jobManager.activeWorkerCount.decrementAndGet();
+    logger.debug("Active Workers after completion: " + jobManager.activeWorkerCount.get());
+    WorkerResult result;
+    // get the underlying callable's result, if the Callable was able to create it
+    try {
+      result = callResult.get();
+      if(result.getStatus() == WorkerResult.WorkerResultStatus.FAILED){
+        logger.error(String.format("Worker %s failed: %s", result.getId(), result.toString()));
+      } else {
+        logger.info("Worker " + String.valueOf(result.getStatus()) + ": " + result.toString());
       }
+    } catch (ExecutionException e) {
+      logger.error("Error getting worker status: " + e.getCause());
+      markFailed(job.getWorkerResult());
+    } catch (CancellationException e) {
+      if (job.getWorkerResult().getStatus() == WorkerResult.WorkerResultStatus.TIMED_OUT) {
+        logger.warn("Worker timed out: " + job.getWorkerResult().toString());
+      } else {
+        logger.warn("Worker was cancelled before completing.");
+        markFailed(job.getWorkerResult());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Interrupted while reading worker result: " + e.getMessage());
     }
+    jobManager.resultRegistry.recordCompletion(job.getWorkerResult());
   }
 
-  /**
-   * Gets the results for any workers currently in flight.
-   * @throws InterruptedException when the thread is interrupted or shutdown
-   */
-  void getWorkerResults() throws InterruptedException {
-    logger.debug("Starting examining futures, there are " + jobManager.activeWorkerCount.get() + " workers in flight.");
-    while(jobManager.activeWorkerCount.get() > 0) {
-      // block until a callable completes
-      Future<WorkerResult> callResult = jobManager.completionService.take();
-      jobManager.activeWorkerCount.decrementAndGet();
-      logger.debug("Active Workers after result poll: " + jobManager.activeWorkerCount.get());
-      WorkerResult result;
-      // get the underlying callable's result, if the Callable was able to create it
-      try {
-        result = callResult.get();
-        if(result.getStatus().equals(WorkerResult.WorkerResultStatus.FAILED)){
-          logger.error(String.format("Worker %s failed: ", result.getId()), result);
-        } else {
-          logger.info("Worker " + result.getStatus().name() + ": " + result.toString());
-        }
-      } catch (ExecutionException e) {
-        logger.error("Error getting worker status: " + e.getCause());
-      }
+  private void markFailed(WorkerResult result) {
+    result.setStatus(WorkerResult.WorkerResultStatus.FAILED);
+    if (result.getEndTime() == null) {
+      result.setEndTime(DateTime.now(DateTimeZone.UTC));
     }
   }
 }
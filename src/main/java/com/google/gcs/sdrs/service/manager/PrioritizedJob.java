@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.service.manager;
+
+import com.google.gcs.sdrs.service.worker.WorkerPriority;
+
+/**
+ * A queued JobManager task ordered by worker priority. Tasks of the same priority run in the
+ * order they were submitted.
+ */
+class PrioritizedJob implements Runnable, Comparable<PrioritizedJob> {
+
+  private final Runnable task;
+  private final WorkerPriority priority;
+  private final long sequence;
+
+  /**
+   * Constructor for a prioritized job
+   *
+   * @param task the task to run
+   * @param priority the priority of the worker backing the task
+   * @param sequence the submission sequence number, used to keep FIFO order within a priority
+   */
+  PrioritizedJob(Runnable task, WorkerPriority priority, long sequence) {
+    this.task = task;
+    this.priority = priority == null ? WorkerPriority.NORMAL : priority;
+    this.sequence = sequence;
+  }
+
+  @Override
+  public void run() {
+    task.run();
+  }
+
+  @Override
+  public int compareTo(PrioritizedJob other) {
+    int result = priority.compareTo(other.priority);
+    if (result == 0) {
+      result = Long.compare(sequence, other.sequence);
+    }
+    return result;
+  }
+
+  WorkerPriority getPriority() {
+    return priority;
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.service.manager;
+
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.dao.SingletonDao;
+import com.google.gcs.sdrs.dao.WorkerResultHistoryDao;
+import com.google.gcs.sdrs.dao.model.WorkerResultHistory;
+import com.google.gcs.sdrs.service.worker.WorkerResult;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the most recent worker results in memory, keyed by worker id. Workers created for an HTTP
+ * request use the request correlation id as their worker id, so callers can look up the status of
+ * a run they triggered. The oldest result is evicted once the configured capacity is reached.
+ * Completed results can optionally be persisted so they outlive the buffer and the process.
+ */
+public class WorkerResultRegistry {
+
+  public static final int DEFAULT_CAPACITY = 1000;
+  public static final int CAPACITY =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "jobManager.resultHistory.capacity", String.valueOf(DEFAULT_CAPACITY)));
+  public static final boolean PERSIST_HISTORY =
+      Boolean.valueOf(
+          SdrsApplication.getAppConfigProperty("jobManager.resultHistory.persist", "false"));
+
+  private static WorkerResultRegistry instance;
+  private static final Logger logger = LoggerFactory.getLogger(WorkerResultRegistry.class);
+
+  private final Map<String, WorkerResult> results;
+  WorkerResultHistoryDao historyDao;
+
+  /**
+   * Gets the WorkerResultRegistry instance and creates one if it doesn't exist.
+   *
+   * @return the WorkerResultRegistry instance
+   */
+  public static synchronized WorkerResultRegistry getInstance() {
+    if (instance == null) {
+      instance = new WorkerResultRegistry(CAPACITY);
+    }
+    return instance;
+  }
+
+  WorkerResultRegistry(int capacity) {
+    // Insertion ordered, so the eldest entry is always the oldest submission
+    results =
+        new LinkedHashMap<String, WorkerResult>(16, 0.75f, false) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, WorkerResult> eldest) {
+            return size() > capacity;
+          }
+        };
+    if (PERSIST_HISTORY) {
+      historyDao = SingletonDao.getWorkerResultHistoryDao();
+    }
+  }
+
+  /**
+   * Tracks a submitted worker result. The registry keeps a reference to the live result, so
+   * lookups see status changes made by the worker.
+   *
+   * @param workerResult the result of a submitted worker
+   */
+  public synchronized void register(WorkerResult workerResult) {
+    if (workerResult == null || workerResult.getId() == null) {
+      return;
+    }
+    // Re-insert so a reused id counts as the newest entry
+    results.remove(workerResult.getId());
+    results.put(workerResult.getId(), workerResult);
+  }
+
+  /**
+   * Records a completed worker result in the persisted history, when enabled. Persistence
+   * failures are logged and never affect the worker.
+   *
+   * @param workerResult the result of a completed worker
+   */
+  public void recordCompletion(WorkerResult workerResult) {
+    if (historyDao == null || workerResult == null) {
+      return;
+    }
+    try {
+      historyDao.save(toHistory(workerResult));
+    } catch (RuntimeException e) {
+      logger.error(
+          String.format("Failed to persist result of worker %s.", workerResult.getId()), e);
+    }
+  }
+
+  /**
+   * Finds the result of a worker, checking the in-memory buffer before the persisted history.
+   *
+   * @param workerId the worker id, usually the correlation id of the originating request
+   * @return the worker result, or null if none is known
+   */
+  public WorkerResult find(String workerId) {
+    WorkerResult result;
+    synchronized (this) {
+      result = results.get(workerId);
+    }
+    if (result == null && historyDao != null) {
+      WorkerResultHistory history = historyDao.findLatestByWorkerId(workerId);
+      if (history != null) {
+        result = fromHistory(history);
+      }
+    }
+    return result;
+  }
+
+  /** Gets the number of results held in memory */
+  public synchronized int size() {
+    return results.size();
+  }
+
+  private static WorkerResultHistory toHistory(WorkerResult workerResult) {
+    WorkerResultHistory history = new WorkerResultHistory();
+    history.setWorkerId(workerResult.getId());
+    history.setWorkerType(workerResult.getType());
+    history.setStatus(String.valueOf(workerResult.getStatus()));
+    if (workerResult.getStartTime() != null) {
+      history.setStartTime(new Timestamp(workerResult.getStartTime().getMillis()));
+    }
+    if (workerResult.getEndTime() != null) {
+      history.setEndTime(new Timestamp(workerResult.getEndTime().getMillis()));
+    }
+    return history;
+  }
+
+  private static WorkerResult fromHistory(WorkerResultHistory history) {
+    WorkerResult workerResult = new WorkerResult();
+    workerResult.setId(history.getWorkerId());
+    workerResult.setType(history.getWorkerType());
+    try {
+      workerResult.setStatus(WorkerResult.WorkerResultStatus.valueOf(history.getStatus()));
+    } catch (IllegalArgumentException | NullPointerException e) {
+      logger.warn(
+          String.format(
+              "Unknown status %s for worker %s.", history.getStatus(), history.getWorkerId()));
+    }
+    if (history.getStartTime() != null) {
+      workerResult.setStartTime(new DateTime(history.getStartTime().getTime(), DateTimeZone.UTC));
+    }
+    if (history.getEndTime() != null) {
+      workerResult.setEndTime(new DateTime(history.getEndTime().getTime(), DateTimeZone.UTC));
+    }
+    return workerResult;
+  }
+}
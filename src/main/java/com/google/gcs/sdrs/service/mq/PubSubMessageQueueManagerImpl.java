@@ -46,7 +46,7 @@ public class PubSubMessageQueueManagerImpl implements MessageQueueManager {
 
   private static final Logger logger = LoggerFactory.getLogger(PubSubMessageQueueManagerImpl.class);
 
-  private Publisher publisher;
+  Publisher publisher;
   private static PubSubMessageQueueManagerImpl instance;
 
   private PubSubMessageQueueManagerImpl() {}
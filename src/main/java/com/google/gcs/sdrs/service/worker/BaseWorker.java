@@ -18,7 +18,9 @@
 
 package com.google.gcs.sdrs.service.worker;
 
+import com.google.gcs.sdrs.common.WorkerDeadline;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
@@ -51,13 +53,21 @@ public abstract class BaseWorker implements Worker {
   @Override
   public WorkerResult call() {
     workerResult.setStartTime(DateTime.now(DateTimeZone.UTC));
+    workerResult.setStatus(WorkerResult.WorkerResultStatus.RUNNING);
     String currentName = Thread.currentThread().getName();
     Thread.currentThread().setName(currentName + ";" + workerResult.getId());
     logger.info("Worker processing begins: " + this.workerResult.toString());
 
     doWork();
 
-    workerResult.setEndTime(DateTime.now(DateTimeZone.UTC));
+    if (workerResult.getStatus() == WorkerResult.WorkerResultStatus.RUNNING) {
+      // The worker completed without reporting a status
+      workerResult.setStatus(WorkerResult.WorkerResultStatus.SUCCESS);
+    }
+    if (workerResult.getStatus() != WorkerResult.WorkerResultStatus.TIMED_OUT) {
+      // a timed out worker already has the time it was cancelled as its end time
+      workerResult.setEndTime(DateTime.now(DateTimeZone.UTC));
+    }
     logger.info("Worker processing ends: " + this.workerResult.toString());
 
     Thread.currentThread().setName(currentName);
@@ -70,10 +80,62 @@ public abstract class BaseWorker implements Worker {
     return workerResult;
   }
 
+  /**
+   * Gets the scheduling priority of this worker. Subclasses override this to run ahead of or
+   * behind the default.
+   *
+   * @return the {@link WorkerPriority} of this worker
+   */
+  public WorkerPriority getPriority() {
+    return WorkerPriority.NORMAL;
+  }
+
+  /**
+   * Gets the JobManager bulkhead this worker runs in. Subclasses override this to be isolated from
+   * other kinds of work.
+   *
+   * @return the {@link WorkerBulkhead} of this worker
+   */
+  public WorkerBulkhead getBulkhead() {
+    return WorkerBulkhead.DEFAULT;
+  }
+
   public String getUuid() {
     return workerResult.getId();
   }
 
+  /**
+   * Whether the worker has been cancelled, either because its deadline passed or its thread was
+   * interrupted. Long running workers check this between units of work to stop early.
+   */
+  protected boolean isCancelled() {
+    WorkerDeadline deadline = WorkerDeadline.current();
+    return Thread.currentThread().isInterrupted() || (deadline != null && deadline.isExpired());
+  }
+
+  /**
+   * Wraps a task handed to another thread so it runs with this worker's id as its correlation id,
+   * the same way {@link #call()} sets it for the worker thread. The worker's deadline, if any, is
+   * carried over as well.
+   *
+   * @param task the task to wrap
+   * @return a Callable that sets and restores the thread name around the task
+   */
+  protected <T> Callable<T> withCorrelationId(Callable<T> task) {
+    String id = workerResult.getId();
+    WorkerDeadline deadline = WorkerDeadline.current();
+    Callable<T> boundTask = deadline == null ? task : deadline.bind(task);
+    return () -> {
+      String currentName = Thread.currentThread().getName();
+      Thread.currentThread().setName(currentName + ";" + id);
+      try {
+        return boundTask.call();
+      } finally {
+        Thread.currentThread().setName(currentName);
+      }
+    };
+  }
+
   public static String getCorrelationId() {
     String threadName = Thread.currentThread().getName();
     if (threadName != null && threadName.lastIndexOf(";") > 0) {
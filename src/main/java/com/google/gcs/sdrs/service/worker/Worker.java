@@ -24,4 +24,8 @@ public interface Worker extends Callable<WorkerResult> {
   void doWork();
 
   WorkerResult getWorkerResult();
+
+  WorkerPriority getPriority();
+
+  WorkerBulkhead getBulkhead();
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.service.worker;
+
+/**
+ * The JobManager bulkhead a worker runs in. Each bulkhead has its own threads and queue, so slow
+ * batch work can not starve latency sensitive work such as delete notifications. Sizes and worker
+ * deadlines are read from {@code jobManager.bulkheads.<configName>} and fall back to the defaults
+ * declared here. A deadline of 0 leaves the workers unbounded.
+ */
+public enum WorkerBulkhead {
+  /** Workers without a dedicated bulkhead. Sized by jobManager.threadPoolSize and queueCapacity */
+  DEFAULT("default", 10, 100, 0),
+  EXECUTION("execution", 4, 50, 3600),
+  VALIDATION("validation", 1, 10, 1800),
+  DM_BATCH("dmBatch", 1, 10, 1800),
+  NOTIFICATION("notification", 4, 200, 60);
+
+  private final String configName;
+  private final int defaultThreadPoolSize;
+  private final int defaultQueueCapacity;
+  private final int defaultDeadlineSeconds;
+
+  WorkerBulkhead(
+      String configName,
+      int defaultThreadPoolSize,
+      int defaultQueueCapacity,
+      int defaultDeadlineSeconds) {
+    this.configName = configName;
+    this.defaultThreadPoolSize = defaultThreadPoolSize;
+    this.defaultQueueCapacity = defaultQueueCapacity;
+    this.defaultDeadlineSeconds = defaultDeadlineSeconds;
+  }
+
+  public String getConfigName() {
+    return configName;
+  }
+
+  public int getDefaultThreadPoolSize() {
+    return defaultThreadPoolSize;
+  }
+
+  public int getDefaultQueueCapacity() {
+    return defaultQueueCapacity;
+  }
+
+  public int getDefaultDeadlineSeconds() {
+    return defaultDeadlineSeconds;
+  }
+}
@@ -18,6 +18,9 @@
 
 package com.google.gcs.sdrs.service.worker;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.joda.time.DateTime;
 
 /** WorkerResult class to standardize worker output */
@@ -25,15 +28,21 @@ public class WorkerResult {
 
   private String id;
   private String type;
-  private WorkerResultStatus status;
-  private DateTime startTime;
-  private DateTime endTime;
+  // Read by status lookups while the worker thread is still updating them
+  private volatile WorkerResultStatus status;
+  private volatile DateTime startTime;
+  private volatile DateTime endTime;
+  // Results of the units of work a worker fans out to, e.g. one per project, reported in the
+  // status of its run
+  private final List<WorkerResult> childResults = Collections.synchronizedList(new ArrayList<>());
 
   /** An enum of valid WorkerResult status values */
   public enum WorkerResultStatus {
+    QUEUED,
     RUNNING,
     SUCCESS,
-    FAILED
+    FAILED,
+    TIMED_OUT
   }
 
   /**
@@ -68,8 +77,14 @@ public class WorkerResult {
     return status;
   }
 
+  /**
+   * Sets the status. A TIMED_OUT result keeps its status, as a cancelled worker may still report an
+   * outcome while it unwinds.
+   */
   public void setStatus(WorkerResultStatus status) {
-    this.status = status;
+    if (this.status != WorkerResultStatus.TIMED_OUT) {
+      this.status = status;
+    }
   }
 
   public DateTime getStartTime() {
@@ -87,4 +102,14 @@ public class WorkerResult {
   public void setEndTime(DateTime endTime) {
     this.endTime = endTime;
   }
+
+  public void addChildResult(WorkerResult childResult) {
+    childResults.add(childResult);
+  }
+
+  public List<WorkerResult> getChildResults() {
+    synchronized (childResults) {
+      return new ArrayList<>(childResults);
+    }
+  }
 }
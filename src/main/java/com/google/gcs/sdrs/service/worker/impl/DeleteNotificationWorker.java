@@ -21,6 +21,7 @@ import com.google.gcs.sdrs.service.mq.MessageQueueManager;
 import com.google.gcs.sdrs.service.mq.PubSubMessageQueueManagerImpl;
 import com.google.gcs.sdrs.service.mq.pojo.DeleteNotificationMessage;
 import com.google.gcs.sdrs.service.worker.BaseWorker;
+import com.google.gcs.sdrs.service.worker.WorkerBulkhead;
 import com.google.gcs.sdrs.service.worker.WorkerResult;
 import com.google.gcs.sdrs.service.worker.WorkerResult.WorkerResultStatus;
 import com.google.gcs.sdrs.util.RetentionUtil;
@@ -38,6 +39,12 @@ public class DeleteNotificationWorker extends BaseWorker {
     this.request = request;
   }
 
+  /** Notifications complete in milliseconds and are kept apart from long batch work */
+  @Override
+  public WorkerBulkhead getBulkhead() {
+    return WorkerBulkhead.NOTIFICATION;
+  }
+
 
 
   @Override
@@ -8,14 +8,15 @@ import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.controller.validation.ValidationConstants;
 import com.google.gcs.sdrs.dao.DmQueueDao;
-import com.google.gcs.sdrs.dao.LockDao;
 import com.google.gcs.sdrs.dao.SingletonDao;
-import com.google.gcs.sdrs.dao.model.DistributedLock;
 import com.google.gcs.sdrs.dao.model.DmRequest;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionRule;
 import com.google.gcs.sdrs.dao.util.DatabaseConstants;
 import com.google.gcs.sdrs.service.worker.BaseWorker;
+import com.google.gcs.sdrs.service.worker.WorkerBulkhead;
+import com.google.gcs.sdrs.service.worker.WorkerPriority;
+import com.google.gcs.sdrs.service.worker.WorkerResult;
 import com.google.gcs.sdrs.service.worker.WorkerResult.WorkerResultStatus;
 import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleExecutor;
 import com.google.gcs.sdrs.util.CredentialsUtil;
@@ -30,33 +31,52 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
-import org.hibernate.Session;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class DmBatchProcessingWorker extends BaseWorker {
   private static final Logger logger = LoggerFactory.getLogger(DmBatchProcessingWorker.class);
   private DmQueueDao dmQueueDao;
-  private LockDao lockDao;
   private Storagetransfer client;
 
-  public static final int DEFAULT_DM_LOCK_TIMEOUT = 60000; // one minute by default
   public static final int DEFAULT_DM_MAX_RETRY = 5;
   public static final int DM_MAX_RETRY =
       Integer.valueOf(
           SdrsApplication.getAppConfigProperty(
               "scheduler.task.dmBatchProcessing.maxRetry", String.valueOf(DEFAULT_DM_MAX_RETRY)));
-  public static final int DM_LOCK_TIMEOUT =
+
+  public static final int DEFAULT_DM_BUCKET_CONCURRENCY = 4;
+  public static final int DM_BUCKET_CONCURRENCY =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "scheduler.task.dmBatchProcessing.bucketConcurrency",
+              String.valueOf(DEFAULT_DM_BUCKET_CONCURRENCY)));
+  int bucketConcurrency = DM_BUCKET_CONCURRENCY;
+
+  public static final int DEFAULT_DM_PAGE_SIZE = 1000;
+  public static final int DM_PAGE_SIZE =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "scheduler.task.dmBatchProcessing.pageSize", String.valueOf(DEFAULT_DM_PAGE_SIZE)));
+  int pageSize = DM_PAGE_SIZE;
+
+  public static final int DEFAULT_DM_CLAIM_LEASE_SECONDS = 600;
+  public static final int DM_CLAIM_LEASE_SECONDS =
       Integer.valueOf(
           SdrsApplication.getAppConfigProperty(
-              "lock.dm.timeout", String.valueOf(DEFAULT_DM_LOCK_TIMEOUT)));
-  public static final String DEFAULT_DM_LOCK_ID = "dm-batch";
-  public static final String DM_LOCK_ID =
-      SdrsApplication.getAppConfigProperty("lock.dm.id", DEFAULT_DM_LOCK_ID);
+              "scheduler.task.dmBatchProcessing.claimLeaseSeconds",
+              String.valueOf(DEFAULT_DM_CLAIM_LEASE_SECONDS)));
 
   public DmBatchProcessingWorker(String correlationId) {
     super(correlationId);
@@ -66,72 +86,217 @@ public class DmBatchProcessingWorker extends BaseWorker {
       logger.error("Failed to create STS client.", e);
     }
     dmQueueDao = SingletonDao.getDmQueueDao();
-    lockDao = SingletonDao.getLockDao();
   }
 
+  /** DM batches carry user initiated deletes and run ahead of policy executions */
   @Override
-  public void doWork() {
-    Session currentLockSession = lockDao.getLockSession();
-    try {
+  public WorkerPriority getPriority() {
+    return WorkerPriority.HIGH;
+  }
 
-      logger.info(String.format("acquiring lock at %s", Instant.now(Clock.systemUTC()).toString()));
-      DistributedLock distributedLock =
-          lockDao.obtainLock(currentLockSession, DM_LOCK_TIMEOUT, DM_LOCK_ID);
-      if (distributedLock != null) {
-        logger.info(
-            String.format(
-                "acquired lock %s at %s",
-                distributedLock.getLockToken(), Instant.now(Clock.systemUTC()).toString()));
+  @Override
+  public WorkerBulkhead getBulkhead() {
+    return WorkerBulkhead.DM_BATCH;
+  }
 
-        // get sorted (by priority) list of all available queue for processing
-        List<DmRequest> allAvailableRequetsForProcessing =
-            dmQueueDao.getAllAvailableRequestsByPriority();
+  /**
+   * Drains the DM queue page by page. Instead of serializing on a cluster wide lock, every batch
+   * claims the requests of a bucket before processing them, so several instances drain different
+   * buckets at the same time. The claims are owned by this worker and released when it finishes.
+   * Claims left behind by a crashed instance are reclaimed once their lease expires.
+   */
+  @Override
+  public void doWork() {
+    try {
+      // Buckets that failed, are claimed by another instance or whose STS job has no room left
+      // for more prefixes are closed for the rest of this batch.
+      Set<String> processedBuckets = new HashSet<>();
+      Set<String> closedBuckets = new HashSet<>();
+      List<String> failedDmProcessingBuckets = new ArrayList<>();
+      int pageCount = 0;
+      int requestCount = 0;
+      DmRequest cursor = null;
+      List<DmRequest> page;
+      do {
+        // memory stays bounded by the page size no matter how large the backlog is
+        page = dmQueueDao.getAvailableRequestsPage(cursor, pageSize);
+        if (page == null || page.isEmpty()) {
+          break;
+        }
+        pageCount++;
+        requestCount += page.size();
+        // capture the keyset before processing, which bumps the priority of retried requests
+        cursor = buildKeysetCursor(page.get(page.size() - 1));
 
-        // sort the list by bucket while keeping the same order
+        // sort the page by bucket while keeping the same order
         Map<String, List<DmRequest>> dmRequestsMap =
-            allAvailableRequetsForProcessing.stream()
+            page.stream()
+                .filter(request -> !closedBuckets.contains(request.getDataStorageRoot()))
                 .collect(Collectors.groupingBy(DmRequest::getDataStorageRoot));
+        processedBuckets.addAll(dmRequestsMap.keySet());
 
-        List<String> failedDmProcessingBuckets = new ArrayList<>();
+        failedDmProcessingBuckets.addAll(
+            processDmRequestsByBucket(dmRequestsMap, closedBuckets, page.size()));
+      } while (page.size() >= pageSize && !isCancelled());
 
-        for (String bucket : dmRequestsMap.keySet()) {
-          if (!processDmRequestByBucket(bucket, dmRequestsMap.get(bucket))) {
-            failedDmProcessingBuckets.add(bucket);
-          }
-        }
+      logger.info(
+          String.format(
+              "Read %d DM requests in %d pages of up to %d requests.",
+              requestCount, pageCount, pageSize));
 
-        if (failedDmProcessingBuckets.isEmpty()) {
-          logger.info(
-              String.format(
-                  "Successfully processed DM requests for %d buckets.", dmRequestsMap.size()));
-          workerResult.setStatus(WorkerResultStatus.SUCCESS);
-        } else {
-          logger.error(
-              String.format(
-                  "DM requests processing failed for %d out of %d buckets.",
-                  failedDmProcessingBuckets.size(), dmRequestsMap.size()));
-          workerResult.setStatus(WorkerResultStatus.FAILED);
-        }
-
-        lockDao.releaseLock(currentLockSession, distributedLock);
+      if (failedDmProcessingBuckets.isEmpty()) {
         logger.info(
             String.format(
-                "released lock %s at %s",
-                distributedLock.getLockToken(), Instant.now(Clock.systemUTC()).toString()));
-      } else {
-        logger.info("Can not acquire lock.");
+                "Successfully processed DM requests for %d buckets.", processedBuckets.size()));
         workerResult.setStatus(WorkerResultStatus.SUCCESS);
+      } else {
+        logger.error(
+            String.format(
+                "DM requests processing failed for %d out of %d buckets.",
+                failedDmProcessingBuckets.size(), processedBuckets.size()));
+        workerResult.setStatus(WorkerResultStatus.FAILED);
       }
     } catch (Exception e) {
       logger.error("Unknown error. ", e);
       workerResult.setStatus(WorkerResultStatus.FAILED);
     } finally {
-      // clean up resource
-      lockDao.closeLockSession(currentLockSession);
+      // hand the requests left unprocessed back to the queue right away
+      try {
+        dmQueueDao.releaseClaims(getUuid());
+      } catch (RuntimeException e) {
+        logger.error("Failed to release DM request claims. They are reclaimed on expiry.", e);
+      }
+    }
+  }
+
+  /** Copies the sort keys of a DM request so later pages can be read after it. */
+  private static DmRequest buildKeysetCursor(DmRequest lastRequest) {
+    DmRequest cursor = new DmRequest();
+    cursor.setId(lastRequest.getId());
+    cursor.setPriority(lastRequest.getPriority());
+    cursor.setNumberOfRetry(lastRequest.getNumberOfRetry());
+    cursor.setCreatedAt(lastRequest.getCreatedAt());
+    return cursor;
+  }
+
+  /**
+   * Processes the DM requests of every bucket in parallel up to the configured concurrency. Each
+   * bucket is isolated from the others and its outcome and latency are recorded as a child of this
+   * worker's result.
+   *
+   * @param dmRequestsMap the DM requests of one page grouped by bucket
+   * @param closedBuckets collects the buckets that failed, are claimed by another instance or could
+   *     not schedule all their requests
+   * @param backlogSize the number of DM requests in the page
+   * @return the buckets that failed to process
+   */
+  private List<String> processDmRequestsByBucket(
+      Map<String, List<DmRequest>> dmRequestsMap, Set<String> closedBuckets, int backlogSize)
+      throws InterruptedException {
+    List<String> failedDmProcessingBuckets = new ArrayList<>();
+    if (dmRequestsMap.isEmpty()) {
+      return failedDmProcessingBuckets;
+    }
+
+    long batchStartMillis = System.currentTimeMillis();
+    int poolSize = Math.max(1, Math.min(bucketConcurrency, dmRequestsMap.size()));
+    ExecutorService bucketPool = Executors.newFixedThreadPool(poolSize);
+    Map<String, Future<Integer>> futures = new LinkedHashMap<>();
+    try {
+      for (Map.Entry<String, List<DmRequest>> entry : dmRequestsMap.entrySet()) {
+        futures.put(
+            entry.getKey(),
+            bucketPool.submit(
+                withCorrelationId(() -> processBucket(entry.getKey(), entry.getValue()))));
+      }
+
+      int scheduledCount = 0;
+      for (Map.Entry<String, Future<Integer>> entry : futures.entrySet()) {
+        try {
+          int processed = entry.getValue().get();
+          if (processed < 0) {
+            failedDmProcessingBuckets.add(entry.getKey());
+            closedBuckets.add(entry.getKey());
+          } else {
+            scheduledCount += processed;
+            if (processed < dmRequestsMap.get(entry.getKey()).size()) {
+              closedBuckets.add(entry.getKey());
+            }
+          }
+        } catch (ExecutionException e) {
+          // processBucket handles its own errors, so this is unexpected
+          logger.error(
+              String.format("Unexpected error processing DM requests for %s", entry.getKey()),
+              e.getCause());
+          failedDmProcessingBuckets.add(entry.getKey());
+          closedBuckets.add(entry.getKey());
+        }
+      }
+
+      long elapsedMillis = Math.max(1, System.currentTimeMillis() - batchStartMillis);
+      logger.info(
+          String.format(
+              "Scheduled %d of %d DM requests across %d buckets with concurrency %d in %d ms "
+                  + "(%.2f requests/s). %d requests of this page remain queued.",
+              scheduledCount,
+              backlogSize,
+              dmRequestsMap.size(),
+              poolSize,
+              elapsedMillis,
+              scheduledCount * 1000.0 / elapsedMillis,
+              backlogSize - scheduledCount));
+    } catch (InterruptedException e) {
+      bucketPool.shutdownNow();
+      throw e;
+    } finally {
+      bucketPool.shutdown();
     }
+    return failedDmProcessingBuckets;
   }
 
-  private boolean processDmRequestByBucket(String bucket, List<DmRequest> dmRequests) {
+  /**
+   * Processes the DM requests of one bucket, isolating its failures from the other buckets.
+   *
+   * @return the number of DM requests scheduled, or -1 if the bucket failed
+   */
+  private int processBucket(String bucket, List<DmRequest> dmRequests) {
+    WorkerResult bucketResult = new WorkerResult();
+    bucketResult.setId(bucket);
+    bucketResult.setType("bucket");
+    bucketResult.setStartTime(DateTime.now(DateTimeZone.UTC));
+    bucketResult.setStatus(WorkerResultStatus.RUNNING);
+    workerResult.addChildResult(bucketResult);
+
+    int processed = -1;
+    try {
+      List<DmRequest> claimedRequests =
+          dmQueueDao.claimRequests(bucket, dmRequests, getUuid(), DM_CLAIM_LEASE_SECONDS);
+      if (claimedRequests.isEmpty()) {
+        logger.info(String.format("DM requests for %s are claimed by another instance.", bucket));
+        processed = 0;
+      } else {
+        processed = processDmRequestByBucket(bucket, claimedRequests);
+      }
+      bucketResult.setStatus(
+          processed < 0 ? WorkerResultStatus.FAILED : WorkerResultStatus.SUCCESS);
+    } catch (RuntimeException e) {
+      logger.error(String.format("Error processing DM requests for %s", bucket), e);
+      bucketResult.setStatus(WorkerResultStatus.FAILED);
+    }
+    bucketResult.setEndTime(DateTime.now(DateTimeZone.UTC));
+    logger.info(
+        String.format(
+            "DM processing for %s finished with status %s in %d ms. %d of %d requests scheduled.",
+            bucket,
+            bucketResult.getStatus(),
+            bucketResult.getEndTime().getMillis() - bucketResult.getStartTime().getMillis(),
+            Math.max(processed, 0),
+            dmRequests.size()));
+    return processed;
+  }
+
+  /** @return the number of DM requests scheduled, or -1 if the bucket failed */
+  private int processDmRequestByBucket(String bucket, List<DmRequest> dmRequests) {
     String destinationBucket = StsUtil.buildDestinationBucketName(bucket);
 
     ZonedDateTime zonedDateTimeNow = ZonedDateTime.now(Clock.systemUTC());
@@ -145,7 +310,8 @@ public class DmBatchProcessingWorker extends BaseWorker {
               .findPooledJob(projectId, bucket, scheduleTimeOfDay, RetentionRuleType.USER);
     } catch (IOException e) {
       // Can't allocate the job from the pool. Fail immediately.
-      return false;
+      logger.error(String.format("Failed to find pooled STS job for %s.", bucket), e);
+      return -1;
     }
 
     TimeOfDay jobRunAtTimeOfDay = transferJob.getSchedule().getStartTimeOfDay();
@@ -217,13 +383,17 @@ public class DmBatchProcessingWorker extends BaseWorker {
                 StsUtil.buildTransferSpec(
                     bucket, destinationBucket, newIncludePrefixList, false, null))
             .setStatus(StsUtil.STS_ENABLED_STRING);
+    String jobName = transferJob.getName();
+    TransferJob patchedJob = null;
     try {
-      transferJob =
-          StsUtil.updateExistingJob(client, jobToUpdate, transferJob.getName(), projectId);
+      patchedJob = StsUtil.updateExistingJob(client, jobToUpdate, jobName, projectId);
+      transferJob = patchedJob;
     } catch (IOException e) {
       // Update STS job failed. Fail the process immediately.
       logger.error("Failed to update STS job.", e);
-      return false;
+      return -1;
+    } finally {
+      StsRuleExecutor.getInstance().onPooledJobPatched(jobName, patchedJob);
     }
 
     RetentionRule retentionRule = new RetentionRule();
@@ -262,6 +432,6 @@ public class DmBatchProcessingWorker extends BaseWorker {
       logger.error("Failed to create retention job and update DM request status.");
     }
 
-    return true;
+    return processedDmRequests.size();
   }
 }
@@ -17,14 +17,20 @@
 
 package com.google.gcs.sdrs.service.worker.impl;
 
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.common.ExecutionEventType;
 import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
+import com.google.gcs.sdrs.dao.ProjectRules;
 import com.google.gcs.sdrs.dao.RetentionJobDao;
 import com.google.gcs.sdrs.dao.RetentionRuleDao;
 import com.google.gcs.sdrs.dao.SingletonDao;
+import com.google.gcs.sdrs.dao.UnitOfWork;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionRule;
 import com.google.gcs.sdrs.service.worker.BaseWorker;
+import com.google.gcs.sdrs.service.worker.WorkerBulkhead;
+import com.google.gcs.sdrs.service.worker.WorkerPriority;
 import com.google.gcs.sdrs.service.worker.WorkerResult;
 import com.google.gcs.sdrs.service.worker.rule.RuleExecutor;
 import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleExecutor;
@@ -36,6 +42,16 @@ import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +65,14 @@ public class ExecuteRetentionWorker extends BaseWorker {
   RetentionJobDao retentionJobDao = SingletonDao.getRetentionJobDao();
   RuleExecutor ruleExecutor;
 
+  public static final int DEFAULT_PROJECT_CONCURRENCY = 4;
+  public static final int PROJECT_CONCURRENCY =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "jobManager.policyExecution.projectConcurrency",
+              String.valueOf(DEFAULT_PROJECT_CONCURRENCY)));
+  int projectConcurrency = PROJECT_CONCURRENCY;
+
   /**
    * The Execute Retention Worker construct
    *
@@ -61,6 +85,20 @@ public class ExecuteRetentionWorker extends BaseWorker {
     ruleExecutor = StsRuleExecutor.getInstance();
   }
 
+  /** User commanded deletes run ahead of policy executions */
+  @Override
+  public WorkerPriority getPriority() {
+    if (executionEvent.getExecutionEventType() == ExecutionEventType.USER_COMMANDED) {
+      return WorkerPriority.HIGH;
+    }
+    return WorkerPriority.NORMAL;
+  }
+
+  @Override
+  public WorkerBulkhead getBulkhead() {
+    return WorkerBulkhead.EXECUTION;
+  }
+
   /** The function that will be executed when the worker is submitted */
   @Override
   public void doWork() {
@@ -92,7 +130,7 @@ public class ExecuteRetentionWorker extends BaseWorker {
             }
 
           } else if (projectIdExists) {
-            executePolicyByProject(executionEvent.getProjectId());
+            executePolicyByProject(findProjectRules(executionEvent.getProjectId()));
           } else {
             executePolicy();
           }
@@ -108,6 +146,7 @@ public class ExecuteRetentionWorker extends BaseWorker {
         | IllegalArgumentException
         | UnsupportedOperationException
         | NullPointerException
+        | CancellationException
         | SQLException ex) {
       logger.error(String.format("Error executing rule: %s", ex.getMessage()), ex);
       workerResult.setStatus(WorkerResult.WorkerResultStatus.FAILED);
@@ -115,19 +154,110 @@ public class ExecuteRetentionWorker extends BaseWorker {
   }
 
   private void executePolicy() throws IOException, SQLException {
-    List<String> projectIds = retentionRuleDao.getAllDatasetRuleProjectIds();
-    if (projectIds == null) {
-      throw new SQLException("Failed to get project IDs");
+    // one pass over the active rules instead of a lookup of the projects and three per project
+    Map<String, ProjectRules> rulesByProject = retentionRuleDao.findActiveRulesByProject();
+    if (rulesByProject == null) {
+      throw new SQLException("Failed to load the active retention rules");
+    }
+    if (rulesByProject.isEmpty()) {
+      return;
     }
-    for (String projectId : projectIds) {
-      executePolicyByProject(projectId);
+    List<String> projectIds = new ArrayList<>(rulesByProject.keySet());
+
+    // Projects are independent, so run them in parallel up to the configured concurrency
+    int poolSize = Math.max(1, Math.min(projectConcurrency, projectIds.size()));
+    ExecutorService projectPool = Executors.newFixedThreadPool(poolSize);
+    List<Future<WorkerResult>> futures = new ArrayList<>();
+    List<WorkerResult> projectResults = new ArrayList<>();
+    try {
+      for (String projectId : projectIds) {
+        futures.add(
+            projectPool.submit(
+                withCorrelationId(
+                    () -> executePolicyForProject(rulesByProject.get(projectId)))));
+      }
+      for (Future<WorkerResult> future : futures) {
+        projectResults.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      projectPool.shutdownNow();
+      throw new IOException("Interrupted while executing policy by project", e);
+    } catch (ExecutionException e) {
+      // executePolicyForProject handles its own errors, so this is unexpected
+      throw new IOException("Unexpected error executing policy by project", e.getCause());
+    } finally {
+      projectPool.shutdown();
+    }
+
+    List<String> failedProjects =
+        projectResults.stream()
+            .filter(result -> result.getStatus() == WorkerResult.WorkerResultStatus.FAILED)
+            .map(WorkerResult::getId)
+            .collect(Collectors.toList());
+    logger.info(
+        String.format(
+            "Policy executed for %d projects with concurrency %d. %d failed.",
+            projectIds.size(), poolSize, failedProjects.size()));
+    if (!failedProjects.isEmpty()) {
+      throw new IOException(
+          String.format(
+              "Policy execution failed for %d of %d projects: %s",
+              failedProjects.size(), projectIds.size(), String.join(", ", failedProjects)));
+    }
+  }
+
+  /**
+   * Executes the policy of one project, isolating its failures from the other projects. The
+   * outcome and timing are recorded as a child of this worker's result.
+   *
+   * @param projectRules the active rules of the project to execute
+   * @return the result for the project
+   */
+  private WorkerResult executePolicyForProject(ProjectRules projectRules) {
+    String projectId = projectRules.getProjectId();
+    WorkerResult projectResult = new WorkerResult();
+    projectResult.setId(projectId);
+    projectResult.setType("project");
+    projectResult.setStartTime(DateTime.now(DateTimeZone.UTC));
+    projectResult.setStatus(WorkerResult.WorkerResultStatus.RUNNING);
+    workerResult.addChildResult(projectResult);
+    try {
+      executePolicyByProject(projectRules);
+      projectResult.setStatus(WorkerResult.WorkerResultStatus.SUCCESS);
+    } catch (IOException | RuntimeException ex) {
+      logger.error(
+          String.format("Error executing policy for project %s: %s", projectId, ex.getMessage()),
+          ex);
+      projectResult.setStatus(WorkerResult.WorkerResultStatus.FAILED);
     }
+    projectResult.setEndTime(DateTime.now(DateTimeZone.UTC));
+    logger.info(
+        String.format(
+            "Policy execution for project %s finished with status %s in %d ms",
+            projectId,
+            projectResult.getStatus(),
+            projectResult.getEndTime().getMillis() - projectResult.getStartTime().getMillis()));
+    return projectResult;
   }
 
-  private void executePolicyByProject(String projectId) throws IOException, SQLException {
-    List<RetentionRule> datasetRules = retentionRuleDao.findDatasetRulesByProjectId(projectId);
-    List<RetentionRule> defaultRules = retentionRuleDao.findDefaultRulesByProjectId(projectId);
-    RetentionRule globalDefaultRule = retentionRuleDao.findGlobalRuleByProjectId(projectId);
+  /** Looks up the active rules of one project, for a policy execution of that project only */
+  private ProjectRules findProjectRules(String projectId) {
+    // the rule lookups share one session
+    return UnitOfWork.execute(
+        () ->
+            new ProjectRules(
+                projectId,
+                retentionRuleDao.findDatasetRulesByProjectId(projectId),
+                retentionRuleDao.findDefaultRulesByProjectId(projectId),
+                retentionRuleDao.findGlobalRuleByProjectId(projectId)));
+  }
+
+  private void executePolicyByProject(ProjectRules projectRules) throws IOException {
+    String projectId = projectRules.getProjectId();
+    List<RetentionRule> datasetRules = projectRules.getDatasetRules();
+    List<RetentionRule> defaultRules = projectRules.getDefaultRules();
+    RetentionRule globalDefaultRule = projectRules.getGlobalRule();
     boolean noDatasetRules = false;
     boolean noDefaultRules = false;
     boolean noGlobalRule = false;
@@ -156,47 +286,82 @@ public class ExecuteRetentionWorker extends BaseWorker {
       return;
     }
 
-    List<RetentionJob> errorJobs = new ArrayList<>();
-    List<RetentionJob> retentionJobs = ruleExecutor.executeDatasetRule(datasetRules, projectId);
-    retentionJobs.addAll(
+    AtomicInteger errorJobCount = new AtomicInteger(0);
+    // Dataset jobs are saved bucket by bucket as the rule executor produces them
+    ruleExecutor.executeDatasetRule(
+        datasetRules, projectId, jobs -> saveRetentionJobs(jobs, errorJobCount));
+    saveRetentionJobs(
         ruleExecutor.executeDefaultRule(
-            globalDefaultRule, defaultRules, datasetRules, atMidnight(), projectId));
-
-    if (retentionJobs != null) {
-      for (RetentionJob job : retentionJobs) {
-        job.setBatchId(getUuid());
-        if (job.getName() == null) {
-          errorJobs.add(job);
-        } else {
-          retentionJobDao.save(job);
-        }
-      }
-    }
+            globalDefaultRule, defaultRules, datasetRules, atMidnight(), projectId),
+        errorJobCount);
 
-    if (!errorJobs.isEmpty()) {
+    if (errorJobCount.get() > 0) {
       throw new IOException(
           String.format(
-              "Failed to schedule %d retention jobs for policy based execution", errorJobs.size()));
+              "Failed to schedule %d retention jobs for policy based execution",
+              errorJobCount.get()));
     }
   }
 
   private void executeDatasetRules(List<RetentionRule> rules, String projectId) throws IOException {
-    List<RetentionJob> errorJobs = new ArrayList<>();
-    List<RetentionJob> jobs = ruleExecutor.executeDatasetRule(rules, projectId);
-    if (jobs != null) {
-      for (RetentionJob job : jobs) {
-        job.setBatchId(getUuid());
-        if (job.getName() == null) {
-          errorJobs.add(job);
-        } else {
-          retentionJobDao.save(job);
-        }
+    AtomicInteger errorJobCount = new AtomicInteger(0);
+    ruleExecutor.executeDatasetRule(
+        rules, projectId, jobs -> saveRetentionJobs(jobs, errorJobCount));
+
+    if (errorJobCount.get() > 0) {
+      throw new IOException(
+          String.format(
+              "Failed to schedule %d retention jobs for dataset rule", errorJobCount.get()));
+    }
+  }
+
+  /**
+   * Saves retention jobs to the database. Jobs without a name failed to schedule and are only
+   * counted. Called from rule executor threads, so failures are counted rather than thrown.
+   *
+   * <p>The jobs are inserted together in JDBC batches. If that fails they are saved one by one, so
+   * that a bad job does not fail the others.
+   *
+   * @param jobs the retention jobs to save
+   * @param errorJobCount the count of jobs that failed to schedule or save
+   */
+  private void saveRetentionJobs(List<RetentionJob> jobs, AtomicInteger errorJobCount) {
+    if (jobs == null) {
+      return;
+    }
+    List<RetentionJob> scheduledJobs = new ArrayList<>();
+    for (RetentionJob job : jobs) {
+      job.setBatchId(getUuid());
+      if (job.getName() == null) {
+        errorJobCount.incrementAndGet();
+      } else {
+        scheduledJobs.add(job);
       }
     }
+    if (scheduledJobs.isEmpty()) {
+      return;
+    }
 
-    if (!errorJobs.isEmpty()) {
-      throw new IOException(
-          String.format("Failed to schedule %d retention jobs for dataset rule", errorJobs.size()));
+    try {
+      retentionJobDao.saveBatch(scheduledJobs);
+      return;
+    } catch (RuntimeException e) {
+      logger.warn(
+          String.format(
+              "Failed to save %d retention jobs together. Saving them one by one.",
+              scheduledJobs.size()),
+          e);
+    }
+
+    for (RetentionJob job : scheduledJobs) {
+      try {
+        retentionJobDao.save(job);
+      } catch (RuntimeException e) {
+        logger.error(
+            String.format("Failed to save retention job %s: %s", job.getName(), e.getMessage()),
+            e);
+        errorJobCount.incrementAndGet();
+      }
     }
   }
 
@@ -28,12 +28,15 @@ import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
 import com.google.gcs.sdrs.dao.util.DatabaseConstants;
 import com.google.gcs.sdrs.service.worker.BaseWorker;
+import com.google.gcs.sdrs.service.worker.WorkerBulkhead;
+import com.google.gcs.sdrs.service.worker.WorkerPriority;
 import com.google.gcs.sdrs.service.worker.WorkerResult;
 import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleValidator;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +54,17 @@ public class ValidationWorker extends BaseWorker {
     super(correlationId);
   }
 
+  /** Validation runs behind all retention executions */
+  @Override
+  public WorkerPriority getPriority() {
+    return WorkerPriority.LOW;
+  }
+
+  @Override
+  public WorkerBulkhead getBulkhead() {
+    return WorkerBulkhead.VALIDATION;
+  }
+
   /**
    * Find all retention jobs that need to have their status validated, query their status from STS
    * and then update the DB with the status.
@@ -73,10 +87,11 @@ public class ValidationWorker extends BaseWorker {
               .collect(Collectors.groupingBy(RetentionJob::getRetentionRuleProjectId));
 
       Map<String, List<RetentionJobValidation>> stsValidations = new HashMap<>();
+      AtomicInteger stsRequestCount = new AtomicInteger();
       for (List<RetentionJob> jobs : jobsByProject.values()) {
         // Get validation results from STS for each group of jobs
         List<RetentionJobValidation> retentionJobValidations =
-            stsRuleValidator.validateRetentionJobs(jobs);
+            stsRuleValidator.validateRetentionJobs(jobs, stsRequestCount);
         // Combine all retentionJobValidation results from STS into one map by JobName so we can
         // quickly search it later on
         retentionJobValidations.stream()
@@ -93,6 +108,10 @@ public class ValidationWorker extends BaseWorker {
                   }
                 });
       }
+      logger.info(
+          String.format(
+              "Listed the STS operations of %d retention jobs in %d projects with %d requests.",
+              retentionJobs.size(), jobsByProject.size(), stsRequestCount.get()));
 
       if (stsValidations.size() > 0) {
         // Our map of STS validations may or may not already exist in the DB. We need to query the
@@ -24,6 +24,7 @@ import com.google.gcs.sdrs.dao.model.RetentionRule;
 import java.time.ZonedDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface RuleExecutor {
 
@@ -32,6 +33,11 @@ public interface RuleExecutor {
 
   List<RetentionJob> executeDatasetRule(Collection<RetentionRule> datasetRules, String projectId);
 
+  void executeDatasetRule(
+      Collection<RetentionRule> datasetRules,
+      String projectId,
+      Consumer<List<RetentionJob>> retentionJobConsumer);
+
   List<RetentionJob> executeDefaultRule(
       RetentionRule globalDefaultRule,
       Collection<RetentionRule> defaultRules,
@@ -22,10 +22,14 @@ import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public interface RuleValidator {
 
   RetentionJobValidation validateRetentionJob(RetentionJob job);
 
   List<RetentionJobValidation> validateRetentionJobs(List<RetentionJob> jobs);
+
+  List<RetentionJobValidation> validateRetentionJobs(
+      List<RetentionJob> jobs, AtomicInteger requestCount);
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.service.worker.rule.impl;
+
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.dao.model.PooledStsJob;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process cache of the STS job pools. The pool of a bucket is kept as a map of its pooled jobs
+ * keyed by schedule, each with the last known state of its {@link TransferJob}, so finding the
+ * next job of a bucket queries neither the database nor STS while the entry is fresh.
+ *
+ * <p>Entries expire after a TTL. The state of a job is replaced by the job STS returns when this
+ * instance patches it, and the pool of a bucket is dropped when this instance changes its pooled
+ * jobs. Changes made by other instances are seen once the entry expires.
+ */
+public class PooledJobCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(PooledJobCache.class);
+
+  public static final boolean DEFAULT_ENABLED = true;
+  public static final boolean ENABLED =
+      Boolean.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "sts.pooledJobCache.enabled", String.valueOf(DEFAULT_ENABLED)));
+
+  public static final int DEFAULT_TTL_SECONDS = 300;
+  public static final int TTL_SECONDS =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "sts.pooledJobCache.ttlSeconds", String.valueOf(DEFAULT_TTL_SECONDS)));
+
+  private static PooledJobCache instance;
+
+  private final long ttlMillis;
+  private final LongSupplier clock;
+  private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+  private final Map<String, Slot> slotsByJobName = new ConcurrentHashMap<>();
+
+  PooledJobCache(long ttlMillis, LongSupplier clock) {
+    this.ttlMillis = ttlMillis;
+    this.clock = clock;
+  }
+
+  public static synchronized PooledJobCache getInstance() {
+    if (instance == null) {
+      instance =
+          new PooledJobCache(ENABLED ? TTL_SECONDS * 1000L : 0, System::currentTimeMillis);
+    }
+    return instance;
+  }
+
+  /** Loads the state of a transfer job from STS */
+  public interface TransferJobLoader {
+    TransferJob load() throws IOException;
+  }
+
+  /**
+   * Gets the pooled job of a bucket that runs next after the given time of day.
+   *
+   * @param bucketName the source bucket of the pool
+   * @param projectId the project of the bucket
+   * @param scheduledAt the time of day to run after, or null for the first job of the day
+   * @param type the pool type
+   * @param loader loads the pooled jobs of the bucket and type when the pool is not cached
+   * @return the next pooled job, or null if the bucket has no pool of the type
+   */
+  public PooledStsJob getJob(
+      String bucketName,
+      String projectId,
+      String scheduledAt,
+      String type,
+      Supplier<List<PooledStsJob>> loader) {
+    String key = poolKey(projectId, bucketName, type);
+    Pool pool = pools.get(key);
+    if (pool == null || isExpired(pool.loadedAt)) {
+      pool = loadPool(key, loader.get());
+    }
+    if (pool == null) {
+      return null;
+    }
+
+    // wraps around to the first job of the day when no job runs later today
+    Map.Entry<String, Slot> next =
+        scheduledAt == null ? null : pool.slotsBySchedule.higherEntry(scheduledAt);
+    if (next == null) {
+      next = pool.slotsBySchedule.firstEntry();
+    }
+    return next.getValue().pooledJob;
+  }
+
+  /**
+   * Gets the last known state of a pooled job, loading it from STS when it is not cached.
+   *
+   * @param pooledJob a pooled job returned by {@link #getJob}
+   * @param loader loads the state of the job from STS
+   * @return a copy of the {@link TransferJob}, or null if STS does not know the job
+   * @throws IOException when the job cannot be loaded
+   */
+  public TransferJob getTransferJob(PooledStsJob pooledJob, TransferJobLoader loader)
+      throws IOException {
+    Slot slot = slotsByJobName.get(pooledJob.getName());
+    if (slot == null) {
+      return loader.load();
+    }
+    synchronized (slot) {
+      if (slot.transferJob == null || isExpired(slot.loadedAt)) {
+        TransferJob transferJob = loader.load();
+        if (transferJob == null) {
+          return null;
+        }
+        if (slot.lastModificationTime != null
+            && !Objects.equals(slot.lastModificationTime, transferJob.getLastModificationTime())) {
+          logger.info(
+              String.format(
+                  "Pooled STS job %s has been modified by another instance at %s.",
+                  pooledJob.getName(), transferJob.getLastModificationTime()));
+        }
+        slot.transferJob = transferJob;
+        slot.lastModificationTime = transferJob.getLastModificationTime();
+        slot.loadedAt = clock.getAsLong();
+      }
+      // callers may change the job they get, so the cached state is never handed out
+      return slot.transferJob.clone();
+    }
+  }
+
+  /**
+   * Replaces the state of a transfer job with the job STS returned for a patch by this instance,
+   * so the next lookup of the job does not reach STS.
+   *
+   * @param patchedJob the job returned by the patch, with its new last modification time
+   */
+  public void putTransferJob(TransferJob patchedJob) {
+    Slot slot = slotsByJobName.get(patchedJob.getName());
+    if (slot != null) {
+      synchronized (slot) {
+        slot.transferJob = patchedJob.clone();
+        slot.lastModificationTime = patchedJob.getLastModificationTime();
+        slot.loadedAt = clock.getAsLong();
+      }
+    }
+  }
+
+  /** Drops the state of a transfer job when a patch by this instance failed, or it is invalid */
+  public void invalidateTransferJob(String jobName) {
+    Slot slot = slotsByJobName.get(jobName);
+    if (slot != null) {
+      synchronized (slot) {
+        slot.transferJob = null;
+        slot.lastModificationTime = null;
+      }
+    }
+  }
+
+  /** Drops the pools of a bucket after its pooled jobs have been created or deleted */
+  public void invalidatePool(String bucketName, String projectId) {
+    if (bucketName == null || projectId == null) {
+      return;
+    }
+    String prefix = poolKey(projectId, bucketName, "");
+    pools.keySet().removeIf(key -> key.startsWith(prefix));
+    slotsByJobName
+        .values()
+        .removeIf(
+            slot ->
+                bucketName.equals(slot.pooledJob.getSourceBucket())
+                    && projectId.equals(slot.pooledJob.getSourceProject()));
+  }
+
+  private Pool loadPool(String key, List<PooledStsJob> pooledJobs) {
+    if (pooledJobs == null || pooledJobs.isEmpty()) {
+      // a missing pool may be created on demand by any instance, so it is not cached
+      pools.remove(key);
+      return null;
+    }
+    Pool pool = new Pool(clock.getAsLong());
+    for (PooledStsJob pooledJob : pooledJobs) {
+      if (pool.slotsBySchedule.containsKey(pooledJob.getSchedule())) {
+        continue;
+      }
+      // the state of a job is kept across pool reloads and expires on its own
+      Slot slot =
+          slotsByJobName.compute(
+              pooledJob.getName(),
+              (name, previous) -> previous == null ? new Slot(pooledJob) : previous);
+      slot.pooledJob = pooledJob;
+      pool.slotsBySchedule.put(pooledJob.getSchedule(), slot);
+    }
+    pools.put(key, pool);
+    return pool;
+  }
+
+  private boolean isExpired(long loadedAt) {
+    return clock.getAsLong() - loadedAt >= ttlMillis;
+  }
+
+  private static String poolKey(String projectId, String bucketName, String type) {
+    return String.join("/", projectId, bucketName, type);
+  }
+
+  private static class Pool {
+    final long loadedAt;
+    final NavigableMap<String, Slot> slotsBySchedule = new TreeMap<>();
+
+    Pool(long loadedAt) {
+      this.loadedAt = loadedAt;
+    }
+  }
+
+  private static class Slot {
+    volatile PooledStsJob pooledJob;
+    TransferJob transferJob;
+    String lastModificationTime;
+    long loadedAt;
+
+    Slot(PooledStsJob pooledJob) {
+      this.pooledJob = pooledJob;
+    }
+  }
+}
@@ -31,6 +31,7 @@ import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.common.RetentionUnitType;
 import com.google.gcs.sdrs.common.RetentionValue;
+import com.google.gcs.sdrs.common.WorkerDeadline;
 import com.google.gcs.sdrs.controller.validation.ValidationConstants;
 import com.google.gcs.sdrs.dao.DmQueueDao;
 import com.google.gcs.sdrs.dao.PooledStsJobDao;
@@ -49,6 +50,7 @@ import com.google.gcs.sdrs.util.CredentialsUtil;
 import com.google.gcs.sdrs.util.GcsHelper;
 import com.google.gcs.sdrs.util.PrefixGeneratorUtility;
 import com.google.gcs.sdrs.util.RetentionUtil;
+import com.google.gcs.sdrs.util.StsRateLimiter;
 import com.google.gcs.sdrs.util.StsUtil;
 import java.io.IOException;
 import java.sql.Timestamp;
@@ -68,6 +70,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,9 +91,17 @@ public class StsRuleExecutor implements RuleExecutor {
   private RetentionJobDao retentionJobDao;
   private PooledStsJobDao stsJobDao;
   private DmQueueDao dmQueueDao;
+  private PooledJobCache pooledJobCache;
 
   private static final Logger logger = LoggerFactory.getLogger(StsRuleExecutor.class);
 
+  public static final int DEFAULT_DATASET_BUCKET_CONCURRENCY = 4;
+  public static final int DATASET_BUCKET_CONCURRENCY =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "sts.datasetRule.bucketConcurrency",
+              String.valueOf(DEFAULT_DATASET_BUCKET_CONCURRENCY)));
+
   public static StsRuleExecutor getInstance() {
     if (instance == null) {
       try {
@@ -106,6 +125,7 @@ public class StsRuleExecutor implements RuleExecutor {
     retentionJobDao = SingletonDao.getRetentionJobDao();
     stsJobDao = SingletonDao.getPooledStsJobDao();
     dmQueueDao = SingletonDao.getDmQueueDao();
+    pooledJobCache = PooledJobCache.getInstance();
   }
 
   /**
@@ -174,130 +194,263 @@ public class StsRuleExecutor implements RuleExecutor {
    *
    * @param datasetRules a list of dataset retention rules
    * @param projectId the project that the datasets belong to
-   * @throws IOException when STS api call fails or other errors
+   * @return the retention jobs of all buckets
    */
   @Override
   public List<RetentionJob> executeDatasetRule(
       Collection<RetentionRule> datasetRules, String projectId) {
-    List<RetentionJob> datasetRuleJobs = new ArrayList<>();
+    List<RetentionJob> datasetRuleJobs = Collections.synchronizedList(new ArrayList<>());
+    executeDatasetRule(datasetRules, projectId, datasetRuleJobs::addAll);
+    return new ArrayList<>(datasetRuleJobs);
+  }
+
+  /**
+   * Executes dataset retention rules as a per-bucket pipeline: prefix generation, STS job patch,
+   * persist and notify. Buckets flow through the stages independently, with at most
+   * DATASET_BUCKET_CONCURRENCY buckets in flight, and each bucket's retention jobs are handed to the
+   * consumer as soon as they are built rather than after all buckets are done.
+   *
+   * <p>A bucket whose prefix generation or STS job patch fails is handed to the consumer as
+   * retention jobs without a name, the same as a bucket whose STS job could not be scheduled, so
+   * the caller counts it as failed. Every call runs its buckets on its own pool of at most
+   * DATASET_BUCKET_CONCURRENCY threads, so a policy run over several projects in parallel uses up
+   * to projectConcurrency times DATASET_BUCKET_CONCURRENCY pipeline threads.
+   *
+   * @param datasetRules a list of dataset retention rules
+   * @param projectId the project that the datasets belong to
+   * @param retentionJobConsumer persists the retention jobs of one bucket. It is called from
+   *     pipeline threads and must be thread safe.
+   * @throws CancellationException when interrupted before every bucket is done
+   */
+  @Override
+  public void executeDatasetRule(
+      Collection<RetentionRule> datasetRules,
+      String projectId,
+      Consumer<List<RetentionJob>> retentionJobConsumer) {
     // get all dataset rules for a bucket
     Map<String, List<RetentionRule>> bucketDatasetMap = buildBucketRuleMap(datasetRules);
+    if (bucketDatasetMap.isEmpty()) {
+      return;
+    }
     String correlationId = getCorrelationId();
     ZonedDateTime zonedDateTimeNow = ZonedDateTime.now(Clock.systemUTC());
     String scheduleTimeOfDay = zonedDateTimeNow.format(DateTimeFormatter.ofPattern("HH:mm:ss"));
 
-    for (String bucketName : bucketDatasetMap.keySet()) {
-
-      List<String> prefixes = new ArrayList<>();
-      Map<String, List<String>> prefixesPerDatasetMap = new HashMap<>();
-
-      // create prefixes from all dataset rules for a bucket
-      for (RetentionRule datasetRule : bucketDatasetMap.get(bucketName)) {
-        if (datasetRule.getType() != RetentionRuleType.DATASET) {
-          logger.warn("Rule type is not dataset.");
-          continue;
-        }
-
-        RetentionValue retentionValue = RetentionValue.parse(datasetRule.getRetentionValue());
-        String datasetPath = RetentionUtil.getDatasetPath(datasetRule.getDataStorageName());
-        List<String> tmpPrefixes = new ArrayList<>();
-
-        try {
-          if (retentionValue.getUnitType() == RetentionUnitType.VERSION) {
-            String prefix = RetentionUtil.generateValidPrefixForListingObjects(datasetPath);
-            List<String> objectsPath = GcsHelper.getInstance().listObjectsWithPrefixInBucket(
-                bucketName, prefix);
-            tmpPrefixes = PrefixGeneratorUtility.generateVersionPrefix(objectsPath,
-                retentionValue.getNumber());
-          } else {
-            tmpPrefixes = PrefixGeneratorUtility.generateTimePrefixes(datasetPath,
-                zonedDateTimeNow.minusDays(StsUtil.STS_LOOKBACK_DAYS),
-                zonedDateTimeNow.minusDays(
-                    RetentionValue.convertValue(retentionValue)));
-          }
-        } catch (IllegalArgumentException e) {
-          logger.error(
-              String.format(
-                  "Failed to generate prefix for dataset %s. %s", datasetPath, e.getMessage()), e);
-        }
-        prefixesPerDatasetMap.put(datasetRule.getDataStorageName(), tmpPrefixes);
-        prefixes.addAll(tmpPrefixes);
+    int concurrency = Math.max(1, Math.min(DATASET_BUCKET_CONCURRENCY, bucketDatasetMap.size()));
+    ExecutorService pipelinePool =
+        Executors.newFixedThreadPool(
+            concurrency, buildCorrelatedThreadFactory(correlationId, WorkerDeadline.current()));
+    // Bounds the buckets in flight so intermediate prefixes never pile up between stages
+    Semaphore bucketsInFlight = new Semaphore(concurrency);
+    List<CompletableFuture<Void>> pipelines = new ArrayList<>();
+    try {
+      for (Map.Entry<String, List<RetentionRule>> entry : bucketDatasetMap.entrySet()) {
+        bucketsInFlight.acquire();
+        DatasetBucketWork work = new DatasetBucketWork(entry.getKey(), entry.getValue());
+        CompletableFuture<Void> pipeline =
+            CompletableFuture.runAsync(
+                    () -> generateDatasetPrefixes(work, zonedDateTimeNow), pipelinePool)
+                .thenRunAsync(
+                    () -> scheduleDatasetJob(work, projectId, scheduleTimeOfDay, zonedDateTimeNow),
+                    pipelinePool)
+                .thenApply(result -> buildDatasetRetentionJobs(work))
+                .exceptionally(
+                    ex -> {
+                      logger.error(
+                          String.format(
+                              "Dataset rule pipeline failed for %s/%s. %s",
+                              projectId, work.bucketName, ex.getMessage()),
+                          ex);
+                      // without a job the retention jobs have no name and count as failed
+                      work.failed = true;
+                      work.job = null;
+                      return buildDatasetRetentionJobs(work);
+                    })
+                .thenAccept(retentionJobConsumer)
+                .thenRun(
+                    () -> {
+                      if (!work.failed && !work.prefixes.isEmpty()) {
+                        sendInactiveDatasetNotification(
+                            projectId,
+                            work.bucketName,
+                            work.prefixes,
+                            zonedDateTimeNow.toInstant(),
+                            correlationId);
+                      }
+                    })
+                .whenComplete((result, ex) -> bucketsInFlight.release());
+        pipelines.add(pipeline);
       }
-      if (!prefixes.isEmpty()) {
-        sendInactiveDatasetNotification(
-            projectId, bucketName, prefixes, zonedDateTimeNow.toInstant(), correlationId);
+      // get() rather than join() so a cancelled worker stops waiting
+      CompletableFuture.allOf(pipelines.toArray(new CompletableFuture[0])).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      pipelinePool.shutdownNow();
+      String message =
+          String.format("Interrupted while executing dataset rules for project %s", projectId);
+      logger.error(message);
+      throw new CancellationException(message);
+    } catch (ExecutionException e) {
+      // only the consumer and the notification can fail here, after the bucket's jobs were built
+      logger.error(
+          String.format("Error executing dataset rules for project %s", projectId), e.getCause());
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
       }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      pipelinePool.shutdown();
+    }
+  }
 
-      String sourceBucket = bucketName;
-      String destinationBucket = StsUtil.buildDestinationBucketName(bucketName);
-      String description =
-          buildDescription(
-              RetentionRuleType.DATASET.toString(),
-              bucketDatasetMap.get(bucketName),
-              scheduleTimeOfDay);
+  /** Pipeline stage: generates the prefixes of every dataset rule of a bucket */
+  private void generateDatasetPrefixes(DatasetBucketWork work, ZonedDateTime zonedDateTimeNow) {
+    // create prefixes from all dataset rules for a bucket
+    for (RetentionRule datasetRule : work.rules) {
+      if (datasetRule.getType() != RetentionRuleType.DATASET) {
+        logger.warn("Rule type is not dataset.");
+        continue;
+      }
 
-      logger.info(
-          String.format(
-              "Scheduling dataset STS job with projectId: %s, "
-                  + "description: %s, source: %s, destination: %s",
-              projectId, description, sourceBucket, destinationBucket));
+      RetentionValue retentionValue = RetentionValue.parse(datasetRule.getRetentionValue());
+      String datasetPath = RetentionUtil.getDatasetPath(datasetRule.getDataStorageName());
+      List<String> tmpPrefixes = new ArrayList<>();
 
-      TransferJob job = null;
       try {
-        if (prefixes.size() != 0) {
-          TransferJob stsPooledJob =
-              findPooledJob(projectId, bucketName, scheduleTimeOfDay, RetentionRuleType.DATASET);
-          if (stsPooledJob == null) {
-            if (!StsUtil.IS_STS_JOBPOOL_ONLY) {
-              job =
-                  StsUtil.createStsJob(
-                      client,
-                      projectId,
-                      sourceBucket,
-                      destinationBucket,
-                      prefixes,
-                      description,
-                      zonedDateTimeNow);
-            }
-          } else {
-            TransferJob jobToUpdate = new TransferJob();
-            jobToUpdate
-                .setDescription(description)
-                .setTransferSpec(
-                    StsUtil.buildTransferSpec(sourceBucket, destinationBucket, prefixes, false, null))
-                .setStatus(StsUtil.STS_ENABLED_STRING);
-            job = StsUtil.updateExistingJob(client, jobToUpdate, stsPooledJob.getName(), projectId);
-          }
+        if (retentionValue.getUnitType() == RetentionUnitType.VERSION) {
+          String prefix = RetentionUtil.generateValidPrefixForListingObjects(datasetPath);
+          List<String> objectsPath = GcsHelper.getInstance().listObjectsWithPrefixInBucket(
+              work.bucketName, prefix);
+          tmpPrefixes = PrefixGeneratorUtility.generateVersionPrefix(objectsPath,
+              retentionValue.getNumber());
         } else {
-          logger.error(String.format("There is not prefix generated for bucket %s", bucketName));
+          tmpPrefixes = PrefixGeneratorUtility.generateTimePrefixes(datasetPath,
+              zonedDateTimeNow.minusDays(StsUtil.STS_LOOKBACK_DAYS),
+              zonedDateTimeNow.minusDays(
+                  RetentionValue.convertValue(retentionValue)));
         }
-      } catch (IOException e) {
+      } catch (IllegalArgumentException e) {
         logger.error(
             String.format(
-                "Failed to schedule dataset STS job for %s/%s. %s",
-                projectId, sourceBucket, e.getMessage()),
-            e);
+                "Failed to generate prefix for dataset %s. %s", datasetPath, e.getMessage()), e);
       }
+      work.prefixesPerDatasetMap.put(datasetRule.getDataStorageName(), tmpPrefixes);
+      work.prefixes.addAll(tmpPrefixes);
+    }
+  }
 
-      String jobName = null;
-      Timestamp createdAt = null;
-      if (job != null) {
-        jobName = job.getName();
-        createdAt = new Timestamp(Instant.parse(job.getLastModificationTime()).toEpochMilli());
-      }
+  /** Pipeline stage: patches the pooled STS job of a bucket with the generated prefixes */
+  private void scheduleDatasetJob(
+      DatasetBucketWork work,
+      String projectId,
+      String scheduleTimeOfDay,
+      ZonedDateTime zonedDateTimeNow) {
+    String sourceBucket = work.bucketName;
+    String destinationBucket = StsUtil.buildDestinationBucketName(work.bucketName);
+    String description =
+        buildDescription(RetentionRuleType.DATASET.toString(), work.rules, scheduleTimeOfDay);
 
-      for (RetentionRule datasetRule : bucketDatasetMap.get(bucketName)) {
-        datasetRuleJobs.add(
-            buildRetentionJobEntity(
-                jobName,
-                datasetRule,
-                StsUtil.convertPrefixToString(
-                    prefixesPerDatasetMap.get(datasetRule.getDataStorageName())),
-                createdAt));
+    logger.info(
+        String.format(
+            "Scheduling dataset STS job with projectId: %s, "
+                + "description: %s, source: %s, destination: %s",
+            projectId, description, sourceBucket, destinationBucket));
+
+    try {
+      if (work.prefixes.size() != 0) {
+        TransferJob stsPooledJob =
+            findPooledJob(projectId, work.bucketName, scheduleTimeOfDay, RetentionRuleType.DATASET);
+        if (stsPooledJob == null) {
+          if (!StsUtil.IS_STS_JOBPOOL_ONLY) {
+            work.job =
+                StsUtil.createStsJob(
+                    client,
+                    projectId,
+                    sourceBucket,
+                    destinationBucket,
+                    work.prefixes,
+                    description,
+                    zonedDateTimeNow);
+          }
+        } else {
+          TransferJob jobToUpdate = new TransferJob();
+          jobToUpdate
+              .setDescription(description)
+              .setTransferSpec(
+                  StsUtil.buildTransferSpec(
+                      sourceBucket, destinationBucket, work.prefixes, false, null))
+              .setStatus(StsUtil.STS_ENABLED_STRING);
+          try {
+            work.job =
+                StsUtil.updateExistingJob(client, jobToUpdate, stsPooledJob.getName(), projectId);
+          } finally {
+            onPooledJobPatched(stsPooledJob.getName(), work.job);
+          }
+        }
+      } else {
+        logger.error(String.format("There is not prefix generated for bucket %s", work.bucketName));
       }
+    } catch (IOException e) {
+      logger.error(
+          String.format(
+              "Failed to schedule dataset STS job for %s/%s. %s",
+              projectId, sourceBucket, e.getMessage()),
+          e);
+    }
+  }
+
+  /** Pipeline stage: builds the retention jobs of a bucket. A null job name marks a failure. */
+  private List<RetentionJob> buildDatasetRetentionJobs(DatasetBucketWork work) {
+    String jobName = null;
+    Timestamp createdAt = null;
+    if (work.job != null) {
+      jobName = work.job.getName();
+      createdAt = new Timestamp(Instant.parse(work.job.getLastModificationTime()).toEpochMilli());
+    }
+
+    List<RetentionJob> retentionJobs = new ArrayList<>();
+    for (RetentionRule datasetRule : work.rules) {
+      retentionJobs.add(
+          buildRetentionJobEntity(
+              jobName,
+              datasetRule,
+              StsUtil.convertPrefixToString(
+                  work.prefixesPerDatasetMap.get(datasetRule.getDataStorageName())),
+              createdAt));
     }
+    return retentionJobs;
+  }
+
+  /**
+   * Names pipeline threads with the correlation id suffix that {@link BaseWorker#getCorrelationId()}
+   * reads, so work done on them is traced to the originating request. The deadline of the worker,
+   * if any, is bound to the threads as well.
+   */
+  private static ThreadFactory buildCorrelatedThreadFactory(
+      String correlationId, WorkerDeadline deadline) {
+    AtomicInteger threadCount = new AtomicInteger(0);
+    return runnable -> {
+      Thread thread = new Thread(deadline == null ? runnable : deadline.bind(runnable));
+      thread.setName(
+          String.format("sts-dataset-%d;%s", threadCount.incrementAndGet(), correlationId));
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
 
-    return datasetRuleJobs;
+  /** The state of one bucket as it moves through the dataset rule pipeline */
+  private static class DatasetBucketWork {
+    private final String bucketName;
+    private final List<RetentionRule> rules;
+    private final List<String> prefixes = new ArrayList<>();
+    private final Map<String, List<String>> prefixesPerDatasetMap = new HashMap<>();
+    private TransferJob job;
+    private volatile boolean failed;
+
+    DatasetBucketWork(String bucketName, List<RetentionRule> rules) {
+      this.bucketName = bucketName;
+      this.rules = rules;
+    }
   }
 
   /**
@@ -447,8 +600,17 @@ public class StsRuleExecutor implements RuleExecutor {
       updatedJob.setDescription(description);
       updatedJob.setTransferSpec(transferSpec);
       updatedJob.setStatus("ENABLED");
-      StsUtil.updateExistingJob(
-          client, updatedJob, existingTransferJob.getName(), existingTransferJob.getProjectId());
+      TransferJob patchedJob = null;
+      try {
+        patchedJob =
+            StsUtil.updateExistingJob(
+                client,
+                updatedJob,
+                existingTransferJob.getName(),
+                existingTransferJob.getProjectId());
+      } finally {
+        onPooledJobPatched(existingTransferJob.getName(), patchedJob);
+      }
     }
     return updatedJob;
   }
@@ -718,7 +880,9 @@ public class StsRuleExecutor implements RuleExecutor {
             String.format(
                 "Creating %s STS job for job pool: %s ",
                 retentionRuleType.toString(), transferJob.toPrettyString()));
-        transferJobList.add(client.transferJobs().create(transferJob).execute());
+        transferJobList.add(
+            StsRateLimiter.getInstance()
+                .execute(projectId, () -> client.transferJobs().create(transferJob).execute()));
       } catch (IOException e) {
         logger.error(
             String.format(
@@ -781,9 +945,14 @@ public class StsRuleExecutor implements RuleExecutor {
       @Nullable String scheduledAt,
       RetentionRuleType retentionRuleType)
       throws IOException {
+    String type = retentionRuleType.toDatabaseRepresentation();
     PooledStsJob pooledJob =
-        stsJobDao.getJob(
-            bucketName, projectId, scheduledAt, retentionRuleType.toDatabaseRepresentation());
+        pooledJobCache.getJob(
+            bucketName,
+            projectId,
+            scheduledAt,
+            type,
+            () -> stsJobDao.getJobs(bucketName, projectId, type));
     boolean isOnDemandPoolCreation =
         SdrsApplication.getAppConfigProperty(
                     "sts.jobPoolOnDemand." + retentionRuleType.toString().toLowerCase())
@@ -796,6 +965,7 @@ public class StsRuleExecutor implements RuleExecutor {
       List<TransferJob> transferJobList =
           createJobPool(projectId, bucketName, destinationBucket, retentionRuleType);
       pooledJob = saveJobPoolAndGetNextJob(transferJobList, scheduledAt, retentionRuleType);
+      pooledJobCache.invalidatePool(bucketName, projectId);
     }
     String jobName = null;
     if (pooledJob != null) {
@@ -814,18 +984,36 @@ public class StsRuleExecutor implements RuleExecutor {
       scheduledAt = pooledJob.getSchedule();
     }
 
-    TransferJob transferJob = StsUtil.getExistingJob(client, projectId, jobName);
+    String pooledJobName = jobName;
+    TransferJob transferJob =
+        pooledJobCache.getTransferJob(
+            pooledJob, () -> StsUtil.getExistingJob(client, projectId, pooledJobName));
     if (!isValidPooledJob(transferJob, jobName, projectId, bucketName, scheduledAt)) {
       logger.error(
           String.format(
               "Pooled job %s scheduled at %s for %s/%s is not valid",
               jobName, scheduledAt, projectId, bucketName));
+      pooledJobCache.invalidateTransferJob(jobName);
       return null;
     }
 
     return transferJob;
   }
 
+  /**
+   * Updates the cached state of a pooled STS job. Must be called after patching the job.
+   *
+   * @param jobName the name of the patched STS job
+   * @param patchedJob the job returned by the patch, or null if the patch failed
+   */
+  public void onPooledJobPatched(String jobName, TransferJob patchedJob) {
+    if (patchedJob == null || !jobName.equals(patchedJob.getName())) {
+      pooledJobCache.invalidateTransferJob(jobName);
+    } else {
+      pooledJobCache.putTransferJob(patchedJob);
+    }
+  }
+
   private boolean isValidPooledJob(
       TransferJob pooledJob,
       String jobName,
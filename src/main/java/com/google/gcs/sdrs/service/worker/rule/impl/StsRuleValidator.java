@@ -35,6 +35,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +91,19 @@ public class StsRuleValidator implements RuleValidator {
    */
   @Override
   public List<RetentionJobValidation> validateRetentionJobs(List<RetentionJob> jobs) {
+    return validateRetentionJobs(jobs, new AtomicInteger());
+  }
+
+  /**
+   * Validates a {@link List} of {@link RetentionJob} objects against STS
+   *
+   * @param jobs the {@link List} of {@link RetentionJob} objects to validate
+   * @param requestCount incremented for every request sent to STS
+   * @return a {@link List} of {@link RetentionJobValidation} records
+   */
+  @Override
+  public List<RetentionJobValidation> validateRetentionJobs(
+      List<RetentionJob> jobs, AtomicInteger requestCount) {
 
     if (jobs.size() == 0) {
       return new ArrayList<>();
@@ -120,7 +134,8 @@ public class StsRuleValidator implements RuleValidator {
       }
     }
 
-    List<Operation> jobOperations = StsUtil.getStsJobOperations(client, projectId, jobs);
+    List<Operation> jobOperations =
+        StsUtil.getStsJobOperations(client, projectId, jobs, requestCount);
     List<RetentionJobValidation> validationRecords = new ArrayList<>();
     for (Operation operation : jobOperations) {
       String stsJobId = extractStsJobId(operation.getName());
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.util;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.googleapis.util.Utils;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.util.Preconditions;
+import com.google.api.services.storage.StorageScopes;
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
+import com.google.api.services.storagetransfer.v1.StoragetransferScopes;
+import com.google.cloud.ServiceOptions;
+import com.google.cloud.http.HttpTransportOptions;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.common.WorkerDeadline;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide registry of the Google API clients. The STS and GCS clients share one HTTP
+ * transport, whose connections are kept alive and reused across requests, and the application
+ * default credential is loaded once and refreshes its access token on its own when it expires.
+ *
+ * <p>The registry counts the requests sent and the connections opened on the shared transport, and
+ * times the access token refreshes of the STS clients.
+ */
+public class ClientRegistry {
+
+  private static final Logger logger = LoggerFactory.getLogger(ClientRegistry.class);
+
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+  public static final int MAX_CONNECTIONS_PER_HOST =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "apiClient.maxConnectionsPerHost",
+              String.valueOf(DEFAULT_MAX_CONNECTIONS_PER_HOST)));
+
+  private static final String APPLICATION_NAME = "sdrs";
+  private static ClientRegistry instance;
+
+  private final HttpTransport transport;
+  private final JsonFactory jsonFactory = Utils.getDefaultJsonFactory();
+  private final Map<GoogleCredential, Storagetransfer> stsClients = new IdentityHashMap<>();
+  private GoogleCredential credential;
+  private String stsRootUrl;
+  private Storage storage;
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong connectionCount = new AtomicLong();
+  private final AtomicLong tokenRefreshCount = new AtomicLong();
+  private final AtomicLong tokenRefreshNanos = new AtomicLong();
+  private final AtomicLong maxTokenRefreshNanos = new AtomicLong();
+
+  private ClientRegistry() {
+    // the JDK keeps this many idle connections per host alive for reuse, default 5
+    if (System.getProperty("http.maxConnections") == null) {
+      System.setProperty("http.maxConnections", String.valueOf(MAX_CONNECTIONS_PER_HOST));
+    }
+    transport =
+        new NetHttpTransport.Builder()
+            .setConnectionFactory(
+                url -> {
+                  requestCount.incrementAndGet();
+                  return (HttpURLConnection) url.openConnection();
+                })
+            .setSslSocketFactory(
+                new CountingSslSocketFactory(
+                    HttpsURLConnection.getDefaultSSLSocketFactory(), connectionCount))
+            .build();
+  }
+
+  /** Constructor used only for testing */
+  ClientRegistry(HttpTransport transport) {
+    this.transport = transport;
+  }
+
+  public static synchronized ClientRegistry getInstance() {
+    if (instance == null) {
+      instance = new ClientRegistry();
+    }
+    return instance;
+  }
+
+  public HttpTransport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Gets the application default credential, scoped for GCS and STS. It is loaded on first use
+   * and shared afterwards.
+   *
+   * @return the shared {@link GoogleCredential}
+   * @throws IOException when the credential cannot be loaded
+   */
+  public synchronized GoogleCredential getCredential() throws IOException {
+    if (credential == null) {
+      credential = scope(GoogleCredential.getApplicationDefault(transport, jsonFactory));
+    }
+    return credential;
+  }
+
+  /**
+   * Gets the STS client authenticating with the given credential, creating it on first use.
+   *
+   * @param credential the credential the client authenticates with
+   * @return the shared {@link Storagetransfer} client of the credential
+   */
+  public synchronized Storagetransfer getStsClient(GoogleCredential credential) {
+    Preconditions.checkNotNull(credential);
+    Storagetransfer client = stsClients.get(credential);
+    if (client == null) {
+      GoogleCredential scoped = scope(credential);
+      HttpRequestInitializer initializer =
+          StsRateLimiter.getInstance()
+              .observe(timeTokenRefresh(new RetryHttpInitializerWrapper(scoped, true), scoped));
+      Storagetransfer.Builder builder =
+          new Storagetransfer.Builder(transport, jsonFactory, initializer)
+              .setApplicationName(APPLICATION_NAME);
+      if (stsRootUrl != null) {
+        builder.setRootUrl(stsRootUrl);
+      }
+      client = builder.build();
+      stsClients.put(credential, client);
+    }
+    return client;
+  }
+
+  /**
+   * Points the STS clients at another endpoint and makes the given credential the shared one.
+   * Used only for testing against a local stand-in of the STS API.
+   *
+   * @param rootUrl the root URL of the endpoint, ending with a slash
+   * @param credential the credential handed out by {@link #getCredential()}
+   */
+  synchronized void useStsEndpoint(String rootUrl, GoogleCredential credential) {
+    stsRootUrl = rootUrl;
+    this.credential = credential;
+    stsClients.clear();
+  }
+
+  /**
+   * Gets the GCS client, creating it on first use. It authenticates with the application default
+   * credentials and sends its requests over the shared transport. Like the STS clients, its
+   * requests time out by the deadline of the worker they are sent for and are not sent or retried
+   * once the worker is cancelled.
+   *
+   * @return the shared {@link Storage} client
+   */
+  public synchronized Storage getStorage() {
+    if (storage == null) {
+      storage =
+          StorageOptions.newBuilder()
+              .setTransportOptions(
+                  new DeadlineTransportOptions(
+                      HttpTransportOptions.newBuilder().setHttpTransportFactory(() -> transport)))
+              .build()
+              .getService();
+    }
+    return storage;
+  }
+
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  public long getConnectionCount() {
+    return connectionCount.get();
+  }
+
+  /** The share of requests sent over a connection that was already open */
+  public double getConnectionReuseRatio() {
+    long requests = requestCount.get();
+    return requests == 0 ? 0 : Math.max(0, requests - connectionCount.get()) / (double) requests;
+  }
+
+  public long getTokenRefreshCount() {
+    return tokenRefreshCount.get();
+  }
+
+  public long getAverageTokenRefreshMillis() {
+    long refreshes = tokenRefreshCount.get();
+    return refreshes == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(tokenRefreshNanos.get() / refreshes);
+  }
+
+  public long getMaxTokenRefreshMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxTokenRefreshNanos.get());
+  }
+
+  private static GoogleCredential scope(GoogleCredential credential) {
+    // In some cases, you need to add the scope explicitly.
+    if (credential.createScopedRequired()) {
+      Set<String> scopes = new HashSet<>();
+      scopes.addAll(StorageScopes.all());
+      scopes.addAll(StoragetransferScopes.all());
+      return credential.createScoped(scopes);
+    }
+    return credential;
+  }
+
+  /**
+   * The credential refreshes its access token while intercepting the first request after the
+   * token expired, so a request whose interception changed the token timed the refresh.
+   */
+  private HttpRequestInitializer timeTokenRefresh(
+      HttpRequestInitializer initializer, Credential credential) {
+    return request -> {
+      initializer.initialize(request);
+      HttpExecuteInterceptor authInterceptor = request.getInterceptor();
+      request.setInterceptor(
+          intercepted -> {
+            String accessToken = credential.getAccessToken();
+            long start = System.nanoTime();
+            authInterceptor.intercept(intercepted);
+            if (!Objects.equals(accessToken, credential.getAccessToken())) {
+              recordTokenRefresh(System.nanoTime() - start);
+            }
+          });
+    };
+  }
+
+  private void recordTokenRefresh(long nanos) {
+    tokenRefreshCount.incrementAndGet();
+    tokenRefreshNanos.addAndGet(nanos);
+    maxTokenRefreshNanos.accumulateAndGet(nanos, Math::max);
+    logger.info(
+        String.format("Refreshed access token in %d ms.", TimeUnit.NANOSECONDS.toMillis(nanos)));
+  }
+
+  /** Counts the connections opened by HTTPS requests, one socket per connection */
+  /** Applies the deadline of the calling worker to the requests of the GCS client */
+  static class DeadlineTransportOptions extends HttpTransportOptions {
+
+    DeadlineTransportOptions(HttpTransportOptions.Builder builder) {
+      super(builder);
+    }
+
+    @Override
+    public HttpRequestInitializer getHttpRequestInitializer(ServiceOptions<?, ?> serviceOptions) {
+      HttpRequestInitializer initializer = super.getHttpRequestInitializer(serviceOptions);
+      return request -> {
+        initializer.initialize(request);
+        WorkerDeadline deadline = WorkerDeadline.current();
+        // the client builds a new request for every attempt, so a cancelled worker stops here
+        if (RetryHttpInitializerWrapper.isCancelled(deadline)) {
+          throw new InterruptedIOException("The worker of the GCS request was cancelled");
+        }
+        request.setConnectTimeout(WorkerDeadline.limitTimeout(request.getConnectTimeout()));
+        request.setReadTimeout(WorkerDeadline.limitTimeout(request.getReadTimeout()));
+      };
+    }
+  }
+
+  private static class CountingSslSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final AtomicLong connectionCount;
+
+    CountingSslSocketFactory(SSLSocketFactory delegate, AtomicLong connectionCount) {
+      this.delegate = delegate;
+      this.connectionCount = connectionCount;
+    }
+
+    private Socket count(Socket socket) {
+      connectionCount.incrementAndGet();
+      return socket;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+      return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+      return delegate.getSupportedCipherSuites();
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+      return count(delegate.createSocket());
+    }
+
+    @Override
+    public Socket createSocket(Socket socket, String host, int port, boolean autoClose)
+        throws IOException {
+      return count(delegate.createSocket(socket, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+      return count(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort)
+        throws IOException {
+      return count(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+      return count(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(
+        InetAddress address, int port, InetAddress localAddress, int localPort)
+        throws IOException {
+      return count(delegate.createSocket(address, port, localAddress, localPort));
+    }
+  }
+}
@@ -18,9 +18,6 @@
 package com.google.gcs.sdrs.util;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.googleapis.util.Utils;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.json.JsonFactory;
 import java.io.IOException;
 
 /** Utility to provide GoogleCredentials. */
@@ -39,15 +36,12 @@ public class CredentialsUtil {
   }
 
   /**
-   * Gets currently available GoogleCredentials
+   * Gets currently available GoogleCredentials. They are loaded once and shared through the
+   * {@link ClientRegistry}, and refresh their access token when it expires.
    * @return {@link GoogleCredential}
    * @throws IOException
    */
   public GoogleCredential getCredentials() throws IOException {
-    HttpTransport httpTransport = Utils.getDefaultTransport();
-    JsonFactory jsonFactory = Utils.getDefaultJsonFactory();
-    GoogleCredential credential =
-        GoogleCredential.getApplicationDefault(httpTransport, jsonFactory);
-    return credential;
+    return ClientRegistry.getInstance().getCredential();
   }
 }
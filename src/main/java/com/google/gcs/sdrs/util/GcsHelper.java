@@ -23,7 +23,6 @@ import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.Bucket;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.Storage.BlobListOption;
-import com.google.cloud.storage.StorageOptions;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -35,16 +34,21 @@ import org.slf4j.LoggerFactory;
 public class GcsHelper {
 
   private Storage storage;
-  private static GcsHelper instance;
+  static GcsHelper instance;
   private static final Logger logger = LoggerFactory.getLogger(GcsHelper.class);
 
   private GcsHelper() throws IOException {
-    storage = StorageOptions.getDefaultInstance().getService();
+    storage = ClientRegistry.getInstance().getStorage();
     if (storage == null) {
       throw new IOException("Failed to create GCS client.");
     }
   }
 
+  /** Constructor used only for testing */
+  GcsHelper(Storage storage) {
+    this.storage = storage;
+  }
+
   public static synchronized GcsHelper getInstance() {
     if (instance == null) {
       try {
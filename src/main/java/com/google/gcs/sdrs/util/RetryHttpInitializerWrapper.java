@@ -29,6 +29,7 @@ import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
 import com.google.api.client.util.ExponentialBackOff;
 import com.google.api.client.util.Sleeper;
 import com.google.common.base.Preconditions;
+import com.google.gcs.sdrs.common.WorkerDeadline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,7 +89,10 @@ public class RetryHttpInitializerWrapper implements HttpRequestInitializer {
    * @param request an HttpRequest that should be initialized
    */
   public void initialize(HttpRequest request) {
-    request.setReadTimeout(2 * MILLIS_PER_MINUTE); // 2 minutes read timeout
+    // 2 minutes read timeout, shortened to the time left when called on behalf of a worker
+    request.setReadTimeout(WorkerDeadline.limitTimeout(2 * MILLIS_PER_MINUTE));
+    request.setConnectTimeout(WorkerDeadline.limitTimeout(request.getConnectTimeout()));
+    final WorkerDeadline deadline = WorkerDeadline.current();
     final HttpUnsuccessfulResponseHandler backoffHandler =
         new HttpBackOffUnsuccessfulResponseHandler(new ExponentialBackOff()).setSleeper(sleeper);
     if (backOffRequiredRateLimit) {
@@ -100,7 +104,11 @@ public class RetryHttpInitializerWrapper implements HttpRequestInitializer {
         (final HttpRequest unsuccessfulRequest,
             final HttpResponse response,
             final boolean supportsRetry) -> {
-          if (wrappedCredential.handleResponse(unsuccessfulRequest, response, supportsRetry)) {
+          if (isCancelled(deadline)) {
+            // the worker the request was made for has been cancelled, so don't retry
+            return false;
+          } else if (wrappedCredential.handleResponse(
+              unsuccessfulRequest, response, supportsRetry)) {
             // If credential decides it can handle it, the return code or message indicated
             // something specific to authentication, and no backoff is desired.
             return true;
@@ -113,8 +121,17 @@ public class RetryHttpInitializerWrapper implements HttpRequestInitializer {
           }
         });
 
+    final HttpBackOffIOExceptionHandler ioExceptionHandler =
+        new HttpBackOffIOExceptionHandler(new ExponentialBackOff()).setSleeper(sleeper);
     request.setIOExceptionHandler(
-        new HttpBackOffIOExceptionHandler(new ExponentialBackOff()).setSleeper(sleeper));
+        (final HttpRequest failedRequest, final boolean supportsRetry) ->
+            !isCancelled(deadline)
+                && ioExceptionHandler.handleIOException(failedRequest, supportsRetry));
+  }
+
+  /** Whether the worker a request is sent for was interrupted or ran past its deadline */
+  static boolean isCancelled(WorkerDeadline deadline) {
+    return Thread.currentThread().isInterrupted() || (deadline != null && deadline.isExpired());
   }
 
   public interface SdrsBackOffRequired extends BackOffRequired {
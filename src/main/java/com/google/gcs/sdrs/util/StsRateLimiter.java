@@ -0,0 +1,295 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.util;
+
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.common.WorkerDeadline;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client side limit on the number of STS calls in flight, shared by every STS call of the
+ * instance.
+ *
+ * <p>The limit adapts to the responses of STS: it grows by one call for every limit's worth of
+ * successful responses and is halved on a rate limit or server error response, at most once per
+ * {@link #DECREASE_INTERVAL_MILLIS}. Calls waiting for a permit are queued per project and the
+ * projects take turns, so a project with a large backlog cannot starve the others.
+ */
+public class StsRateLimiter {
+
+  private static final Logger logger = LoggerFactory.getLogger(StsRateLimiter.class);
+
+  public static final boolean DEFAULT_ENABLED = true;
+  public static final boolean ENABLED =
+      Boolean.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "sts.rateLimiter.enabled", String.valueOf(DEFAULT_ENABLED)));
+
+  public static final int DEFAULT_INITIAL_CONCURRENCY = 8;
+  public static final int INITIAL_CONCURRENCY =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "sts.rateLimiter.initialConcurrency", String.valueOf(DEFAULT_INITIAL_CONCURRENCY)));
+
+  public static final int DEFAULT_MIN_CONCURRENCY = 1;
+  public static final int MIN_CONCURRENCY =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "sts.rateLimiter.minConcurrency", String.valueOf(DEFAULT_MIN_CONCURRENCY)));
+
+  public static final int DEFAULT_MAX_CONCURRENCY = 32;
+  public static final int MAX_CONCURRENCY =
+      Integer.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "sts.rateLimiter.maxConcurrency", String.valueOf(DEFAULT_MAX_CONCURRENCY)));
+
+  public static final long DEFAULT_DECREASE_INTERVAL_MILLIS = 1000;
+  public static final long DECREASE_INTERVAL_MILLIS =
+      Long.valueOf(
+          SdrsApplication.getAppConfigProperty(
+              "sts.rateLimiter.decreaseIntervalMillis",
+              String.valueOf(DEFAULT_DECREASE_INTERVAL_MILLIS)));
+
+  private static final int TOO_MANY_REQUESTS_429 = 429;
+  // how long a waiting call sleeps before checking the deadline of its worker again
+  private static final long WAIT_SLICE_MILLIS = 1000;
+
+  private static StsRateLimiter instance;
+
+  private final boolean enabled;
+  private final int minConcurrency;
+  private final int maxConcurrency;
+  private final long decreaseIntervalMillis;
+  private final LongSupplier clock;
+
+  // guarded by this
+  private double concurrencyLimit;
+  private int inFlight;
+  private Long lastDecreaseMillis;
+  private final Map<String, Deque<Waiter>> waitersByProject = new LinkedHashMap<>();
+
+  StsRateLimiter(
+      boolean enabled,
+      int initialConcurrency,
+      int minConcurrency,
+      int maxConcurrency,
+      long decreaseIntervalMillis,
+      LongSupplier clock) {
+    this.enabled = enabled;
+    this.minConcurrency = Math.max(1, minConcurrency);
+    this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+    this.concurrencyLimit =
+        Math.min(this.maxConcurrency, Math.max(this.minConcurrency, initialConcurrency));
+    this.decreaseIntervalMillis = decreaseIntervalMillis;
+    this.clock = clock;
+  }
+
+  public static synchronized StsRateLimiter getInstance() {
+    if (instance == null) {
+      instance =
+          new StsRateLimiter(
+              ENABLED,
+              INITIAL_CONCURRENCY,
+              MIN_CONCURRENCY,
+              MAX_CONCURRENCY,
+              DECREASE_INTERVAL_MILLIS,
+              System::currentTimeMillis);
+    }
+    return instance;
+  }
+
+  /** A call to the STS API */
+  public interface StsCall<T> {
+    T execute() throws IOException;
+  }
+
+  /**
+   * Runs an STS call once a permit is available.
+   *
+   * @param projectId the project the call is made for, which decides its queue
+   * @param call the STS call
+   * @return the result of the call
+   * @throws IOException when the call fails, or the wait is interrupted or outlives the deadline
+   *     of the worker
+   */
+  public <T> T execute(String projectId, StsCall<T> call) throws IOException {
+    if (!enabled) {
+      return call.execute();
+    }
+    acquire(projectId == null ? "" : projectId);
+    try {
+      return call.execute();
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Wraps the request initializer of an STS client so that every response, including the ones
+   * retried by the initializer, adjusts the limit.
+   *
+   * @param initializer the initializer to wrap
+   * @return the wrapping initializer
+   */
+  public HttpRequestInitializer observe(HttpRequestInitializer initializer) {
+    if (!enabled) {
+      return initializer;
+    }
+    return request -> {
+      initializer.initialize(request);
+      HttpUnsuccessfulResponseHandler unsuccessfulResponseHandler =
+          request.getUnsuccessfulResponseHandler();
+      request.setUnsuccessfulResponseHandler(
+          (unsuccessfulRequest, response, supportsRetry) -> {
+            onResponse(response.getStatusCode());
+            return unsuccessfulResponseHandler != null
+                && unsuccessfulResponseHandler.handleResponse(
+                    unsuccessfulRequest, response, supportsRetry);
+          });
+      HttpResponseInterceptor responseInterceptor = request.getResponseInterceptor();
+      request.setResponseInterceptor(
+          response -> {
+            // unsuccessful responses have been seen by the handler already
+            if (response.isSuccessStatusCode()) {
+              onResponse(response.getStatusCode());
+            }
+            if (responseInterceptor != null) {
+              responseInterceptor.interceptResponse(response);
+            }
+          });
+    };
+  }
+
+  /** Adjusts the limit to the status code of an STS response */
+  synchronized void onResponse(int statusCode) {
+    if (statusCode == TOO_MANY_REQUESTS_429 || statusCode / 100 == 5) {
+      long now = clock.getAsLong();
+      // the calls in flight when the limit was hit all fail alike, so they count as one signal
+      if (lastDecreaseMillis == null || now - lastDecreaseMillis >= decreaseIntervalMillis) {
+        lastDecreaseMillis = now;
+        concurrencyLimit = Math.max(minConcurrency, concurrencyLimit / 2);
+        logger.warn(
+            String.format(
+                "STS responded %d. Lowered the STS concurrency limit to %d.",
+                statusCode, getConcurrencyLimit()));
+      }
+    } else if (statusCode / 100 == 2) {
+      concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+      grant();
+    }
+  }
+
+  public synchronized int getConcurrencyLimit() {
+    return (int) concurrencyLimit;
+  }
+
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  public synchronized int getWaiting() {
+    return waitersByProject.values().stream().mapToInt(Deque::size).sum();
+  }
+
+  private synchronized void acquire(String projectId) throws InterruptedIOException {
+    if (waitersByProject.isEmpty() && inFlight < getConcurrencyLimit()) {
+      inFlight++;
+      return;
+    }
+
+    Waiter waiter = new Waiter();
+    waitersByProject.computeIfAbsent(projectId, key -> new ArrayDeque<>()).add(waiter);
+    WorkerDeadline deadline = WorkerDeadline.current();
+    try {
+      while (!waiter.granted) {
+        if (deadline != null && deadline.isExpired()) {
+          throw new InterruptedIOException("Worker deadline passed waiting for an STS permit.");
+        }
+        long waitMillis =
+            deadline == null
+                ? WAIT_SLICE_MILLIS
+                : Math.max(1, Math.min(WAIT_SLICE_MILLIS, deadline.getRemainingMillis()));
+        wait(waitMillis);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      abandon(projectId, waiter);
+      throw new InterruptedIOException("Interrupted waiting for an STS permit.");
+    } catch (InterruptedIOException e) {
+      abandon(projectId, waiter);
+      throw e;
+    }
+  }
+
+  private synchronized void release() {
+    inFlight--;
+    grant();
+  }
+
+  /** Hands out the free permits, taking the projects with waiting calls in turn */
+  private void grant() {
+    boolean granted = false;
+    while (inFlight < getConcurrencyLimit() && !waitersByProject.isEmpty()) {
+      Iterator<Map.Entry<String, Deque<Waiter>>> projects = waitersByProject.entrySet().iterator();
+      Map.Entry<String, Deque<Waiter>> project = projects.next();
+      projects.remove();
+      Waiter waiter = project.getValue().poll();
+      if (!project.getValue().isEmpty()) {
+        // the project goes to the back of the line
+        waitersByProject.put(project.getKey(), project.getValue());
+      }
+      waiter.granted = true;
+      inFlight++;
+      granted = true;
+    }
+    if (granted) {
+      notifyAll();
+    }
+  }
+
+  private void abandon(String projectId, Waiter waiter) {
+    if (waiter.granted) {
+      release();
+      return;
+    }
+    Deque<Waiter> waiters = waitersByProject.get(projectId);
+    if (waiters != null) {
+      waiters.remove(waiter);
+      if (waiters.isEmpty()) {
+        waitersByProject.remove(projectId);
+      }
+    }
+  }
+
+  private static class Waiter {
+    boolean granted;
+  }
+}
@@ -19,16 +19,10 @@
 package com.google.gcs.sdrs.util;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.googleapis.util.Utils;
-import com.google.api.client.http.HttpRequestInitializer;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.json.JsonFactory;
-import com.google.api.client.util.Preconditions;
-import com.google.api.services.storage.StorageScopes;
 import com.google.api.services.storagetransfer.v1.Storagetransfer;
-import com.google.api.services.storagetransfer.v1.StoragetransferScopes;
 import com.google.api.services.storagetransfer.v1.model.Date;
 import com.google.api.services.storagetransfer.v1.model.GcsData;
+import com.google.api.services.storagetransfer.v1.model.ListOperationsResponse;
 import com.google.api.services.storagetransfer.v1.model.ObjectConditions;
 import com.google.api.services.storagetransfer.v1.model.Operation;
 import com.google.api.services.storagetransfer.v1.model.Schedule;
@@ -47,8 +41,11 @@ import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,13 +86,16 @@ public class StsUtil {
   public static final boolean IS_STS_JOBPOOL_ONLY =
       Boolean.valueOf(SdrsApplication.getAppConfigProperty("sts.jobPoolOnly", "true"));
 
+  /** The number of STS jobs whose operations are listed with one request */
+  public static final int OPERATION_LIST_JOB_NAMES = 50;
+  /** The largest page size transferOperations.list accepts */
+  public static final int OPERATION_LIST_PAGE_SIZE = 256;
+
   private static final Logger logger = LoggerFactory.getLogger(StsUtil.class);
 
-  /** Creates an instance of the STS Client */
+  /** Gets the shared STS client of the credential from the {@link ClientRegistry} */
   public static Storagetransfer createStsClient(GoogleCredential credential) {
-    HttpTransport httpTransport = Utils.getDefaultTransport();
-    JsonFactory jsonFactory = Utils.getDefaultJsonFactory();
-    return createStorageTransferClient(httpTransport, jsonFactory, credential);
+    return ClientRegistry.getInstance().getStsClient(credential);
   }
 
   /**
@@ -137,7 +137,8 @@ public class StsUtil {
     logger.info(
         String.format("Creating one time transfer job in STS: %s", transferJob.toPrettyString()));
 
-    return client.transferJobs().create(transferJob).execute();
+    return StsRateLimiter.getInstance()
+        .execute(projectId, () -> client.transferJobs().create(transferJob).execute());
   }
 
   /**
@@ -180,7 +181,8 @@ public class StsUtil {
     logger.info(
         String.format("Creating recurring transfer job in STS: %s", transferJob.toPrettyString()));
 
-    return client.transferJobs().create(transferJob).execute();
+    return StsRateLimiter.getInstance()
+        .execute(projectId, () -> client.transferJobs().create(transferJob).execute());
   }
 
   /**
@@ -206,7 +208,7 @@ public class StsUtil {
         String.format(
             "Updating transfer job %s in STS: %s", jobName, jobToUpdate.toPrettyString()));
 
-    return request.execute();
+    return StsRateLimiter.getInstance().execute(projectId, request::execute);
   }
 
   /**
@@ -223,70 +225,97 @@ public class StsUtil {
     Storagetransfer.TransferJobs.Get request = client.transferJobs().get(jobName);
     request.setProjectId(projectId);
 
-    return request.execute();
+    return StsRateLimiter.getInstance().execute(projectId, request::execute);
   }
 
   /**
-   * Gets the information about submitted STS job operations
+   * Gets the information about submitted STS job operations. The operations of up to {@link
+   * #OPERATION_LIST_JOB_NAMES} STS jobs are listed with one paginated request and matched back to
+   * their jobs locally.
    *
    * @param client the {@link Storagetransfer} client to use for the request
    * @param projectId a {@link String} of the project ID to search
    * @param retentionJobs a {@link List} of jobs to retrieve
+   * @param requestCount incremented for every request sent to STS
    * @return a {@link List} of {@link Operation} objects associated with the given jobs
    */
   public static List<Operation> getStsJobOperations(
-      Storagetransfer client, String projectId, List<RetentionJob> retentionJobs) {
-
-    List<Operation> operations = new ArrayList<>();
-    Set<String> jobNames = new HashSet<>();
+      Storagetransfer client,
+      String projectId,
+      List<RetentionJob> retentionJobs,
+      AtomicInteger requestCount) {
 
+    // The operation of an STS job is the first one started after its first retention job was
+    // created
+    Map<String, Instant> createdAtByJobName = new LinkedHashMap<>();
     for (RetentionJob job : retentionJobs) {
+      createdAtByJobName.putIfAbsent(job.getName(), job.getCreatedAt().toInstant());
+    }
 
+    Map<String, Operation> closestOperations = new LinkedHashMap<>();
+    List<String> jobNames = new ArrayList<>(createdAtByJobName.keySet());
+    for (int i = 0; i < jobNames.size(); i += OPERATION_LIST_JOB_NAMES) {
+      List<String> jobNameChunk =
+          jobNames.subList(i, Math.min(i + OPERATION_LIST_JOB_NAMES, jobNames.size()));
       try {
-        if (jobNames.contains(job.getName())) {
-          continue;
-        } else {
-          jobNames.add(job.getName());
-        }
-        List<String> jobNameList = new ArrayList<>();
-        jobNameList.add(job.getName());
-        // All STS jobs are daily run. Get the operations for the past 5 days.
-        Storagetransfer.TransferOperations.List operationRequest =
-            client
-                .transferOperations()
-                .list(TRANSFER_OPERATION_STRING)
-                .setFilter(buildOperationFilterString(projectId, jobNameList))
-                .setPageSize(5);
-
-        List<Operation> operationsPerJob = operationRequest.execute().getOperations();
-        Operation operationClosestToJobCreatedAtTime = null;
-        Instant closestTime = Instant.MAX;
-        if (operationsPerJob != null) {
-          // loop through operations to find the one closest to when the
-          // job is scheduled.
-          for (Operation operation : operationsPerJob) {
-            String opeationStartTimeString = operation.getMetadata().get("startTime").toString();
-            Instant operationStartTime = Instant.parse(opeationStartTimeString);
-            Instant retentionJobCreatedAtTime = job.getCreatedAt().toInstant();
-            if (operationStartTime.isAfter(retentionJobCreatedAtTime)) {
-              if (operationClosestToJobCreatedAtTime == null
-                  || operationStartTime.isBefore(closestTime)) {
-                operationClosestToJobCreatedAtTime = operation;
-                closestTime = operationStartTime;
-              }
-            }
-          }
-        }
-
-        if (operationClosestToJobCreatedAtTime != null) {
-          operations.add(operationClosestToJobCreatedAtTime);
-        }
+        listClosestOperations(
+            client, projectId, jobNameChunk, createdAtByJobName, closestOperations, requestCount);
       } catch (IOException ex) {
         logger.error("Could not establish connection with STS: ", ex.getMessage());
       }
     }
 
-    return operations;
+    return new ArrayList<>(closestOperations.values());
+  }
+
+  private static void listClosestOperations(
+      Storagetransfer client,
+      String projectId,
+      List<String> jobNames,
+      Map<String, Instant> createdAtByJobName,
+      Map<String, Operation> closestOperations,
+      AtomicInteger requestCount)
+      throws IOException {
+    // jobs that may still have an operation closer to their creation on a later page
+    Set<String> openJobNames = new HashSet<>(jobNames);
+    String pageToken = null;
+    do {
+      Storagetransfer.TransferOperations.List request =
+          client
+              .transferOperations()
+              .list(TRANSFER_OPERATION_STRING)
+              .setFilter(buildOperationFilterString(projectId, jobNames))
+              .setPageSize(OPERATION_LIST_PAGE_SIZE)
+              .setPageToken(pageToken);
+      ListOperationsResponse response =
+          StsRateLimiter.getInstance().execute(projectId, request::execute);
+      requestCount.incrementAndGet();
+
+      if (response.getOperations() != null) {
+        for (Operation operation : response.getOperations()) {
+          Object jobName = operation.getMetadata().get("transferJobName");
+          Instant retentionJobCreatedAtTime = createdAtByJobName.get(jobName);
+          if (retentionJobCreatedAtTime == null) {
+            continue;
+          }
+          Instant operationStartTime = getOperationStartTime(operation);
+          if (operationStartTime.isAfter(retentionJobCreatedAtTime)) {
+            Operation closest = closestOperations.get(jobName);
+            if (closest == null || operationStartTime.isBefore(getOperationStartTime(closest))) {
+              closestOperations.put((String) jobName, operation);
+            }
+          } else {
+            // operations are listed newest first, so the remaining ones of this job are older
+            openJobNames.remove(jobName);
+          }
+        }
+      }
+      pageToken = response.getNextPageToken();
+    } while (pageToken != null && !openJobNames.isEmpty());
+  }
+
+  private static Instant getOperationStartTime(Operation operation) {
+    return Instant.parse(operation.getMetadata().get("startTime").toString());
   }
 
   /**
@@ -376,27 +405,6 @@ public class StsUtil {
         "{\"project_id\": \"%s\", \"job_names\": %s}", projectId, new Gson().toJson(jobNames));
   }
 
-  private static Storagetransfer createStorageTransferClient(
-      HttpTransport httpTransport, JsonFactory jsonFactory, GoogleCredential credential) {
-
-    Preconditions.checkNotNull(httpTransport);
-    Preconditions.checkNotNull(jsonFactory);
-    Preconditions.checkNotNull(credential);
-
-    // In some cases, you need to add the scope explicitly.
-    if (credential.createScopedRequired()) {
-      Set<String> scopes = new HashSet<>();
-      scopes.addAll(StorageScopes.all());
-      scopes.addAll(StoragetransferScopes.all());
-      credential = credential.createScoped(scopes);
-    }
-
-    HttpRequestInitializer initializer = new RetryHttpInitializerWrapper(credential, true);
-    return new Storagetransfer.Builder(httpTransport, jsonFactory, initializer)
-        .setApplicationName("sdrs")
-        .build();
-  }
-
   public static @NotNull Date convertToDate(LocalDate startDate) {
     Date googleDate = new Date();
     googleDate.setYear(startDate.getYear());
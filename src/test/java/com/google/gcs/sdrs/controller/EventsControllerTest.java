@@ -21,19 +21,23 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import com.google.gcs.sdrs.common.ExecutionEventType;
 import com.google.gcs.sdrs.controller.pojo.ErrorResponse;
 import com.google.gcs.sdrs.controller.pojo.EventResponse;
+import com.google.gcs.sdrs.controller.pojo.EventStatusResponse;
 import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
 import com.google.gcs.sdrs.controller.validation.ValidationResult;
 import com.google.gcs.sdrs.dao.DmQueueDao;
 import com.google.gcs.sdrs.dao.SingletonDao;
 import com.google.gcs.sdrs.service.impl.EventsServiceImpl;
+import com.google.gcs.sdrs.service.manager.JobQueueFullException;
 import com.google.gcs.sdrs.util.GcsHelper;
 import com.google.gcs.sdrs.util.RetentionUtil;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import org.glassfish.grizzly.http.util.HttpStatus;
 import org.junit.Before;
@@ -87,6 +91,20 @@ public class EventsControllerTest {
     assertNotNull(((EventResponse) response.getEntity()).getUuid());
   }
 
+  @Test
+  public void executePolicyAttachedToInFlightRunReturnsItsCorrelationId() throws Exception {
+    ExecutionEventRequest request = new ExecutionEventRequest();
+    request.setExecutionEventType(ExecutionEventType.POLICY);
+    when(controller.service.processExecutionEvent(any(), any())).thenReturn("running-id");
+
+    Response response = controller.executeEvent(request);
+
+    assertEquals(response.getStatus(), HttpStatus.OK_200.getStatusCode());
+    EventResponse eventResponse = (EventResponse) response.getEntity();
+    assertEquals("running-id", eventResponse.getCorrelationId());
+    assertTrue(eventResponse.getMessage().contains("running-id"));
+  }
+
   @Test
   public void executeEventMissingTypeFails() {
     ExecutionEventRequest request = new ExecutionEventRequest();
@@ -140,4 +158,40 @@ public class EventsControllerTest {
 
     assertEquals(response.getStatus(), HttpStatus.OK_200.getStatusCode());
   }
+
+  @Test
+  public void getEventStatusWhenRunExistsSucceeds() {
+    EventStatusResponse status = new EventStatusResponse();
+    status.setCorrelationId("correlation-id");
+    status.setStatus("RUNNING");
+    when(controller.service.getEventStatus("correlation-id")).thenReturn(status);
+
+    Response response = controller.getEventStatus("correlation-id");
+
+    assertEquals(response.getStatus(), HttpStatus.OK_200.getStatusCode());
+    assertEquals("RUNNING", ((EventStatusResponse) response.getEntity()).getStatus());
+  }
+
+  @Test
+  public void getEventStatusWhenRunIsUnknownFails() {
+    when(controller.service.getEventStatus(any())).thenReturn(null);
+
+    Response response = controller.getEventStatus("unknown");
+
+    assertEquals(response.getStatus(), HttpStatus.NOT_FOUND_404.getStatusCode());
+  }
+
+  @Test
+  public void executeEventWhenQueueIsFullReturnsTooManyRequests() throws Exception {
+    ExecutionEventRequest request = new ExecutionEventRequest();
+    request.setExecutionEventType(ExecutionEventType.POLICY);
+    doThrow(new JobQueueFullException("full", 30))
+        .when(controller.service)
+        .processExecutionEvent(any(), any());
+
+    Response response = controller.executeEvent(request);
+
+    assertEquals(response.getStatus(), Response.Status.TOO_MANY_REQUESTS.getStatusCode());
+    assertEquals("30", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.impl.RetentionJobDaoImpl;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares row by row and JDBC batched writes of retention jobs. The benchmark writes to the
+ * database configured by the HIBERNATE_CONNECTION_* environment variables, which must have the
+ * current schema loaded, deletes what it wrote and is skipped when it is not set.
+ */
+public class BatchWriteBenchmarkTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(BatchWriteBenchmarkTest.class);
+  private static final String HIBERNATE_CONFIG = "src/main/resources/hibernate.cfg.xml";
+  private static final int ROW_COUNT = 10000;
+
+  @Test
+  public void hibernateBatchSizeMatchesDaoBatchSize() throws IOException {
+    String config =
+        new String(Files.readAllBytes(Paths.get(HIBERNATE_CONFIG)), StandardCharsets.UTF_8);
+
+    assertTrue(
+        config.contains(
+            "<property name=\"hibernate.jdbc.batch_size\">"
+                + BaseDao.JDBC_BATCH_SIZE
+                + "</property>"));
+    assertTrue(config.contains("rewriteBatchedStatements\">true<"));
+  }
+
+  @Test
+  public void batchedInsertsOutperformRowByRowSaves() throws SQLException {
+    String url = System.getenv("HIBERNATE_CONNECTION_URL");
+    assumeTrue(url != null && !url.isEmpty());
+
+    RetentionJobDao retentionJobDao = new RetentionJobDaoImpl();
+    String rowByRowBatchId = UUID.randomUUID().toString();
+    String batchedBatchId = UUID.randomUUID().toString();
+    try {
+      List<RetentionJob> rowByRowJobs = createJobs(rowByRowBatchId);
+      long start = System.nanoTime();
+      rowByRowJobs.forEach(retentionJobDao::save);
+      double rowByRowRate = rowsPerSecond(System.nanoTime() - start);
+
+      List<RetentionJob> batchedJobs = createJobs(batchedBatchId);
+      start = System.nanoTime();
+      retentionJobDao.saveBatch(batchedJobs);
+      double batchedRate = rowsPerSecond(System.nanoTime() - start);
+
+      logger.info(
+          String.format(
+              "Inserted %d retention jobs at %.0f rows/s row by row and %.0f rows/s batched "
+                  + "(%.1fx).",
+              ROW_COUNT, rowByRowRate, batchedRate, batchedRate / rowByRowRate));
+      for (RetentionJob job : batchedJobs) {
+        assertNotNull(job.getId());
+      }
+      assertEquals(ROW_COUNT, batchedJobs.stream().map(RetentionJob::getId).distinct().count());
+      assertTrue(batchedRate > rowByRowRate);
+    } finally {
+      deleteJobs(url, rowByRowBatchId, batchedBatchId);
+    }
+  }
+
+  private static List<RetentionJob> createJobs(String batchId) {
+    List<RetentionJob> jobs = new ArrayList<>();
+    for (int i = 0; i < ROW_COUNT; i++) {
+      RetentionJob job = new RetentionJob();
+      job.setName("benchmark-job-" + i);
+      job.setRetentionRuleType(RetentionRuleType.DATASET);
+      job.setRetentionRuleDataStorageName("gs://benchmark-bucket/dataset-" + i);
+      job.setRetentionRuleProjectId("benchmark-project");
+      job.setDataStorageRoot("benchmark-bucket");
+      job.setBatchId(batchId);
+      job.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+      jobs.add(job);
+    }
+    return jobs;
+  }
+
+  private static double rowsPerSecond(long elapsedNanos) {
+    return ROW_COUNT * 1e9 / Math.max(1, elapsedNanos);
+  }
+
+  private static void deleteJobs(String url, String... batchIds) throws SQLException {
+    try (Connection connection =
+            DriverManager.getConnection(
+                url,
+                System.getenv("HIBERNATE_CONNECTION_USER"),
+                System.getenv("HIBERNATE_CONNECTION_PASSWORD"));
+        PreparedStatement statement =
+            connection.prepareStatement("DELETE FROM retention_job WHERE batch_id = ?")) {
+      for (String batchId : batchIds) {
+        statement.setString(1, batchId);
+        statement.executeUpdate();
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.model.RetentionRule;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.Test;
+
+public class ProjectRulesTest {
+
+  @Test
+  public void partitionGroupsRulesByProjectInOnePass() {
+    Stream<RetentionRule> rules =
+        Stream.of(
+            createRule("project2", RetentionRuleType.DEFAULT),
+            createRule("project1", RetentionRuleType.DATASET),
+            createRule("project1", RetentionRuleType.DATASET),
+            createRule("project1", RetentionRuleType.DEFAULT),
+            createRule("global-default", RetentionRuleType.GLOBAL));
+
+    Map<String, ProjectRules> rulesByProject = ProjectRules.partition(rules, "global-default");
+
+    assertEquals(Arrays.asList("project1", "project2"), new ArrayList<>(rulesByProject.keySet()));
+    assertEquals(2, rulesByProject.get("project1").getDatasetRules().size());
+    assertEquals(1, rulesByProject.get("project1").getDefaultRules().size());
+    assertTrue(rulesByProject.get("project2").getDatasetRules().isEmpty());
+    assertEquals(1, rulesByProject.get("project2").getDefaultRules().size());
+  }
+
+  @Test
+  public void partitionGivesEveryProjectItsOwnGlobalRule() {
+    RetentionRule projectGlobal = createRule("project2", RetentionRuleType.GLOBAL);
+    projectGlobal.setId(2);
+    RetentionRule defaultGlobal = createRule("global-default", RetentionRuleType.GLOBAL);
+    defaultGlobal.setId(1);
+    Stream<RetentionRule> rules =
+        Stream.of(
+            createRule("project1", RetentionRuleType.DATASET),
+            createRule("project2", RetentionRuleType.DATASET),
+            createRule("project3", RetentionRuleType.DEFAULT),
+            projectGlobal,
+            defaultGlobal);
+
+    Map<String, ProjectRules> rulesByProject = ProjectRules.partition(rules, "global-default");
+
+    RetentionRule project1Global = rulesByProject.get("project1").getGlobalRule();
+    RetentionRule project3Global = rulesByProject.get("project3").getGlobalRule();
+    assertEquals(Integer.valueOf(1), project1Global.getId());
+    assertEquals(Integer.valueOf(1), project3Global.getId());
+    assertNotSame(project1Global, project3Global);
+    assertEquals(Integer.valueOf(2), rulesByProject.get("project2").getGlobalRule().getId());
+    assertEquals(3, rulesByProject.size());
+  }
+
+  private static RetentionRule createRule(String projectId, RetentionRuleType type) {
+    RetentionRule rule = new RetentionRule();
+    rule.setProjectId(projectId);
+    rule.setType(type);
+    rule.setIsActive(true);
+    return rule;
+  }
+}
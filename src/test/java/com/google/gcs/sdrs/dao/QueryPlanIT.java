@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gcs.sdrs.dao.QueryPlanTest.HotQuery;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.testcontainers.containers.MySQLContainer;
+
+/**
+ * Checks that MySQL serves the hot DAO queries from their indexes. It starts MySQL 8.0 in Docker,
+ * loads the schema, fills the tables with enough rows for the optimizer to prefer the indexes and
+ * explains every query of {@link QueryPlanTest#HOT_QUERIES}. It also runs the startup schema check
+ * of {@link SchemaVerifier} against the real information_schema. Run it with mvn verify
+ * -Pintegration-test.
+ */
+public class QueryPlanIT {
+
+  private static final int ROWS = 20000;
+
+  private static MySQLContainer<?> mysql;
+  private static Connection connection;
+
+  @BeforeClass
+  public static void setupDatabase() throws IOException, SQLException {
+    mysql =
+        new MySQLContainer<>("mysql:8.0")
+            // the connector of this project predates the default authentication of MySQL 8.0
+            .withCommand("--default-authentication-plugin=mysql_native_password")
+            .withUrlParam("useSSL", "false")
+            .withUrlParam("serverTimezone", "UTC");
+    mysql.start();
+    connection =
+        DriverManager.getConnection(mysql.getJdbcUrl(), mysql.getUsername(), mysql.getPassword());
+    try (Statement statement = connection.createStatement()) {
+      loadSchema(statement);
+      seed(statement);
+    }
+  }
+
+  @AfterClass
+  public static void teardownDatabase() throws SQLException {
+    if (connection != null) {
+      connection.close();
+    }
+    if (mysql != null) {
+      mysql.stop();
+    }
+  }
+
+  @Test
+  public void hotQueriesUseTheirIndexes() throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      for (HotQuery query : QueryPlanTest.HOT_QUERIES) {
+        try (ResultSet plan = statement.executeQuery("EXPLAIN " + query.sql)) {
+          assertTrue("No plan for " + query.sql, plan.next());
+          String extra = plan.getString("Extra");
+          assertEquals("Index used by " + query.sql, query.index, plan.getString("key"));
+          assertNotEquals("Full scan for " + query.sql, "ALL", plan.getString("type"));
+          if (query.ordered) {
+            assertFalse(
+                "Rows sorted for " + query.sql,
+                extra != null && extra.contains("Using filesort"));
+          }
+          assertFalse("More than one table in " + query.sql, plan.next());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void schemaPassesStartupVerification() throws SQLException {
+    List<Object[]> rows = new ArrayList<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet columns = statement.executeQuery(SchemaVerifier.COLUMNS_QUERY)) {
+      while (columns.next()) {
+        Object[] row = new Object[6];
+        for (int i = 0; i < row.length; i++) {
+          row[i] = columns.getString(i + 1);
+        }
+        rows.add(row);
+      }
+    }
+
+    assertEquals(new ArrayList<String>(), SchemaVerifier.verifyColumns(rows));
+  }
+
+  /** Runs the table definitions of the schema in the database of the container */
+  private static void loadSchema(Statement statement) throws IOException, SQLException {
+    String schema =
+        new String(Files.readAllBytes(Paths.get(QueryPlanTest.SCHEMA)), StandardCharsets.UTF_8);
+    // the triggers use DELIMITER, which only the mysql client understands
+    schema = schema.substring(0, schema.indexOf("-- TRIGGER SCRIPTS"));
+    StringBuilder sql = new StringBuilder();
+    for (String line : schema.split("\n")) {
+      if (!line.trim().startsWith("--")) {
+        sql.append(line).append('\n');
+      }
+    }
+    for (String ddl : sql.toString().split(";")) {
+      String trimmed = ddl.trim();
+      if (!trimmed.isEmpty()
+          && !trimmed.startsWith("CREATE DATABASE")
+          && !trimmed.startsWith("USE ")) {
+        statement.execute(trimmed);
+      }
+    }
+  }
+
+  /**
+   * Fills the tables with rows spread over many projects and buckets. Most DM requests are done,
+   * as they are between two runs of the DM queue cleanup.
+   */
+  private static void seed(Statement statement) throws SQLException {
+    statement.execute("SET SESSION cte_max_recursion_depth = " + ROWS);
+    String sequence = "WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq"
+        + " WHERE n < " + ROWS + ") ";
+    statement.execute(
+        "INSERT INTO retention_rule (dataset_name, retention_value, data_storage_name,"
+            + " data_storage_root, data_storage_type, project_id, type, is_active, `user`) "
+            + sequence
+            + "SELECT CONCAT('dataset-', n), '30:day',"
+            + " CONCAT('gs://bucket-', n % 500, '/dataset-', n), CONCAT('bucket-', n % 500),"
+            + " 'google_cloud_storage', CONCAT('project-', n % 50),"
+            + " ELT(1 + n % 2, 'dataset', 'default'), n % 10 <> 0, 'test' FROM seq");
+    statement.execute(
+        "INSERT INTO retention_job (name, retention_rule_type, retention_rule_data_storage_name,"
+            + " retention_rule_project_id, created_at) "
+            + sequence
+            + "SELECT CONCAT('transferJobs/', n), ELT(1 + n % 4, 'dataset', 'default', 'global',"
+            + " 'user'), CONCAT('gs://bucket-', n % 500), CONCAT('project-', n % 50),"
+            + " NOW() - INTERVAL n MINUTE FROM seq");
+    statement.execute(
+        "INSERT INTO pooled_sts_job (name, project_id, type, schedule, source_bucket,"
+            + " source_project) "
+            + sequence
+            + "SELECT CONCAT('transferJobs/pool-', n), CONCAT('project-', n % 50),"
+            + " ELT(1 + n % 2, 'dataset', 'user'), CONCAT(LPAD(n % 24, 2, '0'), ':00:00'),"
+            + " CONCAT('bucket-', n % 500), CONCAT('project-', n % 50) FROM seq");
+    statement.execute(
+        "INSERT INTO dm_queue (data_storage_name, status, priority, data_storage_root,"
+            + " number_of_retry, created_at) "
+            + sequence
+            + "SELECT CONCAT('gs://bucket-', n % 500, '/dataset-', n % 20),"
+            + " ELT(1 + n % 10, 'pending', 'retry', 'scheduled', 'success', 'success',"
+            + " 'success', 'success', 'success', 'success', 'success'), n % 3,"
+            + " CONCAT('bucket-', n % 500), n % 4, NOW() - INTERVAL n SECOND FROM seq");
+    statement.execute("ANALYZE TABLE retention_rule, retention_job, pooled_sts_job, dm_queue");
+  }
+}
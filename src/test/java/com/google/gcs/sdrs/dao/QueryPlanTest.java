@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.dao;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Guards the indexes behind the hot DAO queries. This test checks that the schema and the
+ * migrations define them; {@link QueryPlanIT} checks the plans MySQL picks for the queries.
+ */
+public class QueryPlanTest {
+
+  static final String SCHEMA = "scripts/sql/retention_schema.sql";
+  private static final String MIGRATIONS = "scripts/sql/mods/v0.4.0";
+
+  /** Native equivalents of the SQL the DAO criteria queries generate */
+  static final List<HotQuery> HOT_QUERIES = new ArrayList<>();
+
+  static {
+    // DmQueueDaoImpl.getAvailableRequestsPage, first page
+    HOT_QUERIES.add(
+        new HotQuery(
+            "dm_queue_available_priority",
+            true,
+            "SELECT * FROM dm_queue WHERE available = 1"
+                + " AND (claim_owner IS NULL OR claim_expires_at < now())"
+                + " ORDER BY priority DESC, number_of_retry DESC, created_at ASC, id ASC"
+                + " LIMIT 1000"));
+    // DmQueueDaoImpl.getAvailableRequestsPage, next pages
+    HOT_QUERIES.add(
+        new HotQuery(
+            "dm_queue_available_priority",
+            true,
+            "SELECT * FROM dm_queue WHERE available = 1"
+                + " AND (claim_owner IS NULL OR claim_expires_at < now())"
+                + " AND (priority < 1"
+                + " OR priority = 1 AND number_of_retry < 2"
+                + " OR priority = 1 AND number_of_retry = 2"
+                + " AND created_at > '2019-01-01 00:00:00'"
+                + " OR priority = 1 AND number_of_retry = 2"
+                + " AND created_at = '2019-01-01 00:00:00' AND id > 100)"
+                + " ORDER BY priority DESC, number_of_retry DESC, created_at ASC, id ASC"
+                + " LIMIT 1000"));
+    // DmQueueDaoImpl.getPendingDmRequestByName, without the project_id the entity maps but the
+    // dm_queue table does not have
+    HOT_QUERIES.add(
+        new HotQuery(
+            "dm_queue_storage_name_status",
+            false,
+            "SELECT * FROM dm_queue WHERE data_storage_name = 'gs://bucket-1/dataset-1'"
+                + " AND (status = 'pending' OR status = 'scheduled' OR status = 'retry')"));
+    // RetentionRuleDaoImpl.findDatasetRulesByProjectId and friends
+    HOT_QUERIES.add(
+        new HotQuery(
+            "retention_rule_project_type_active",
+            false,
+            "SELECT * FROM retention_rule WHERE is_active = 1 AND type = 'dataset'"
+                + " AND project_id = 'project-1'"));
+    // RetentionRuleDaoImpl.findRulesByDataStorageRoot
+    HOT_QUERIES.add(
+        new HotQuery(
+            "retention_rule_storage_root",
+            false,
+            "SELECT * FROM retention_rule WHERE project_id = 'project-1'"
+                + " AND data_storage_root = 'bucket-1' AND type = 'dataset'"));
+    // PooledStsJobDaoImpl.getJobs
+    HOT_QUERIES.add(
+        new HotQuery(
+            "query_project_bucket_type_schedule",
+            true,
+            "SELECT * FROM pooled_sts_job WHERE source_bucket = 'bucket-1'"
+                + " AND source_project = 'project-1' AND type = 'dataset' ORDER BY schedule ASC"));
+    // RetentionJobDaoImpl.findLatestDefaultJob. The two rule types are sorted together, which
+    // is cheap for the few jobs of one data storage.
+    HOT_QUERIES.add(
+        new HotQuery(
+            "retention_job_storage_name_type_created",
+            false,
+            "SELECT * FROM retention_job WHERE retention_rule_data_storage_name = 'gs://bucket-1'"
+                + " AND (retention_rule_type = 'default' OR retention_rule_type = 'global')"
+                + " ORDER BY created_at DESC"));
+  }
+
+  @Test
+  public void schemaAndMigrationsDefineEveryHotQueryIndex() throws IOException {
+    String schema = new String(Files.readAllBytes(Paths.get(SCHEMA)), StandardCharsets.UTF_8);
+    StringBuilder migrations = new StringBuilder();
+    try (DirectoryStream<Path> mods = Files.newDirectoryStream(Paths.get(MIGRATIONS), "*.sql")) {
+      for (Path mod : mods) {
+        migrations.append(new String(Files.readAllBytes(mod), StandardCharsets.UTF_8));
+      }
+    }
+
+    for (HotQuery query : HOT_QUERIES) {
+      String index = "`" + query.index + "`";
+      assertTrue(SCHEMA + " is missing " + query.index, schema.contains(index));
+      assertTrue(MIGRATIONS + " is missing " + query.index, migrations.indexOf(index) >= 0);
+    }
+  }
+
+  /** A hot query and the index it must be served by */
+  static class HotQuery {
+    final String index;
+    // whether the index also provides the order, so the rows must not be sorted
+    final boolean ordered;
+    final String sql;
+
+    HotQuery(String index, boolean ordered, String sql) {
+      this.index = index;
+      this.ordered = ordered;
+      this.sql = sql;
+    }
+  }
+}
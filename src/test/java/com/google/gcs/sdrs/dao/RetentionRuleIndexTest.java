@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.model.RetentionRule;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RetentionRuleIndexTest {
+
+  private static final long CREATED_AT = 1_000_000L;
+
+  private List<Timestamp> loadedSince;
+  private List<List<RetentionRule>> loads;
+  private long now;
+  private RetentionRuleIndex index;
+
+  @Before
+  public void setUp() {
+    loadedSince = new ArrayList<>();
+    loads = new ArrayList<>();
+    now = 0;
+    index =
+        new RetentionRuleIndex(
+            since -> {
+              loadedSince.add(since);
+              return loads.isEmpty() ? Collections.emptyList() : loads.remove(0);
+            },
+            () -> now);
+  }
+
+  @Test
+  public void firstReadLoadsAllRulesIndexedByProjectAndType() {
+    loads.add(
+        Arrays.asList(
+            createRule(1, "project", RetentionRuleType.DATASET, "gs://bucket/a", true),
+            createRule(2, "project", RetentionRuleType.DEFAULT, "gs://bucket", true),
+            createRule(3, "project", RetentionRuleType.DATASET, "gs://bucket/b", false),
+            createRule(4, "global-default", RetentionRuleType.GLOBAL, "global", true)));
+
+    RetentionRuleIndex.Snapshot rules = index.get();
+
+    assertNull(loadedSince.get(0));
+    assertEquals(4, rules.size());
+    assertEquals(1, rules.findActive("project", RetentionRuleType.DATASET).size());
+    assertEquals(1, rules.findActive("project", RetentionRuleType.DEFAULT).size());
+    assertEquals(1, rules.findActive("global-default", RetentionRuleType.GLOBAL).size());
+    assertEquals(Collections.singletonList("project"), rules.getActiveNonGlobalProjectIds());
+    assertEquals(
+        2,
+        rules.findByDataStorageRoot("project", "bucket", RetentionRuleType.DATASET, true).size());
+    assertEquals(
+        1,
+        rules.findByDataStorageRoot("project", "bucket", RetentionRuleType.DATASET, false).size());
+    assertEquals(
+        Integer.valueOf(1), rules.findActiveDatasetRule("project", "gs://bucket/a").getId());
+    assertNull(rules.findActiveDatasetRule("project", "gs://bucket/b"));
+  }
+
+  @Test
+  public void lookupsReturnCopies() {
+    loads.add(
+        Collections.singletonList(
+            createRule(1, "project", RetentionRuleType.DATASET, "gs://bucket/a", true)));
+
+    RetentionRule first = index.get().findActive("project", RetentionRuleType.DATASET).get(0);
+    first.setProjectId("changed");
+    RetentionRule second = index.get().findActive("project", RetentionRuleType.DATASET).get(0);
+
+    assertNotSame(first, second);
+    assertEquals("project", second.getProjectId());
+  }
+
+  @Test
+  public void refreshLoadsOnlyChangesOnceStale() {
+    loads.add(
+        Collections.singletonList(
+            createRule(1, "project", RetentionRuleType.DATASET, "gs://bucket/a", true)));
+    RetentionRuleIndex.Snapshot loaded = index.get();
+
+    now = RetentionRuleIndex.MAX_STALENESS_SECONDS * 1000L - 1;
+    assertSame(loaded, index.get());
+    assertEquals(1, loadedSince.size());
+
+    RetentionRule deactivated =
+        createRule(1, "project", RetentionRuleType.DATASET, "gs://bucket/a", false);
+    deactivated.setUpdatedAt(new Timestamp(CREATED_AT + 5000));
+    loads.add(Collections.singletonList(deactivated));
+    now = RetentionRuleIndex.MAX_STALENESS_SECONDS * 1000L;
+    RetentionRuleIndex.Snapshot refreshed = index.get();
+
+    assertEquals(
+        new Timestamp(CREATED_AT - RetentionRuleIndex.OVERLAP_SECONDS * 1000L),
+        loadedSince.get(1));
+    assertTrue(refreshed.findActive("project", RetentionRuleType.DATASET).isEmpty());
+    assertTrue(refreshed.getActiveNonGlobalProjectIds().isEmpty());
+    assertEquals(1, refreshed.size());
+  }
+
+  @Test
+  public void invalidateRefreshesOnNextRead() {
+    loads.add(
+        Collections.singletonList(
+            createRule(1, "project", RetentionRuleType.DATASET, "gs://bucket/a", true)));
+    index.get();
+    loads.add(
+        Collections.singletonList(
+            createRule(2, "project", RetentionRuleType.DATASET, "gs://bucket/b", true)));
+
+    index.invalidate();
+
+    assertEquals(2, index.get().findActive("project", RetentionRuleType.DATASET).size());
+    assertEquals(2, loadedSince.size());
+  }
+
+  @Test
+  public void failedRefreshKeepsThePreviousSnapshot() {
+    loads.add(
+        Collections.singletonList(
+            createRule(1, "project", RetentionRuleType.DATASET, "gs://bucket/a", true)));
+    RetentionRuleIndex.Snapshot loaded = index.get();
+    loads.add(null);
+
+    assertSame(loaded, index.get(0));
+  }
+
+  @Test
+  public void failedFirstLoadReturnsNull() {
+    loads.add(null);
+
+    assertNull(index.get());
+  }
+
+  private static RetentionRule createRule(
+      int id, String projectId, RetentionRuleType type, String dataStorageName, boolean active) {
+    RetentionRule rule = new RetentionRule();
+    rule.setId(id);
+    rule.setProjectId(projectId);
+    rule.setType(type);
+    rule.setDataStorageName(dataStorageName);
+    rule.setDataStorageRoot(
+        dataStorageName.startsWith("gs://")
+            ? dataStorageName.substring(5).split("/")[0]
+            : dataStorageName);
+    rule.setIsActive(active);
+    rule.setCreatedAt(new Timestamp(CREATED_AT));
+    return rule;
+  }
+}
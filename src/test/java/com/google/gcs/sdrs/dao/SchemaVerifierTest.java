@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class SchemaVerifierTest {
+
+  private static final Object[] AVAILABLE =
+      new Object[] {
+        "dm_queue",
+        "available",
+        "tinyint(1)",
+        "YES",
+        "VIRTUAL GENERATED",
+        "(`status` in (_utf8mb4\\'pending\\',_utf8mb4\\'retry\\'))"
+      };
+  private static final Object[] VALIDATION_STATE =
+      new Object[] {
+        "retention_job", "validation_state", "enum('pending','done')", "NO", "", null
+      };
+
+  @Test
+  public void migratedColumnsPass() {
+    assertTrue(SchemaVerifier.verifyColumns(rows(AVAILABLE, VALIDATION_STATE)).isEmpty());
+  }
+
+  @Test
+  public void missingColumnsFail() {
+    List<String> problems = SchemaVerifier.verifyColumns(rows());
+
+    assertEquals(2, problems.size());
+    assertTrue(problems.get(0).contains("mod_9"));
+    assertTrue(problems.get(1).contains("mod_8"));
+  }
+
+  @Test
+  public void columnsAddedByHibernateFail() {
+    Object[] plainAvailable =
+        new Object[] {"dm_queue", "available", "bit(1)", "YES", "", null};
+    Object[] plainValidationState =
+        new Object[] {"retention_job", "validation_state", "varchar(255)", "YES", "", null};
+
+    List<String> problems =
+        SchemaVerifier.verifyColumns(rows(plainAvailable, plainValidationState));
+
+    assertEquals(2, problems.size());
+    assertTrue(problems.get(0).contains("dm_queue.available"));
+    assertTrue(problems.get(1).contains("retention_job.validation_state"));
+  }
+
+  @Test
+  public void nullableValidationStateFails() {
+    Object[] nullable =
+        new Object[] {
+          "retention_job", "validation_state", "enum('pending','done')", "YES", "", null
+        };
+
+    assertEquals(1, SchemaVerifier.verifyColumns(rows(AVAILABLE, nullable)).size());
+  }
+
+  private static List<Object[]> rows(Object[]... rows) {
+    List<Object[]> list = new ArrayList<>();
+    for (Object[] row : rows) {
+      list.add(row);
+    }
+    return list;
+  }
+}
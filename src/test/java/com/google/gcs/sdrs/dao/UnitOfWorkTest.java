@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.persistence.PersistenceException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UnitOfWorkTest {
+
+  private Session session;
+  private Transaction transaction;
+
+  @Before
+  public void setUp() {
+    session = mock(Session.class);
+    transaction = mock(Transaction.class);
+    when(session.beginTransaction()).thenReturn(transaction);
+    when(session.isOpen()).thenReturn(true);
+    when(transaction.isActive()).thenReturn(true);
+  }
+
+  @Test
+  public void executeCommitsAndClosesTheSession() {
+    String result =
+        UnitOfWork.execute(
+            () -> {
+              assertTrue(UnitOfWork.isActive());
+              UnitOfWork.current().getSession(() -> session);
+              return "done";
+            });
+
+    assertEquals("done", result);
+    assertFalse(UnitOfWork.isActive());
+    verify(transaction).commit();
+    verify(transaction, never()).rollback();
+    verify(session).close();
+  }
+
+  @Test
+  public void executeWithoutDaoCallsOpensNoSession() {
+    UnitOfWork.execute(() -> null);
+
+    assertFalse(UnitOfWork.isActive());
+    verify(session, never()).beginTransaction();
+  }
+
+  @Test
+  public void nestedWorkJoinsTheOuterSession() {
+    UnitOfWork.execute(
+        () -> {
+          Session outer = UnitOfWork.current().getSession(() -> session);
+          Session inner =
+              UnitOfWork.execute(
+                  () -> UnitOfWork.current().getSession(() -> mock(Session.class)));
+          assertSame(outer, inner);
+          assertTrue(UnitOfWork.current().owns(inner));
+          verify(transaction, never()).commit();
+          return null;
+        });
+
+    verify(session, times(1)).beginTransaction();
+    verify(transaction, times(1)).commit();
+    verify(session, times(1)).close();
+  }
+
+  @Test
+  public void failedWorkRollsBackAndRethrows() {
+    IllegalStateException failure = new IllegalStateException("failed");
+    try {
+      UnitOfWork.execute(
+          () -> {
+            UnitOfWork.current().getSession(() -> session);
+            throw failure;
+          });
+      fail("The failure of the work should be rethrown");
+    } catch (IllegalStateException e) {
+      assertSame(failure, e);
+    }
+
+    assertFalse(UnitOfWork.isActive());
+    verify(transaction, never()).commit();
+    verify(transaction).rollback();
+    verify(session).close();
+  }
+
+  @Test
+  public void rollbackOnlyWorkDoesNotCommit() {
+    try {
+      UnitOfWork.execute(
+          () -> {
+            UnitOfWork.current().getSession(() -> session);
+            UnitOfWork.markCurrentRollbackOnly();
+            return null;
+          });
+      fail("A unit of work marked rollback only should fail");
+    } catch (PersistenceException e) {
+      // expected
+    }
+
+    verify(transaction, never()).commit();
+    verify(transaction).rollback();
+    verify(session).close();
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gcs.sdrs.dao.Lease;
+import com.google.gcs.sdrs.dao.LockDao;
+import com.google.gcs.sdrs.scheduler.runners.LeaderOnlyRunner;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class for LeaderElection */
+public class LeaderElectionTest {
+
+  private LockDao lockDao;
+  private LeaderElection election;
+
+  @Before
+  public void setUp() {
+    lockDao = mock(LockDao.class);
+    election = new LeaderElection(lockDao, "scheduler-leader", "instance-1", 30);
+  }
+
+  @Test
+  public void renewBecomesLeaderWhenLeaseIsAcquired() {
+    when(lockDao.acquireLease("scheduler-leader", "instance-1", 30)).thenReturn(7L);
+
+    assertFalse(election.isLeader());
+    election.renew();
+
+    assertTrue(election.isLeader());
+  }
+
+  @Test
+  public void heartbeatRenewsLeaseWithItsFencingToken() {
+    when(lockDao.acquireLease("scheduler-leader", "instance-1", 30)).thenReturn(7L);
+    when(lockDao.renewLease("scheduler-leader", "instance-1", 7L, 30)).thenReturn(true);
+
+    election.renew();
+    election.renew();
+
+    assertTrue(election.isLeader());
+    verify(lockDao).acquireLease("scheduler-leader", "instance-1", 30);
+    Lease lease = election.getLease();
+    assertEquals("scheduler-leader", lease.getLockId());
+    assertEquals("instance-1", lease.getOwner());
+    assertEquals(7L, lease.getFencingToken());
+  }
+
+  @Test
+  public void renewLosesLeadershipWhenLeaseIsTaken() {
+    when(lockDao.acquireLease(anyString(), anyString(), anyInt()))
+        .thenReturn(7L, LockDao.NO_LEASE);
+    when(lockDao.renewLease(anyString(), anyString(), anyLong(), anyInt())).thenReturn(false);
+
+    election.renew();
+    election.renew();
+
+    assertFalse(election.isLeader());
+    assertNull(election.getLease());
+  }
+
+  @Test
+  public void renewLosesLeadershipWhenDatabaseFails() {
+    when(lockDao.acquireLease(anyString(), anyString(), anyInt())).thenReturn(7L);
+    when(lockDao.renewLease(anyString(), anyString(), anyLong(), anyInt()))
+        .thenThrow(new RuntimeException("database down"));
+
+    election.renew();
+    election.renew();
+
+    assertFalse(election.isLeader());
+  }
+
+  @Test
+  public void resignReleasesLeaseAndStopsCompeting() {
+    when(lockDao.acquireLease(anyString(), anyString(), anyInt())).thenReturn(7L);
+    election.renew();
+
+    election.resign();
+    election.renew();
+
+    assertFalse(election.isLeader());
+    verify(lockDao).releaseLease("scheduler-leader", "instance-1", 7L);
+  }
+
+  @Test
+  public void resignWithoutLeadershipKeepsLease() {
+    election.resign();
+
+    verify(lockDao, never()).releaseLease(anyString(), anyString(), anyLong());
+  }
+
+  @Test
+  public void leaderOnlyRunnerRunsOnLeaderOnly() {
+    AtomicInteger runs = new AtomicInteger(0);
+    LeaderOnlyRunner runner = new LeaderOnlyRunner(runs::incrementAndGet, election);
+
+    runner.run();
+    when(lockDao.acquireLease(anyString(), anyString(), anyInt())).thenReturn(7L);
+    election.renew();
+    runner.run();
+
+    assertEquals(1, runs.get());
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.scheduler.runners;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gcs.sdrs.dao.DmQueueDao;
+import com.google.gcs.sdrs.dao.Lease;
+import com.google.gcs.sdrs.dao.StaleLeaseException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class for DmQueueCleanupRunner */
+public class DmQueueCleanupRunnerTest {
+
+  private DmQueueDao dmQueueDao;
+  private Lease lease;
+
+  @Before
+  public void setUp() {
+    dmQueueDao = mock(DmQueueDao.class);
+    lease = new Lease("scheduler-leader", "instance-1", 7L);
+  }
+
+  @Test
+  public void runDeletesChunksUntilTheQueueIsClean() {
+    when(dmQueueDao.deleteSuccessfulDmRequests(lease, 10, true)).thenReturn(10, 10, 3);
+
+    new DmQueueCleanupRunner(dmQueueDao, () -> lease, 10, 0, true).run();
+
+    verify(dmQueueDao, times(3)).deleteSuccessfulDmRequests(lease, 10, true);
+  }
+
+  @Test
+  public void runStopsOnceLeadershipIsLost() {
+    AtomicInteger leaseReads = new AtomicInteger();
+    when(dmQueueDao.deleteSuccessfulDmRequests(lease, 10, false)).thenReturn(10);
+
+    new DmQueueCleanupRunner(
+            dmQueueDao, () -> leaseReads.incrementAndGet() <= 2 ? lease : null, 10, 0, false)
+        .run();
+
+    verify(dmQueueDao, times(2)).deleteSuccessfulDmRequests(lease, 10, false);
+  }
+
+  @Test
+  public void runStopsWhenTheLeaseIsStale() {
+    when(dmQueueDao.deleteSuccessfulDmRequests(lease, 10, false))
+        .thenReturn(10)
+        .thenThrow(new StaleLeaseException(lease));
+
+    new DmQueueCleanupRunner(dmQueueDao, () -> lease, 10, 0, false).run();
+
+    verify(dmQueueDao, times(2)).deleteSuccessfulDmRequests(lease, 10, false);
+  }
+
+  @Test
+  public void runDoesNothingWithoutLeadership() {
+    new DmQueueCleanupRunner(dmQueueDao, () -> null, 10, 0, false).run();
+
+    verify(dmQueueDao, never()).deleteSuccessfulDmRequests(any(), anyInt(), anyBoolean());
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.gcs.sdrs.common.ExecutionEventType;
+import com.google.gcs.sdrs.controller.pojo.EventChildStatus;
+import com.google.gcs.sdrs.controller.pojo.EventStatusResponse;
+import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
+import com.google.gcs.sdrs.service.worker.WorkerResult;
+import com.google.gcs.sdrs.service.worker.WorkerResult.WorkerResultStatus;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class EventsServiceImplTest {
+
+  @Test
+  public void policyCoalescingKeyFollowsScope() {
+    String global = EventsServiceImpl.buildPolicyCoalescingKey(policyRequest(null, null));
+    String project = EventsServiceImpl.buildPolicyCoalescingKey(policyRequest("p1", null));
+    String target =
+        EventsServiceImpl.buildPolicyCoalescingKey(policyRequest("p1", "gs://b/dataset"));
+
+    assertEquals("POLICY:global", global);
+    assertEquals("POLICY:project:p1", project);
+    assertEquals("POLICY:target:p1:gs://b/dataset", target);
+    // a target without a project runs the global policy
+    assertEquals(global, EventsServiceImpl.buildPolicyCoalescingKey(policyRequest("", "gs://b")));
+    assertNotEquals(
+        project, EventsServiceImpl.buildPolicyCoalescingKey(policyRequest("p2", null)));
+  }
+
+  @Test
+  public void eventStatusIncludesChildStatusesAndDurations() {
+    WorkerResult result = workerResult("run", "POLICY", WorkerResultStatus.RUNNING, 1000, null);
+    result.addChildResult(workerResult("p1", "project", WorkerResultStatus.SUCCESS, 1000, 1500L));
+    result.addChildResult(workerResult("p2", "project", WorkerResultStatus.RUNNING, 1200, null));
+
+    EventStatusResponse response = EventsServiceImpl.buildEventStatusResponse(result, 2000);
+
+    assertEquals("RUNNING", response.getStatus());
+    assertEquals(Long.valueOf(1000), response.getDurationMillis());
+    assertEquals(2, response.getChildren().size());
+    EventChildStatus finished = response.getChildren().get(0);
+    assertEquals("p1", finished.getId());
+    assertEquals("project", finished.getType());
+    assertEquals("SUCCESS", finished.getStatus());
+    assertEquals(Long.valueOf(500), finished.getDurationMillis());
+    EventChildStatus running = response.getChildren().get(1);
+    assertEquals("RUNNING", running.getStatus());
+    assertNull(running.getEndTime());
+    assertEquals(Long.valueOf(800), running.getDurationMillis());
+  }
+
+  @Test
+  public void eventStatusWithoutChildrenHasNoChildren() {
+    WorkerResult result = workerResult("run", "VALIDATION", WorkerResultStatus.QUEUED, 0, null);
+    result.setStartTime(null);
+
+    EventStatusResponse response = EventsServiceImpl.buildEventStatusResponse(result, 2000);
+
+    assertNull(response.getChildren());
+    assertNull(response.getDurationMillis());
+  }
+
+  private WorkerResult workerResult(
+      String id, String type, WorkerResultStatus status, long startMillis, Long endMillis) {
+    WorkerResult result = new WorkerResult();
+    result.setId(id);
+    result.setType(type);
+    result.setStatus(status);
+    result.setStartTime(new DateTime(startMillis, DateTimeZone.UTC));
+    if (endMillis != null) {
+      result.setEndTime(new DateTime(endMillis, DateTimeZone.UTC));
+    }
+    return result;
+  }
+
+  private ExecutionEventRequest policyRequest(String projectId, String target) {
+    ExecutionEventRequest request = new ExecutionEventRequest();
+    request.setExecutionEventType(ExecutionEventType.POLICY);
+    request.setProjectId(projectId);
+    request.setTarget(target);
+    return request;
+  }
+}
@@ -19,10 +19,12 @@
 package com.google.gcs.sdrs.service.manager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 import com.google.gcs.sdrs.service.worker.BaseWorker;
 import com.google.gcs.sdrs.service.worker.WorkerResult;
 import java.util.UUID;
+import java.util.concurrent.FutureTask;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -47,11 +49,51 @@ public class JobManagerMonitorTest {
   }
 
   /**
-   * Tests the getWorkerResult method of the monitor thread. Should decrement the activeWorkerCount
-   * in the jobManager.
+   * Tests the onWorkerComplete method of the monitor. Should decrement the activeWorkerCount in the
+   * jobManager.
    */
   @Test
-  public void getWorkerResultTest() throws InterruptedException {
+  public void onWorkerCompleteDecrementsActiveWorkers() {
+    int activeWorkers = instance.activeWorkerCount.incrementAndGet();
+    BaseWorker worker =
+        new BaseWorker(UUID.randomUUID().toString()) {
+          @Override
+          public void doWork() {
+            workerResult.setStatus(WorkerResult.WorkerResultStatus.SUCCESS);
+          }
+        };
+    FutureTask<WorkerResult> future = new FutureTask<>(worker);
+    future.run();
+
+    objectToTest.onWorkerComplete(worker, future);
+
+    assertEquals(activeWorkers - 1, instance.activeWorkerCount.get());
+  }
+
+  /** Tests that a worker throwing an exception is counted as complete and marked failed */
+  @Test
+  public void onWorkerCompleteWhenWorkerThrowsDecrementsActiveWorkers() {
+    int activeWorkers = instance.activeWorkerCount.incrementAndGet();
+    BaseWorker worker =
+        new BaseWorker(UUID.randomUUID().toString()) {
+          @Override
+          public void doWork() {
+            throw new IllegalStateException("test");
+          }
+        };
+    FutureTask<WorkerResult> future = new FutureTask<>(worker);
+    future.run();
+
+    objectToTest.onWorkerComplete(worker, future);
+
+    assertEquals(activeWorkers - 1, instance.activeWorkerCount.get());
+    assertEquals(WorkerResult.WorkerResultStatus.FAILED, worker.getWorkerResult().getStatus());
+    assertNotNull(worker.getWorkerResult().getEndTime());
+  }
+
+  /** Tests that submitted workers report back without anything polling for results */
+  @Test
+  public void submittedWorkerReportsOnCompletion() throws Exception {
     int activeWorkers = instance.activeWorkerCount.get();
     BaseWorker worker =
         new BaseWorker(UUID.randomUUID().toString()) {
@@ -61,8 +103,10 @@ public class JobManagerMonitorTest {
           }
         };
     instance.submitJob(worker);
-    assertEquals(instance.activeWorkerCount.get(), activeWorkers + 1);
-    objectToTest.getWorkerResults();
-    assertEquals(instance.activeWorkerCount.get(), activeWorkers);
+
+    for (int i = 0; i < 100 && instance.activeWorkerCount.get() != activeWorkers; i++) {
+      Thread.sleep(50);
+    }
+    assertEquals(activeWorkers, instance.activeWorkerCount.get());
   }
 }
@@ -20,9 +20,18 @@ package com.google.gcs.sdrs.service.manager;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.gcs.sdrs.service.worker.BaseWorker;
+import com.google.gcs.sdrs.service.worker.WorkerBulkhead;
+import com.google.gcs.sdrs.service.worker.WorkerResult;
+import com.google.gcs.sdrs.service.worker.WorkerPriority;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -51,7 +60,7 @@ public class JobManagerTest {
   public void getInstanceWhenInstanceDoesNotExist() {
     // Instance created in test setup
     assertNotNull(instance);
-    assertNotNull(instance.completionService);
+    assertNotNull(instance.monitor);
     assertEquals(instance.activeWorkerCount.get(), 0);
   }
 
@@ -67,15 +76,278 @@ public class JobManagerTest {
 
   /** Test that the worker count is incremented when a job is submitted */
   @Test
-  public void testSubmitJob() {
+  public void testSubmitJob() throws Exception {
     assertNotNull(instance);
+    CountDownLatch latch = new CountDownLatch(1);
     BaseWorker worker =
         new BaseWorker(UUID.randomUUID().toString()) {
           @Override
-          public void doWork() {}
+          public void doWork() {
+            try {
+              latch.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
         };
     int currentActiveWorkers = instance.activeWorkerCount.get();
     instance.submitJob(worker);
     assertEquals(currentActiveWorkers + 1, instance.activeWorkerCount.get());
+    latch.countDown();
+  }
+
+  /** Test that submissions are rejected once the queue is at capacity */
+  @Test
+  public void submitJobWhenQueueIsFullRejects() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    Bulkhead bulkhead = instance.getBulkhead(WorkerBulkhead.DEFAULT);
+    // Enough workers to occupy every thread and fill the queue
+    int maxSubmissions = bulkhead.getQueueCapacity() + 1000;
+    try {
+      for (int i = 0; i < maxSubmissions; i++) {
+        instance.submitJob(
+            new BaseWorker(UUID.randomUUID().toString()) {
+              @Override
+              public void doWork() {
+                try {
+                  latch.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+            });
+      }
+      fail("Expected the job queue to reject a submission");
+    } catch (JobQueueFullException ex) {
+      assertTrue(ex.getRetryAfterSeconds() > 0);
+      assertEquals(bulkhead.getQueueCapacity(), bulkhead.getQueueDepth());
+      assertEquals(1, bulkhead.getRejectedJobCount());
+      assertEquals(1, instance.getRejectedJobCount());
+    } finally {
+      latch.countDown();
+    }
+  }
+
+  /** Test that a saturated bulkhead does not hold back workers of another bulkhead */
+  @Test
+  public void fullBulkheadDoesNotBlockOtherBulkheads() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    CountDownLatch notified = new CountDownLatch(1);
+    Bulkhead execution = instance.getBulkhead(WorkerBulkhead.EXECUTION);
+    try {
+      int saturation = execution.getThreadPoolSize() + execution.getQueueCapacity();
+      for (int i = 0; i < saturation; i++) {
+        instance.submitJob(blockingWorker(WorkerBulkhead.EXECUTION, latch));
+      }
+      try {
+        instance.submitJob(blockingWorker(WorkerBulkhead.EXECUTION, latch));
+        fail("Expected the execution bulkhead to reject a submission");
+      } catch (JobQueueFullException ex) {
+        assertEquals(1, execution.getRejectedJobCount());
+      }
+
+      instance.submitJob(
+          new BaseWorker(UUID.randomUUID().toString()) {
+            @Override
+            public void doWork() {
+              notified.countDown();
+            }
+
+            @Override
+            public WorkerBulkhead getBulkhead() {
+              return WorkerBulkhead.NOTIFICATION;
+            }
+          });
+
+      assertTrue(notified.await(5, TimeUnit.SECONDS));
+      assertEquals(0, instance.getBulkhead(WorkerBulkhead.NOTIFICATION).getRejectedJobCount());
+    } finally {
+      latch.countDown();
+    }
+  }
+
+  /** Test that a worker running past its deadline is cancelled and reported as timed out */
+  @Test
+  public void workerPastDeadlineIsTimedOut() throws Exception {
+    Bulkhead bulkhead = new Bulkhead(WorkerBulkhead.DEFAULT, 1, 10, 1);
+    instance.bulkheads.put(WorkerBulkhead.DEFAULT, bulkhead);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    BaseWorker worker =
+        new BaseWorker(UUID.randomUUID().toString()) {
+          @Override
+          public void doWork() {
+            try {
+              Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+              workerResult.setStatus(WorkerResult.WorkerResultStatus.SUCCESS);
+            } catch (InterruptedException e) {
+              interrupted.countDown();
+              workerResult.setStatus(WorkerResult.WorkerResultStatus.FAILED);
+            }
+          }
+        };
+
+    instance.submitJob(worker);
+
+    assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    // the worker is completed on its own thread after it returns
+    long deadline = System.currentTimeMillis() + 5000;
+    while (instance.activeWorkerCount.get() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(WorkerResult.WorkerResultStatus.TIMED_OUT, worker.getWorkerResult().getStatus());
+    assertNotNull(worker.getWorkerResult().getEndTime());
+    assertEquals(1, bulkhead.getTimedOutJobCount());
+    assertEquals(0, instance.activeWorkerCount.get());
+  }
+
+  /** Test that a timed out worker ignoring the interrupt keeps absorbing equivalent work */
+  @Test
+  public void timedOutWorkerStillRunningCoalescesSameKey() throws Exception {
+    Bulkhead bulkhead = new Bulkhead(WorkerBulkhead.DEFAULT, 1, 10, 1);
+    instance.bulkheads.put(WorkerBulkhead.DEFAULT, bulkhead);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    BaseWorker stubborn =
+        new BaseWorker(UUID.randomUUID().toString()) {
+          @Override
+          public void doWork() {
+            while (true) {
+              try {
+                release.await();
+                return;
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+              }
+            }
+          }
+        };
+    BaseWorker duplicate =
+        new BaseWorker(UUID.randomUUID().toString()) {
+          @Override
+          public void doWork() {}
+        };
+
+    try {
+      String stubbornId = instance.submitJob(stubborn, "POLICY:global");
+      assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (stubborn.getWorkerResult().getStatus() != WorkerResult.WorkerResultStatus.TIMED_OUT
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertEquals(
+          WorkerResult.WorkerResultStatus.TIMED_OUT, stubborn.getWorkerResult().getStatus());
+      assertEquals(stubbornId, instance.submitJob(duplicate, "POLICY:global"));
+      assertEquals(1, instance.getCoalescedJobCount());
+      assertEquals(1, instance.activeWorkerCount.get());
+    } finally {
+      release.countDown();
+    }
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (instance.activeWorkerCount.get() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, instance.activeWorkerCount.get());
+    assertNull(duplicate.getWorkerResult().getStatus());
+  }
+
+  /** Test that equivalent work submitted while a worker is in flight attaches to that worker */
+  @Test
+  public void submitJobWithSameKeyCoalescesWhileInFlight() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    BaseWorker running =
+        new BaseWorker(UUID.randomUUID().toString()) {
+          @Override
+          public void doWork() {
+            try {
+              latch.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        };
+    BaseWorker duplicate =
+        new BaseWorker(UUID.randomUUID().toString()) {
+          @Override
+          public void doWork() {}
+        };
+
+    try {
+      String runningId = instance.submitJob(running, "POLICY:global");
+      int activeWorkers = instance.activeWorkerCount.get();
+
+      assertEquals(running.getWorkerResult().getId(), runningId);
+      assertEquals(runningId, instance.submitJob(duplicate, "POLICY:global"));
+      assertEquals(activeWorkers, instance.activeWorkerCount.get());
+      assertEquals(1, instance.getCoalescedJobCount());
+      assertNull(duplicate.getWorkerResult().getStatus());
+    } finally {
+      latch.countDown();
+    }
+  }
+
+  /** Test that a completed worker no longer absorbs equivalent work */
+  @Test
+  public void submitJobWithSameKeyRunsAgainAfterCompletion() throws Exception {
+    CountDownLatch done = new CountDownLatch(1);
+    BaseWorker first =
+        new BaseWorker(UUID.randomUUID().toString()) {
+          @Override
+          public void doWork() {}
+        };
+    BaseWorker second =
+        new BaseWorker(UUID.randomUUID().toString()) {
+          @Override
+          public void doWork() {
+            done.countDown();
+          }
+        };
+
+    instance.submitJob(first, "VALIDATION:global");
+    // wait for the first worker's completion callback to release the key
+    long deadline = System.currentTimeMillis() + 5000;
+    while (instance.activeWorkerCount.get() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(
+        second.getWorkerResult().getId(), instance.submitJob(second, "VALIDATION:global"));
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(0, instance.getCoalescedJobCount());
+  }
+
+  private BaseWorker blockingWorker(WorkerBulkhead bulkhead, CountDownLatch latch) {
+    return new BaseWorker(UUID.randomUUID().toString()) {
+      @Override
+      public void doWork() {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      @Override
+      public WorkerBulkhead getBulkhead() {
+        return bulkhead;
+      }
+    };
+  }
+
+  /** Test that queued jobs are ordered by priority and then by submission order */
+  @Test
+  public void prioritizedJobsAreOrderedByPriorityThenSequence() {
+    PriorityBlockingQueue<PrioritizedJob> queue = new PriorityBlockingQueue<>();
+    queue.add(new PrioritizedJob(() -> {}, WorkerPriority.LOW, 1));
+    queue.add(new PrioritizedJob(() -> {}, WorkerPriority.NORMAL, 2));
+    queue.add(new PrioritizedJob(() -> {}, WorkerPriority.HIGH, 4));
+    queue.add(new PrioritizedJob(() -> {}, WorkerPriority.HIGH, 3));
+
+    assertEquals(WorkerPriority.HIGH, queue.poll().getPriority());
+    assertEquals(WorkerPriority.HIGH, queue.poll().getPriority());
+    assertEquals(WorkerPriority.NORMAL, queue.poll().getPriority());
+    assertEquals(WorkerPriority.LOW, queue.poll().getPriority());
   }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.service.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.gcs.sdrs.service.worker.WorkerResult;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class for WorkerResultRegistry */
+public class WorkerResultRegistryTest {
+
+  private WorkerResultRegistry registry;
+
+  @Before
+  public void setUp() {
+    registry = new WorkerResultRegistry(2);
+  }
+
+  @Test
+  public void findReturnsRegisteredResult() {
+    WorkerResult result = createResult("id-1");
+    registry.register(result);
+
+    assertSame(result, registry.find("id-1"));
+    assertNull(registry.find("unknown"));
+  }
+
+  @Test
+  public void registerEvictsOldestResultWhenFull() {
+    registry.register(createResult("id-1"));
+    registry.register(createResult("id-2"));
+    registry.register(createResult("id-3"));
+
+    assertEquals(2, registry.size());
+    assertNull(registry.find("id-1"));
+    assertEquals("id-2", registry.find("id-2").getId());
+    assertEquals("id-3", registry.find("id-3").getId());
+  }
+
+  @Test
+  public void registerWithReusedIdKeepsNewestResult() {
+    registry.register(createResult("id-1"));
+    registry.register(createResult("id-2"));
+    WorkerResult rerun = createResult("id-1");
+    registry.register(rerun);
+    registry.register(createResult("id-3"));
+
+    assertSame(rerun, registry.find("id-1"));
+    assertNull(registry.find("id-2"));
+  }
+
+  @Test
+  public void findSeesStatusChangesOfLiveResult() {
+    WorkerResult result = createResult("id-1");
+    registry.register(result);
+    result.setStatus(WorkerResult.WorkerResultStatus.SUCCESS);
+
+    assertEquals(WorkerResult.WorkerResultStatus.SUCCESS, registry.find("id-1").getStatus());
+  }
+
+  private WorkerResult createResult(String id) {
+    WorkerResult result = new WorkerResult();
+    result.setId(id);
+    result.setStatus(WorkerResult.WorkerResultStatus.QUEUED);
+    return result;
+  }
+}
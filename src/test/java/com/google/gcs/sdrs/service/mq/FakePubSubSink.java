@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.service.mq;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.pubsub.v1.Publisher;
+import com.google.gcs.sdrs.util.FaultInjector;
+import com.google.pubsub.v1.PublishRequest;
+import com.google.pubsub.v1.PublishResponse;
+import com.google.pubsub.v1.PublisherGrpc;
+import com.google.pubsub.v1.PubsubMessage;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local sink for Pub/Sub messages for offline end-to-end and load testing. It serves the gRPC
+ * Publisher service on a free port of localhost the same way the Pub/Sub emulator does, so any
+ * publisher set up for the emulator host (plaintext channel, no credentials) can publish to it.
+ * Published messages are recorded instead of delivered.
+ */
+public class FakePubSubSink {
+
+  private static final Logger logger = LoggerFactory.getLogger(FakePubSubSink.class);
+
+  private final FaultInjector faults;
+  private final List<PubsubMessage> messages = new CopyOnWriteArrayList<>();
+  private final List<ManagedChannel> channels = new CopyOnWriteArrayList<>();
+  private final AtomicLong nextMessageId = new AtomicLong();
+  private Server server;
+
+  public FakePubSubSink() {
+    this(new FaultInjector());
+  }
+
+  public FakePubSubSink(FaultInjector faults) {
+    this.faults = faults;
+  }
+
+  public synchronized FakePubSubSink start() throws IOException {
+    server = ServerBuilder.forPort(0).addService(new PublisherService()).build().start();
+    logger.info("Fake Pub/Sub serving at " + getEmulatorHost());
+    return this;
+  }
+
+  public synchronized void stop() {
+    channels.forEach(ManagedChannel::shutdownNow);
+    channels.clear();
+    if (server != null) {
+      server.shutdownNow();
+      server = null;
+    }
+  }
+
+  /** Gets the host and port to use as PUBSUB_EMULATOR_HOST */
+  public String getEmulatorHost() {
+    return "localhost:" + server.getPort();
+  }
+
+  public FaultInjector getFaults() {
+    return faults;
+  }
+
+  public List<PubsubMessage> getMessages() {
+    return new ArrayList<>(messages);
+  }
+
+  /**
+   * Creates a publisher for the topic that publishes to this sink.
+   *
+   * @param topicName the full topic name, projects/{project}/topics/{topic}
+   */
+  public Publisher createPublisher(String topicName) throws IOException {
+    ManagedChannel channel =
+        ManagedChannelBuilder.forTarget(getEmulatorHost()).usePlaintext().build();
+    channels.add(channel);
+    return Publisher.newBuilder(topicName)
+        .setChannelProvider(
+            FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+        .setCredentialsProvider(NoCredentialsProvider.create())
+        .build();
+  }
+
+  /**
+   * Makes {@link PubSubMessageQueueManagerImpl} publish to this sink, replacing the publisher it
+   * created for the configured topic.
+   */
+  public void install(String topicName) throws IOException {
+    PubSubMessageQueueManagerImpl manager = PubSubMessageQueueManagerImpl.getInstance();
+    Publisher previous = manager.getPublisher();
+    manager.publisher = createPublisher(topicName);
+    if (previous != null) {
+      try {
+        previous.shutdown();
+      } catch (Exception e) {
+        logger.warn("Failed to shutdown replaced pubsub publisher", e);
+      }
+    }
+  }
+
+  private class PublisherService extends PublisherGrpc.PublisherImplBase {
+
+    @Override
+    public void publish(PublishRequest request, StreamObserver<PublishResponse> observer) {
+      faults.delay();
+      int errorStatus = faults.nextErrorStatus();
+      if (errorStatus != 0) {
+        observer.onError(toGrpcStatus(errorStatus).withDescription("Injected error").asException());
+        return;
+      }
+
+      PublishResponse.Builder response = PublishResponse.newBuilder();
+      for (PubsubMessage message : request.getMessagesList()) {
+        String messageId = String.valueOf(nextMessageId.incrementAndGet());
+        messages.add(message.toBuilder().setMessageId(messageId).build());
+        response.addMessageIds(messageId);
+      }
+      observer.onNext(response.build());
+      observer.onCompleted();
+    }
+  }
+
+  private static Status toGrpcStatus(int httpStatus) {
+    switch (httpStatus) {
+      case 400:
+        return Status.INVALID_ARGUMENT;
+      case 403:
+        return Status.PERMISSION_DENIED;
+      case 404:
+        return Status.NOT_FOUND;
+      case 429:
+        return Status.RESOURCE_EXHAUSTED;
+      case 503:
+        return Status.UNAVAILABLE;
+      case 504:
+        return Status.DEADLINE_EXCEEDED;
+      default:
+        return Status.INTERNAL;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.service.mq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.pubsub.v1.Publisher;
+import com.google.protobuf.ByteString;
+import com.google.pubsub.v1.PubsubMessage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FakePubSubSinkTest {
+
+  private static final String TOPIC = "projects/project/topics/topic";
+
+  private FakePubSubSink sink;
+  private Publisher publisher;
+
+  @Before
+  public void setup() throws Exception {
+    sink = new FakePubSubSink().start();
+    publisher = sink.createPublisher(TOPIC);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    publisher.shutdown();
+    publisher.awaitTermination(10, TimeUnit.SECONDS);
+    sink.stop();
+  }
+
+  @Test
+  public void publishedMessagesAreRecorded() throws Exception {
+    String messageId = publisher.publish(message("deleted")).get(10, TimeUnit.SECONDS);
+
+    assertEquals(1, sink.getMessages().size());
+    assertEquals(messageId, sink.getMessages().get(0).getMessageId());
+    assertEquals("deleted", sink.getMessages().get(0).getData().toStringUtf8());
+  }
+
+  @Test
+  public void injectedErrorsFailThePublish() throws Exception {
+    sink.getFaults().setErrors(1, 400);
+
+    try {
+      publisher.publish(message("deleted")).get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertEquals(0, sink.getMessages().size());
+    }
+  }
+
+  private static PubsubMessage message(String data) {
+    return PubsubMessage.newBuilder().setData(ByteString.copyFromUtf8(data)).build();
+  }
+}
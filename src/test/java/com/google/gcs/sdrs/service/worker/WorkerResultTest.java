@@ -62,6 +62,15 @@ public class WorkerResultTest {
     assertEquals(testEndTime, objectUnderTest.getEndTime());
   }
 
+  /** Tests that a timed out result is not overwritten by the cancelled worker */
+  @Test
+  public void timedOutStatusIsFinal() {
+    objectUnderTest.setStatus(WorkerResult.WorkerResultStatus.TIMED_OUT);
+    objectUnderTest.setStatus(WorkerResult.WorkerResultStatus.SUCCESS);
+
+    assertEquals(WorkerResult.WorkerResultStatus.TIMED_OUT, objectUnderTest.getStatus());
+  }
+
   /** Tests the toString method to ensure null values display properly */
   @Test
   public void workerResultToStringTest() {
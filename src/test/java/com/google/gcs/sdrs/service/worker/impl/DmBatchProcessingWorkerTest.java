@@ -1,11 +1,15 @@
 package com.google.gcs.sdrs.service.worker.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -15,13 +19,12 @@ import com.google.api.services.storagetransfer.v1.model.TimeOfDay;
 import com.google.api.services.storagetransfer.v1.model.TransferJob;
 import com.google.api.services.storagetransfer.v1.model.TransferSpec;
 import com.google.gcs.sdrs.dao.DmQueueDao;
-import com.google.gcs.sdrs.dao.LockDao;
 import com.google.gcs.sdrs.dao.SingletonDao;
-import com.google.gcs.sdrs.dao.impl.LockDaoImpl;
-import com.google.gcs.sdrs.dao.model.DistributedLock;
 import com.google.gcs.sdrs.dao.model.DmRequest;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.util.DatabaseConstants;
+import com.google.gcs.sdrs.service.worker.WorkerResult;
+import com.google.gcs.sdrs.service.worker.WorkerResult.WorkerResultStatus;
 import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleExecutor;
 import com.google.gcs.sdrs.util.CredentialsUtil;
 import com.google.gcs.sdrs.util.StsUtil;
@@ -46,7 +49,6 @@ import org.powermock.modules.junit4.PowerMockRunner;
 @PrepareForTest({StsRuleExecutor.class, StsUtil.class, SingletonDao.class, CredentialsUtil.class})
 @PowerMockIgnore("javax.management.*")
 public class DmBatchProcessingWorkerTest {
-  private LockDao lockDaoMock;
   private DmQueueDao dmQueueDaoMock;
   private StsRuleExecutor ruleExecutorMock;
   private CredentialsUtil credentialsUtilMock;
@@ -54,7 +56,6 @@ public class DmBatchProcessingWorkerTest {
 
   @Before
   public void setUp() {
-    lockDaoMock = mock(LockDaoImpl.class);
     dmQueueDaoMock = mock(DmQueueDao.class);
     ruleExecutorMock = mock(StsRuleExecutor.class);
 
@@ -74,9 +75,10 @@ public class DmBatchProcessingWorkerTest {
 
     PowerMockito.mockStatic(SingletonDao.class);
     when(SingletonDao.getDmQueueDao()).thenReturn(dmQueueDaoMock);
-    when(SingletonDao.getLockDao()).thenReturn(lockDaoMock);
 
-    when(lockDaoMock.obtainLock(any(), anyInt(), any())).thenReturn(new DistributedLock());
+    // claim every DM request offered
+    when(dmQueueDaoMock.claimRequests(any(), any(), any(), anyInt()))
+        .thenAnswer(invocation -> invocation.getArguments()[1]);
 
     uuid = UUID.randomUUID().toString();
   }
@@ -104,7 +106,7 @@ public class DmBatchProcessingWorkerTest {
     dmRequests.add(dmRequest);
 
     // mock
-    when(dmQueueDaoMock.getAllAvailableRequestsByPriority()).thenReturn(dmRequests);
+    when(dmQueueDaoMock.getAvailableRequestsPage(any(), anyInt())).thenReturn(dmRequests);
     when(ruleExecutorMock.findPooledJob(any(), any(), any(), any())).thenReturn(transferJob);
     when(StsUtil.updateExistingJob(any(), any(), any(), any())).thenReturn(transferJob);
     doNothing().when(dmQueueDaoMock).createRetentionJobUdpateDmStatus(any(), any());
@@ -160,7 +162,7 @@ public class DmBatchProcessingWorkerTest {
 
     // mock
     when(StsUtil.updateExistingJob(any(), any(), any(), any())).thenReturn(transferJob);
-    when(dmQueueDaoMock.getAllAvailableRequestsByPriority()).thenReturn(dmRequests);
+    when(dmQueueDaoMock.getAvailableRequestsPage(any(), anyInt())).thenReturn(dmRequests);
     when(ruleExecutorMock.findPooledJob(any(), any(), any(), any())).thenReturn(transferJob);
     doNothing().when(dmQueueDaoMock).createRetentionJobUdpateDmStatus(any(), any());
 
@@ -222,7 +224,7 @@ public class DmBatchProcessingWorkerTest {
     dmRequests.add(dmRequest);
 
     when(StsUtil.updateExistingJob(any(), any(), any(), any())).thenReturn(transferJob);
-    when(dmQueueDaoMock.getAllAvailableRequestsByPriority()).thenReturn(dmRequests);
+    when(dmQueueDaoMock.getAvailableRequestsPage(any(), anyInt())).thenReturn(dmRequests);
     when(ruleExecutorMock.findPooledJob(any(), any(), any(), any())).thenReturn(transferJob);
     doNothing().when(dmQueueDaoMock).createRetentionJobUdpateDmStatus(any(), any());
 
@@ -254,7 +256,7 @@ public class DmBatchProcessingWorkerTest {
     }
 
     when(StsUtil.updateExistingJob(any(), any(), any(), any())).thenReturn(transferJob);
-    when(dmQueueDaoMock.getAllAvailableRequestsByPriority()).thenReturn(dmRequests);
+    when(dmQueueDaoMock.getAvailableRequestsPage(any(), anyInt())).thenReturn(dmRequests);
     when(ruleExecutorMock.findPooledJob(any(), any(), any(), any())).thenReturn(transferJob);
     doNothing().when(dmQueueDaoMock).createRetentionJobUdpateDmStatus(any(), any());
 
@@ -269,6 +271,117 @@ public class DmBatchProcessingWorkerTest {
     assertTrue(dmRequests.size() > StsUtil.MAX_PREFIX_COUNT);
   }
 
+  @Test
+  public void testDoWorkIsolatesBucketFailures() throws IOException {
+    TransferJob transferJob = createBasicTransferJob();
+
+    List<DmRequest> dmRequests = new ArrayList<>();
+    for (String bucket : new String[] {"bucket1", "bucket2", "bucket3"}) {
+      DmRequest dmRequest = new DmRequest();
+      dmRequest.setProjectId("projectId");
+      dmRequest.setDataStorageRoot(bucket);
+      dmRequest.setDataStorageName("gs://" + bucket + "/dataset/dir1");
+      dmRequest.setStatus(DatabaseConstants.DM_REQUEST_STATUS_PENDING);
+      dmRequests.add(dmRequest);
+    }
+
+    when(StsUtil.updateExistingJob(any(), any(), any(), any())).thenReturn(transferJob);
+    when(dmQueueDaoMock.getAvailableRequestsPage(any(), anyInt())).thenReturn(dmRequests);
+    when(ruleExecutorMock.findPooledJob(any(), eq("bucket1"), any(), any()))
+        .thenReturn(transferJob);
+    when(ruleExecutorMock.findPooledJob(any(), eq("bucket2"), any(), any()))
+        .thenThrow(new IOException("no pooled job"));
+    when(ruleExecutorMock.findPooledJob(any(), eq("bucket3"), any(), any()))
+        .thenReturn(transferJob);
+    doNothing().when(dmQueueDaoMock).createRetentionJobUdpateDmStatus(any(), any());
+
+    DmBatchProcessingWorker worker = new DmBatchProcessingWorker(uuid);
+    worker.bucketConcurrency = 3;
+    worker.doWork();
+
+    verify(dmQueueDaoMock, times(2)).createRetentionJobUdpateDmStatus(any(), any());
+    assertEquals(WorkerResultStatus.FAILED, worker.getWorkerResult().getStatus());
+    List<WorkerResult> bucketResults = worker.getWorkerResult().getChildResults();
+    assertEquals(3, bucketResults.size());
+    for (WorkerResult bucketResult : bucketResults) {
+      assertEquals("bucket", bucketResult.getType());
+      assertEquals(
+          "bucket2".equals(bucketResult.getId())
+              ? WorkerResultStatus.FAILED
+              : WorkerResultStatus.SUCCESS,
+          bucketResult.getStatus());
+      assertNotNull(bucketResult.getEndTime());
+    }
+    assertEquals(DatabaseConstants.DM_REQUEST_STATUS_PENDING, dmRequests.get(1).getStatus());
+  }
+
+  @Test
+  public void testDoWorkReadsQueueInPages() throws IOException {
+    TransferJob transferJob = createBasicTransferJob();
+
+    List<DmRequest> firstPage = new ArrayList<>();
+    firstPage.add(createDmRequest(1, "bucket1", "dir1"));
+    firstPage.add(createDmRequest(2, "bucket2", "dir1"));
+    List<DmRequest> lastPage = new ArrayList<>();
+    lastPage.add(createDmRequest(3, "bucket1", "dir2"));
+
+    when(StsUtil.updateExistingJob(any(), any(), any(), any())).thenReturn(transferJob);
+    when(dmQueueDaoMock.getAvailableRequestsPage(any(), anyInt()))
+        .thenReturn(firstPage, lastPage);
+    when(ruleExecutorMock.findPooledJob(any(), any(), any(), any())).thenReturn(transferJob);
+    doNothing().when(dmQueueDaoMock).createRetentionJobUdpateDmStatus(any(), any());
+
+    DmBatchProcessingWorker worker = new DmBatchProcessingWorker(uuid);
+    worker.pageSize = 2;
+    worker.doWork();
+
+    ArgumentCaptor<DmRequest> cursorArgument = ArgumentCaptor.forClass(DmRequest.class);
+    verify(dmQueueDaoMock, times(2)).getAvailableRequestsPage(cursorArgument.capture(), eq(2));
+    assertNull(cursorArgument.getAllValues().get(0));
+    assertEquals(Integer.valueOf(2), cursorArgument.getAllValues().get(1).getId());
+    verify(dmQueueDaoMock, times(3)).createRetentionJobUdpateDmStatus(any(), any());
+    assertEquals(WorkerResultStatus.SUCCESS, worker.getWorkerResult().getStatus());
+    assertEquals(DatabaseConstants.DM_REQUEST_STATUS_SCHEDULED, lastPage.get(0).getStatus());
+  }
+
+  @Test
+  public void testDoWorkSkipsBucketsClaimedByAnotherInstance() throws IOException {
+    TransferJob transferJob = createBasicTransferJob();
+
+    List<DmRequest> dmRequests = new ArrayList<>();
+    dmRequests.add(createDmRequest(1, "bucket1", "dir1"));
+    dmRequests.add(createDmRequest(2, "bucket2", "dir1"));
+
+    when(StsUtil.updateExistingJob(any(), any(), any(), any())).thenReturn(transferJob);
+    when(dmQueueDaoMock.getAvailableRequestsPage(any(), anyInt())).thenReturn(dmRequests);
+    when(dmQueueDaoMock.claimRequests(eq("bucket2"), any(), any(), anyInt()))
+        .thenReturn(new ArrayList<>());
+    when(ruleExecutorMock.findPooledJob(any(), any(), any(), any())).thenReturn(transferJob);
+    doNothing().when(dmQueueDaoMock).createRetentionJobUdpateDmStatus(any(), any());
+
+    DmBatchProcessingWorker worker = new DmBatchProcessingWorker(uuid);
+    worker.doWork();
+
+    verify(ruleExecutorMock).findPooledJob(any(), eq("bucket1"), any(), any());
+    verify(ruleExecutorMock, times(0)).findPooledJob(any(), eq("bucket2"), any(), any());
+    verify(dmQueueDaoMock).claimRequests(eq("bucket1"), any(), eq(uuid), anyInt());
+    verify(dmQueueDaoMock).releaseClaims(uuid);
+    assertEquals(WorkerResultStatus.SUCCESS, worker.getWorkerResult().getStatus());
+    assertEquals(DatabaseConstants.DM_REQUEST_STATUS_SCHEDULED, dmRequests.get(0).getStatus());
+    assertEquals(DatabaseConstants.DM_REQUEST_STATUS_PENDING, dmRequests.get(1).getStatus());
+  }
+
+  private DmRequest createDmRequest(int id, String bucket, String dir) {
+    DmRequest dmRequest = new DmRequest();
+    dmRequest.setId(id);
+    dmRequest.setProjectId("projectId");
+    dmRequest.setDataStorageRoot(bucket);
+    dmRequest.setDataStorageName("gs://" + bucket + "/dataset/" + dir);
+    dmRequest.setStatus(DatabaseConstants.DM_REQUEST_STATUS_PENDING);
+    dmRequest.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+    return dmRequest;
+  }
+
   private TransferJob createBasicTransferJob() {
     TransferJob transferJob = new TransferJob();
     transferJob.setStatus(StsUtil.STS_ENABLED_STRING);
@@ -20,12 +20,17 @@ package com.google.gcs.sdrs.service.worker.impl;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.gcs.sdrs.common.ExecutionEventType;
 import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
+import com.google.gcs.sdrs.dao.ProjectRules;
 import com.google.gcs.sdrs.dao.RetentionJobDao;
 import com.google.gcs.sdrs.dao.RetentionRuleDao;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
@@ -35,8 +40,12 @@ import com.google.gcs.sdrs.service.worker.WorkerResult.WorkerResultStatus;
 import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleExecutor;
 import com.google.gcs.sdrs.util.RetentionUtil;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+import javax.persistence.PersistenceException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -113,7 +122,7 @@ public class ExecuteRetentionWorkerTest {
     when(retentionRuleDaoMock.findGlobalRuleByProjectId(any())).thenReturn(globalDefaultRule);
     when(ruleExecutorMock.executeDefaultRule(any(), any(), any(), any(), any()))
         .thenReturn(defaultJobs);
-    when(ruleExecutorMock.executeDatasetRule(any(), any())).thenReturn(datasetJobs);
+    stubDatasetRuleExecution(datasetJobs);
 
     worker.doWork();
 
@@ -121,6 +130,85 @@ public class ExecuteRetentionWorkerTest {
     assertEquals(WorkerResult.WorkerResultStatus.SUCCESS, worker.getWorkerResult().getStatus());
   }
 
+  @Test
+  public void doWorkIsolatesProjectFailuresWhenPolicyOnly() {
+    ExecutionEventRequest request = createBasicRequest();
+    request.setExecutionEventType(ExecutionEventType.POLICY);
+    request.setProjectId(null);
+    request.setTarget(null);
+    ExecuteRetentionWorker worker = new ExecuteRetentionWorker(request, uuid);
+    worker.ruleExecutor = ruleExecutorMock;
+    worker.retentionJobDao = retentionJobDaoMock;
+    worker.retentionRuleDao = retentionRuleDaoMock;
+    worker.projectConcurrency = 2;
+    Map<String, ProjectRules> rulesByProject = new LinkedHashMap<>();
+    rulesByProject.put(
+        "goodproject",
+        new ProjectRules("goodproject", new ArrayList<>(), new ArrayList<>(), new RetentionRule()));
+    rulesByProject.put(
+        "badproject",
+        new ProjectRules("badproject", new ArrayList<>(), new ArrayList<>(), new RetentionRule()));
+
+    List<RetentionJob> datasetJobs = new ArrayList<>();
+    RetentionJob datasetJob = new RetentionJob();
+    datasetJob.setName("datasetJob");
+    datasetJobs.add(datasetJob);
+
+    when(retentionRuleDaoMock.findActiveRulesByProject()).thenReturn(rulesByProject);
+    when(ruleExecutorMock.executeDefaultRule(any(), any(), any(), any(), any()))
+        .thenReturn(new ArrayList<>());
+    stubDatasetRuleExecution(datasetJobs);
+    doThrow(new IllegalArgumentException("test"))
+        .when(ruleExecutorMock)
+        .executeDatasetRule(any(), eq("badproject"), any());
+
+    worker.doWork();
+
+    verify(retentionJobDaoMock).saveBatch(datasetJobs);
+    assertEquals(WorkerResultStatus.FAILED, worker.getWorkerResult().getStatus());
+    List<WorkerResult> projectResults = worker.getWorkerResult().getChildResults();
+    assertEquals(2, projectResults.size());
+    for (WorkerResult projectResult : projectResults) {
+      WorkerResultStatus expected =
+          projectResult.getId().equals("goodproject")
+              ? WorkerResultStatus.SUCCESS
+              : WorkerResultStatus.FAILED;
+      assertEquals(expected, projectResult.getStatus());
+      assertNotNull(projectResult.getEndTime());
+    }
+  }
+
+  @Test
+  public void doWorkLoadsRulesOfAllProjectsInOnePass() {
+    ExecutionEventRequest request = createBasicRequest();
+    request.setExecutionEventType(ExecutionEventType.POLICY);
+    request.setProjectId(null);
+    request.setTarget(null);
+    ExecuteRetentionWorker worker = new ExecuteRetentionWorker(request, uuid);
+    worker.ruleExecutor = ruleExecutorMock;
+    worker.retentionJobDao = retentionJobDaoMock;
+    worker.retentionRuleDao = retentionRuleDaoMock;
+    Map<String, ProjectRules> rulesByProject = new LinkedHashMap<>();
+    for (String projectId : new String[] {"project1", "project2", "project3"}) {
+      rulesByProject.put(
+          projectId,
+          new ProjectRules(projectId, new ArrayList<>(), new ArrayList<>(), new RetentionRule()));
+    }
+    when(retentionRuleDaoMock.findActiveRulesByProject()).thenReturn(rulesByProject);
+    when(ruleExecutorMock.executeDefaultRule(any(), any(), any(), any(), any()))
+        .thenReturn(new ArrayList<>());
+
+    worker.doWork();
+
+    verify(retentionRuleDaoMock).findActiveRulesByProject();
+    verify(retentionRuleDaoMock, never()).getAllDatasetRuleProjectIds();
+    verify(retentionRuleDaoMock, never()).findDatasetRulesByProjectId(any());
+    verify(retentionRuleDaoMock, never()).findDefaultRulesByProjectId(any());
+    verify(retentionRuleDaoMock, never()).findGlobalRuleByProjectId(any());
+    assertEquals(3, worker.getWorkerResult().getChildResults().size());
+    assertEquals(WorkerResultStatus.SUCCESS, worker.getWorkerResult().getStatus());
+  }
+
   @Test
   public void doWorkRunsProjectWhenSpecified() {
     ExecutionEventRequest request = createBasicRequest();
@@ -152,7 +240,7 @@ public class ExecuteRetentionWorkerTest {
     when(retentionRuleDaoMock.findGlobalRuleByProjectId(any())).thenReturn(globalDefaultRule);
     when(ruleExecutorMock.executeDefaultRule(any(), any(), any(), any(), any()))
         .thenReturn(defaultJobs);
-    when(ruleExecutorMock.executeDatasetRule(any(), any())).thenReturn(datasetJobs);
+    stubDatasetRuleExecution(datasetJobs);
 
     worker.doWork();
 
@@ -208,11 +296,40 @@ public class ExecuteRetentionWorkerTest {
     retentionJobs.add(retentionJob);
     RetentionRule rule = new RetentionRule();
     when(retentionRuleDaoMock.findDatasetRuleByBusinessKey(any(), any())).thenReturn(rule);
-    when(ruleExecutorMock.executeDatasetRule(any(), any())).thenReturn(retentionJobs);
+    stubDatasetRuleExecution(retentionJobs);
 
     worker.doWork();
 
-    verify(retentionJobDaoMock).save(any());
+    verify(retentionJobDaoMock).saveBatch(retentionJobs);
+  }
+
+  @Test
+  public void doWorkSavesJobsOneByOneWhenBatchFails() {
+    ExecutionEventRequest request = createBasicRequest();
+    request.setExecutionEventType(ExecutionEventType.POLICY);
+    ExecuteRetentionWorker worker = new ExecuteRetentionWorker(request, uuid);
+    worker.ruleExecutor = ruleExecutorMock;
+    worker.retentionJobDao = retentionJobDaoMock;
+    worker.retentionRuleDao = retentionRuleDaoMock;
+
+    List<RetentionJob> retentionJobs = new ArrayList<>();
+    RetentionJob goodJob = new RetentionJob();
+    goodJob.setName("goodJob");
+    retentionJobs.add(goodJob);
+    RetentionJob badJob = new RetentionJob();
+    badJob.setName("badJob");
+    retentionJobs.add(badJob);
+    when(retentionRuleDaoMock.findDatasetRuleByBusinessKey(any(), any()))
+        .thenReturn(new RetentionRule());
+    stubDatasetRuleExecution(retentionJobs);
+    doThrow(new PersistenceException("test")).when(retentionJobDaoMock).saveBatch(any());
+    doThrow(new PersistenceException("test")).when(retentionJobDaoMock).save(badJob);
+
+    worker.doWork();
+
+    verify(retentionJobDaoMock).save(goodJob);
+    verify(retentionJobDaoMock).save(badJob);
+    assertEquals(WorkerResultStatus.FAILED, worker.getWorkerResult().getStatus());
   }
 
   @Test
@@ -228,6 +345,18 @@ public class ExecuteRetentionWorkerTest {
     assertNotNull(result.getEndTime());
   }
 
+  /** Stubs the rule executor to hand the jobs to the consumer, as each bucket completes */
+  @SuppressWarnings("unchecked")
+  private void stubDatasetRuleExecution(List<RetentionJob> jobs) {
+    doAnswer(
+            invocation -> {
+              ((Consumer<List<RetentionJob>>) invocation.getArguments()[2]).accept(jobs);
+              return null;
+            })
+        .when(ruleExecutorMock)
+        .executeDatasetRule(any(), any(), any());
+  }
+
   private ExecutionEventRequest createBasicRequest() {
     ExecutionEventRequest request = new ExecutionEventRequest();
     request.setExecutionEventType(ExecutionEventType.USER_COMMANDED);
@@ -70,7 +70,7 @@ public class ValidationWorkerTest {
         .thenReturn(existingValidations);
 
     ruleValidatorMock = mock(StsRuleValidator.class);
-    when(ruleValidatorMock.validateRetentionJobs(any())).thenReturn(stsValidations);
+    when(ruleValidatorMock.validateRetentionJobs(any(), any())).thenReturn(stsValidations);
 
     List<DmRequest> dmRequests = new ArrayList<>();
     DmRequest dmRequest = new DmRequest();
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.service.worker.rule.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.gcs.sdrs.dao.model.PooledStsJob;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PooledJobCacheTest {
+
+  private long now;
+  private PooledJobCache cache;
+  private int poolLoads;
+  private int transferJobLoads;
+  private List<PooledStsJob> pool;
+
+  @Before
+  public void setup() {
+    now = 1000;
+    cache = new PooledJobCache(60_000, () -> now);
+    poolLoads = 0;
+    transferJobLoads = 0;
+    pool =
+        Arrays.asList(
+            pooledJob("job1", "00:00:00"),
+            pooledJob("job2", "08:00:00"),
+            pooledJob("job3", "16:00:00"));
+  }
+
+  @Test
+  public void getJobPicksTheNextScheduleAndWrapsAround() {
+    assertEquals("job1", getJob(null).getName());
+    assertEquals("job2", getJob("07:59:59").getName());
+    assertEquals("job3", getJob("08:00:00").getName());
+    assertEquals("job1", getJob("16:00:00").getName());
+    assertEquals(1, poolLoads);
+  }
+
+  @Test
+  public void getJobReloadsExpiredPool() {
+    getJob(null);
+    now += 60_000;
+    getJob(null);
+
+    assertEquals(2, poolLoads);
+  }
+
+  @Test
+  public void missingPoolIsNotCached() {
+    pool = new ArrayList<>();
+
+    assertNull(getJob(null));
+    assertNull(getJob(null));
+    assertEquals(2, poolLoads);
+  }
+
+  @Test
+  public void invalidatePoolReloadsPool() {
+    getJob(null);
+    cache.invalidatePool("bucket", "project");
+    getJob(null);
+
+    assertEquals(2, poolLoads);
+  }
+
+  @Test
+  public void getTransferJobIsCachedUntilInvalidated() throws Exception {
+    PooledStsJob pooledJob = getJob(null);
+
+    TransferJob first = getTransferJob(pooledJob);
+    first.setDescription("changed by the caller");
+    TransferJob second = getTransferJob(pooledJob);
+
+    assertEquals(1, transferJobLoads);
+    assertNotSame(first, second);
+    assertEquals("job1", second.getDescription());
+
+    cache.invalidateTransferJob("job1");
+    getTransferJob(pooledJob);
+    assertEquals(2, transferJobLoads);
+  }
+
+  @Test
+  public void getTransferJobAfterPatchDoesNotReachSts() throws Exception {
+    PooledStsJob pooledJob = getJob(null);
+    getTransferJob(pooledJob);
+
+    TransferJob patched =
+        new TransferJob()
+            .setName("job1")
+            .setDescription("patched")
+            .setLastModificationTime("2019-01-02T00:00:00Z");
+    cache.putTransferJob(patched);
+    patched.setDescription("changed by the caller");
+    TransferJob afterPatch = getTransferJob(pooledJob);
+
+    assertEquals(1, transferJobLoads);
+    assertEquals("patched", afterPatch.getDescription());
+    assertEquals("2019-01-02T00:00:00Z", afterPatch.getLastModificationTime());
+  }
+
+  @Test
+  public void getTransferJobReloadsExpiredState() throws Exception {
+    PooledStsJob pooledJob = getJob(null);
+    getTransferJob(pooledJob);
+    now += 60_000;
+    getTransferJob(pooledJob);
+
+    assertEquals(2, transferJobLoads);
+  }
+
+  private PooledStsJob getJob(String scheduledAt) {
+    return cache.getJob(
+        "bucket",
+        "project",
+        scheduledAt,
+        "user",
+        () -> {
+          poolLoads++;
+          return pool;
+        });
+  }
+
+  private TransferJob getTransferJob(PooledStsJob pooledJob) throws Exception {
+    return cache.getTransferJob(
+        pooledJob,
+        () -> {
+          transferJobLoads++;
+          return new TransferJob()
+              .setName(pooledJob.getName())
+              .setDescription(pooledJob.getName())
+              .setLastModificationTime("2019-01-01T00:00:00Z");
+        });
+  }
+
+  private static PooledStsJob pooledJob(String name, String schedule) {
+    PooledStsJob pooledJob = new PooledStsJob();
+    pooledJob.setName(name);
+    pooledJob.setSchedule(schedule);
+    pooledJob.setSourceBucket("bucket");
+    pooledJob.setSourceProject("project");
+    pooledJob.setType("user");
+    return pooledJob;
+  }
+}
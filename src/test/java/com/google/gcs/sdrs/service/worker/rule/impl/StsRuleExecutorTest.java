@@ -22,6 +22,7 @@ import java.time.Clock;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
@@ -172,6 +173,82 @@ public class StsRuleExecutorTest {
         datasetRuleJobs.get(0).getRetentionRuleDataStorageName());
   }
 
+  @Test
+  public void executeDatasetRuleHandsJobsToConsumerPerBucket() throws IOException {
+    Collection<RetentionRule> datasetRules = new HashSet<>();
+    datasetRules.add(testRule);
+    RetentionRule otherBucketRule = new RetentionRule();
+    otherBucketRule.setId(2);
+    otherBucketRule.setProjectId(projectId);
+    otherBucketRule.setDatasetName("other");
+    otherBucketRule.setRetentionValue("30:day");
+    otherBucketRule.setDataStorageName("gs://other/dataset");
+    otherBucketRule.setType(RetentionRuleType.DATASET);
+    otherBucketRule.setVersion(1);
+    datasetRules.add(otherBucketRule);
+
+    TransferJob transferJob = createBasicTransferJob();
+
+    when(PrefixGeneratorUtility.generateTimePrefixes(
+        any(), any(), (ZonedDateTime) notNull())).thenCallRealMethod();
+    doReturn(transferJob).when(objectUnderTest).findPooledJob(any(), any(), any(), any());
+    doNothing().when(objectUnderTest).sendInactiveDatasetNotification(
+        any(), any(), any(), any(), any());
+    when(StsUtil.updateExistingJob(any(), any(), any(), any())).thenReturn(transferJob);
+
+    List<List<RetentionJob>> batches = Collections.synchronizedList(new ArrayList<>());
+    objectUnderTest.executeDatasetRule(datasetRules, projectId, batches::add);
+
+    assertEquals(2, batches.size());
+    for (List<RetentionJob> batch : batches) {
+      assertEquals(1, batch.size());
+      assertEquals(transferJobName, batch.get(0).getName());
+    }
+    verify(objectUnderTest, times(2)).sendInactiveDatasetNotification(
+        any(), any(), any(), any(), any());
+  }
+
+  @Test
+  public void executeDatasetRuleMarksFailedBucketJobs() {
+    Collection<RetentionRule> datasetRules = new HashSet<>();
+    datasetRules.add(testRule);
+
+    when(PrefixGeneratorUtility.generateTimePrefixes(
+        any(), any(), (ZonedDateTime) notNull())).thenCallRealMethod();
+    doThrow(new IllegalStateException("STS unavailable"))
+        .when(objectUnderTest).findPooledJob(any(), any(), any(), any());
+    doNothing().when(objectUnderTest).sendInactiveDatasetNotification(
+        any(), any(), any(), any(), any());
+
+    List<RetentionJob> datasetRuleJobs = objectUnderTest.executeDatasetRule(datasetRules, projectId);
+
+    verify(objectUnderTest, never()).sendInactiveDatasetNotification(
+        any(), any(), any(), any(), any());
+    assertEquals(1, datasetRuleJobs.size());
+    //jobname is null will be used to mark error job
+    assertEquals(null, datasetRuleJobs.get(0).getName());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void executeDatasetRuleThrowsConsumerFailure() throws IOException {
+    Collection<RetentionRule> datasetRules = new HashSet<>();
+    datasetRules.add(testRule);
+
+    TransferJob transferJob = createBasicTransferJob();
+
+    when(PrefixGeneratorUtility.generateTimePrefixes(
+        any(), any(), (ZonedDateTime) notNull())).thenCallRealMethod();
+    doReturn(transferJob).when(objectUnderTest).findPooledJob(any(), any(), any(), any());
+    when(StsUtil.updateExistingJob(any(), any(), any(), any())).thenReturn(transferJob);
+
+    objectUnderTest.executeDatasetRule(
+        datasetRules,
+        projectId,
+        jobs -> {
+          throw new IllegalStateException("Failed to save retention jobs");
+        });
+  }
+
   @Test
   public void buildRetentionJobTest() {
     String jobName = "test";
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.json.Json;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.http.HttpTransportOptions;
+import com.google.cloud.storage.StorageOptions;
+import com.google.gcs.sdrs.common.WorkerDeadline;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClientRegistryTest {
+
+  private MockHttpTransport transport;
+  private ClientRegistry registry;
+  private int refreshes;
+
+  @Before
+  public void setup() {
+    transport =
+        new MockHttpTransport.Builder()
+            .setLowLevelHttpResponse(
+                new MockLowLevelHttpResponse().setContentType(Json.MEDIA_TYPE).setContent("{}"))
+            .build();
+    registry = new ClientRegistry(transport);
+    refreshes = 0;
+  }
+
+  @Test
+  public void stsClientIsSharedPerCredential() {
+    GoogleCredential credential = new RefreshingCredential();
+
+    Storagetransfer client = registry.getStsClient(credential);
+
+    assertSame(client, registry.getStsClient(credential));
+    assertNotSame(client, registry.getStsClient(new RefreshingCredential()));
+    assertSame(transport, client.getRequestFactory().getTransport());
+  }
+
+  @Test
+  public void accessTokenIsRefreshedOnceAndTimed() throws IOException {
+    Storagetransfer client = registry.getStsClient(new RefreshingCredential());
+
+    client.transferJobs().get("transferJobs/job").setProjectId("project").execute();
+    client.transferJobs().get("transferJobs/job").setProjectId("project").execute();
+
+    assertEquals(1, refreshes);
+    assertEquals(1, registry.getTokenRefreshCount());
+  }
+
+  @Test
+  public void connectionReuseRatioWithoutRequests() {
+    assertEquals(0, registry.getConnectionReuseRatio(), 0);
+  }
+
+  @Test
+  public void gcsRequestTimeoutsAreCappedByWorkerDeadline() throws Exception {
+    WorkerDeadline deadline = new WorkerDeadline(1000);
+    deadline.start();
+
+    HttpRequest request = deadline.bind(this::buildGcsRequest).call();
+
+    assertTrue(request.getConnectTimeout() <= 1000);
+    assertTrue(request.getReadTimeout() <= 1000);
+  }
+
+  @Test(expected = InterruptedIOException.class)
+  public void gcsRequestIsNotSentForCancelledWorker() throws Exception {
+    WorkerDeadline deadline = new WorkerDeadline(1000);
+    deadline.start();
+    deadline.expire();
+
+    deadline.bind(this::buildGcsRequest).call();
+  }
+
+  private HttpRequest buildGcsRequest() throws IOException {
+    StorageOptions options =
+        StorageOptions.newBuilder()
+            .setProjectId("project")
+            .setCredentials(NoCredentials.getInstance())
+            .build();
+    HttpRequestInitializer initializer =
+        new ClientRegistry.DeadlineTransportOptions(
+                HttpTransportOptions.newBuilder().setHttpTransportFactory(() -> transport))
+            .getHttpRequestInitializer(options);
+    return transport
+        .createRequestFactory(initializer)
+        .buildGetRequest(new GenericUrl("https://www.googleapis.com/storage/v1/b/bucket"));
+  }
+
+  /** Hands out a token valid for an hour on every refresh */
+  private class RefreshingCredential extends GoogleCredential {
+
+    @Override
+    protected TokenResponse executeRefreshToken() {
+      refreshes++;
+      return new TokenResponse().setAccessToken("token-" + refreshes).setExpiresInSeconds(3600L);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.util;
+
+import com.google.cloud.storage.Bucket;
+import com.google.cloud.storage.StorageException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stand-in of {@link GcsHelper} for offline end-to-end and load testing. Buckets and
+ * object names are registered up front; calls wait the injected latency and fail with a {@link
+ * StorageException} carrying the injected status.
+ */
+public class FakeGcsHelper extends GcsHelper {
+
+  private final FaultInjector faults;
+  private final Map<String, String> bucketProjects = new ConcurrentHashMap<>();
+  private final Map<String, NavigableSet<String>> bucketObjects = new ConcurrentHashMap<>();
+  private final AtomicInteger requestCount = new AtomicInteger();
+
+  public FakeGcsHelper() {
+    this(new FaultInjector());
+  }
+
+  public FakeGcsHelper(FaultInjector faults) {
+    super(null);
+    this.faults = faults;
+  }
+
+  /** Makes this stand-in the instance returned by {@link GcsHelper#getInstance()} */
+  public void install() {
+    synchronized (GcsHelper.class) {
+      GcsHelper.instance = this;
+    }
+  }
+
+  public FaultInjector getFaults() {
+    return faults;
+  }
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  public FakeGcsHelper addBucket(String bucketName, String projectId) {
+    bucketProjects.put(bucketName, projectId);
+    bucketObjects.putIfAbsent(bucketName, new ConcurrentSkipListSet<>());
+    return this;
+  }
+
+  /** Adds an object, creating the bucket in the given project if it does not exist yet */
+  public FakeGcsHelper addObject(String bucketName, String projectId, String objectName) {
+    addBucket(bucketName, projectId);
+    bucketObjects.get(bucketName).add(objectName);
+    return this;
+  }
+
+  @Override
+  public boolean doesBucketExist(String bucketName, String projectId) {
+    if (bucketName == null || projectId == null) {
+      return false;
+    }
+    call();
+    return projectId.equals(bucketProjects.get(bucketName));
+  }
+
+  /** Not supported, a {@link Bucket} cannot be created without a backing GCS client */
+  @Override
+  public Bucket getBucket(String bucketName) {
+    throw new UnsupportedOperationException("FakeGcsHelper does not create Bucket objects");
+  }
+
+  /** Lists the directories directly under the prefix, like a delimited GCS listing */
+  @Override
+  public List<String> listObjectsWithPrefixInBucket(String bucketName, String prefix) {
+    call();
+    NavigableSet<String> objects = bucketObjects.get(bucketName);
+    if (objects == null) {
+      throw new StorageException(404, "The specified bucket does not exist.");
+    }
+    String start = prefix == null ? "" : prefix;
+    NavigableSet<String> directories = new TreeSet<>();
+    for (String objectName : objects.tailSet(start, true)) {
+      if (!objectName.startsWith(start)) {
+        break;
+      }
+      int delimiter = objectName.indexOf('/', start.length());
+      if (delimiter >= 0) {
+        directories.add(objectName.substring(0, delimiter + 1));
+      }
+    }
+    return new ArrayList<>(directories);
+  }
+
+  private void call() {
+    requestCount.incrementAndGet();
+    faults.delay();
+    int errorStatus = faults.nextErrorStatus();
+    if (errorStatus != 0) {
+      throw new StorageException(errorStatus, "Injected error");
+    }
+  }
+}
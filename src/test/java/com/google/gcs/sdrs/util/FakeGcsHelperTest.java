@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.storage.StorageException;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class FakeGcsHelperTest {
+
+  @Test
+  public void listsDirectoriesDirectlyUnderPrefix() {
+    FakeGcsHelper gcs =
+        new FakeGcsHelper()
+            .addObject("bucket", "project", "dataset/2019/01/01/object")
+            .addObject("bucket", "project", "dataset/2019/01/02/object")
+            .addObject("bucket", "project", "dataset/2019/02/01/object")
+            .addObject("bucket", "project", "dataset/2019/object")
+            .addObject("bucket", "project", "other/2019/01/object");
+
+    assertEquals(
+        Arrays.asList("dataset/2019/01/", "dataset/2019/02/"),
+        gcs.listObjectsWithPrefixInBucket("bucket", "dataset/2019/"));
+    assertTrue(gcs.doesBucketExist("bucket", "project"));
+    assertFalse(gcs.doesBucketExist("bucket", "other-project"));
+  }
+
+  @Test(expected = StorageException.class)
+  public void injectsErrors() {
+    FakeGcsHelper gcs = new FakeGcsHelper(new FaultInjector().setErrors(1, 503));
+    gcs.addBucket("bucket", "project");
+
+    gcs.doesBucketExist("bucket", "project");
+  }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.util;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.googleapis.util.Utils;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.services.storagetransfer.v1.model.ListOperationsResponse;
+import com.google.api.services.storagetransfer.v1.model.Operation;
+import com.google.api.services.storagetransfer.v1.model.Status;
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.api.services.storagetransfer.v1.model.UpdateTransferJobRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local stand-in of the Storage Transfer Service API for offline end-to-end and load testing. It
+ * serves the transferJobs create, get and patch methods and the transferOperations list method
+ * over HTTP on localhost, so the regular {@link
+ * com.google.api.services.storagetransfer.v1.Storagetransfer} client can target it through its
+ * root URL. Jobs never run on their own; {@link #runEnabledJobs(boolean)} creates one finished
+ * operation per enabled job, as STS does when a schedule fires.
+ */
+public class FakeStsServer {
+
+  private static final Logger logger = LoggerFactory.getLogger(FakeStsServer.class);
+
+  private static final String API_PREFIX = "/v1/";
+  private static final String JOBS = "transferJobs";
+  private static final String OPERATIONS = "transferOperations";
+  private static final long FIRST_JOB_ID = 1000000000L;
+
+  private final JsonFactory jsonFactory = Utils.getDefaultJsonFactory();
+  private final FaultInjector faults;
+  private final Map<String, TransferJob> jobs = new ConcurrentHashMap<>();
+  // newest operation last
+  private final List<Operation> operations = new ArrayList<>();
+  private final AtomicLong nextJobId = new AtomicLong(FIRST_JOB_ID);
+  private final AtomicLong nextOperationId = new AtomicLong();
+  private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+  private HttpServer server;
+  private ExecutorService executor;
+
+  public FakeStsServer() {
+    this(new FaultInjector());
+  }
+
+  public FakeStsServer(FaultInjector faults) {
+    this.faults = faults;
+  }
+
+  /** Starts serving on a free port of localhost */
+  public synchronized FakeStsServer start() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext(API_PREFIX, this::handle);
+    server.start();
+    logger.info("Fake STS serving at " + getRootUrl());
+    return this;
+  }
+
+  public synchronized void stop() {
+    if (server != null) {
+      server.stop(0);
+      executor.shutdownNow();
+      server = null;
+    }
+  }
+
+  public String getRootUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/";
+  }
+
+  /**
+   * Points the STS clients of the application at this server. It has to be called before the
+   * workers create their clients, which they do once in their singletons.
+   */
+  public void install() {
+    install(ClientRegistry.getInstance());
+  }
+
+  void install(ClientRegistry registry) {
+    // never expires, so it is not refreshed against the real token endpoint
+    GoogleCredential credential =
+        new GoogleCredential()
+            .setAccessToken("fake-sts-token")
+            .setExpirationTimeMilliseconds(Long.MAX_VALUE);
+    registry.useStsEndpoint(getRootUrl(), credential);
+  }
+
+  public FaultInjector getFaults() {
+    return faults;
+  }
+
+  public Collection<TransferJob> getJobs() {
+    return jobs.values();
+  }
+
+  public TransferJob getJob(String name) {
+    return jobs.get(name);
+  }
+
+  public synchronized List<Operation> getOperations() {
+    return new ArrayList<>(operations);
+  }
+
+  /**
+   * Gets the number of requests served per method, e.g. "POST transferJobs", including the ones
+   * failed by error injection.
+   */
+  public Map<String, Integer> getRequestCounts() {
+    Map<String, Integer> counts = new HashMap<>();
+    requestCounts.forEach((method, count) -> counts.put(method, count.get()));
+    return counts;
+  }
+
+  /**
+   * Creates a finished operation for every enabled job.
+   *
+   * @param success whether the operations succeed or fail
+   * @return the created operations
+   */
+  public List<Operation> runEnabledJobs(boolean success) {
+    List<Operation> created = new ArrayList<>();
+    for (TransferJob job : jobs.values()) {
+      if ("ENABLED".equals(job.getStatus())) {
+        created.add(addOperation(job, success));
+      }
+    }
+    return created;
+  }
+
+  /** Creates a finished operation of the given job, started now */
+  public synchronized Operation addOperation(TransferJob job, boolean success) {
+    String jobId = job.getName().substring(job.getName().indexOf("/") + 1);
+    String now = Instant.now().toString();
+    Map<String, Object> metadata = new LinkedHashMap<>();
+    metadata.put("@type", "type.googleapis.com/google.storagetransfer.v1.TransferOperation");
+    metadata.put("name", "transferOperations/transferJob-" + jobId + "-" + nextOperationId.incrementAndGet());
+    metadata.put("projectId", job.getProjectId());
+    metadata.put("transferSpec", job.getTransferSpec());
+    metadata.put("startTime", now);
+    metadata.put("endTime", now);
+    metadata.put("status", success ? "SUCCESS" : "FAILED");
+    metadata.put("transferJobName", job.getName());
+
+    Operation operation =
+        new Operation().setName((String) metadata.get("name")).setDone(true).setMetadata(metadata);
+    if (success) {
+      Map<String, Object> response = new HashMap<>();
+      response.put("@type", "type.googleapis.com/google.protobuf.Empty");
+      operation.setResponse(response);
+    } else {
+      operation.setError(new Status().setCode(13).setMessage("Injected transfer failure"));
+    }
+    operations.add(operation);
+    return operation;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String method = exchange.getRequestMethod();
+      String override = exchange.getRequestHeaders().getFirst("X-HTTP-Method-Override");
+      if (override != null) {
+        method = override;
+      }
+      String path = exchange.getRequestURI().getPath().substring(API_PREFIX.length());
+      String collection = path.contains("/") ? path.substring(0, path.indexOf('/')) : path;
+      requestCounts
+          .computeIfAbsent(method + " " + collection, key -> new AtomicInteger())
+          .incrementAndGet();
+
+      faults.delay();
+      int errorStatus = faults.nextErrorStatus();
+      if (errorStatus != 0) {
+        sendError(exchange, errorStatus, "Injected error");
+        return;
+      }
+
+      Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+      if (method.equals("POST") && path.equals(JOBS)) {
+        createJob(exchange);
+      } else if (method.equals("GET") && collection.equals(JOBS)) {
+        getJob(exchange, path, query.get("projectId"));
+      } else if (method.equals("PATCH") && collection.equals(JOBS)) {
+        updateJob(exchange, path);
+      } else if (method.equals("GET") && path.equals(OPERATIONS)) {
+        listOperations(exchange, query);
+      } else {
+        sendError(exchange, 404, "Method not supported by the fake: " + method + " " + path);
+      }
+    } catch (RuntimeException e) {
+      logger.error("Fake STS failed to serve request", e);
+      sendError(exchange, 500, e.getMessage());
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void createJob(HttpExchange exchange) throws IOException {
+    TransferJob job = parse(exchange.getRequestBody(), TransferJob.class);
+    if (job.getProjectId() == null) {
+      sendError(exchange, 400, "Project ID is required");
+      return;
+    }
+    if (job.getName() == null) {
+      job.setName(JOBS + "/" + nextJobId.incrementAndGet());
+    } else if (jobs.containsKey(job.getName())) {
+      sendError(exchange, 409, "Transfer job already exists: " + job.getName());
+      return;
+    }
+    if (job.getStatus() == null) {
+      job.setStatus("ENABLED");
+    }
+    String now = Instant.now().toString();
+    job.setCreationTime(now);
+    job.setLastModificationTime(now);
+    jobs.put(job.getName(), job);
+    send(exchange, job);
+  }
+
+  private void getJob(HttpExchange exchange, String name, String projectId) throws IOException {
+    TransferJob job = jobs.get(name);
+    if (job == null || (projectId != null && !projectId.equals(job.getProjectId()))) {
+      sendError(exchange, 404, "Transfer job not found: " + name);
+      return;
+    }
+    send(exchange, job);
+  }
+
+  private void updateJob(HttpExchange exchange, String name) throws IOException {
+    UpdateTransferJobRequest request =
+        parse(exchange.getRequestBody(), UpdateTransferJobRequest.class);
+    TransferJob job = jobs.get(name);
+    if (job == null || !job.getProjectId().equals(request.getProjectId())) {
+      sendError(exchange, 404, "Transfer job not found: " + name);
+      return;
+    }
+    synchronized (job) {
+      TransferJob update = request.getTransferJob();
+      if (update.getDescription() != null) {
+        job.setDescription(update.getDescription());
+      }
+      if (update.getTransferSpec() != null) {
+        job.setTransferSpec(update.getTransferSpec());
+      }
+      if (update.getSchedule() != null) {
+        job.setSchedule(update.getSchedule());
+      }
+      if (update.getStatus() != null) {
+        job.setStatus(update.getStatus());
+      }
+      job.setLastModificationTime(Instant.now().toString());
+      send(exchange, job);
+    }
+  }
+
+  /** Lists the operations of the jobs in the filter newest first, paged by offset tokens */
+  private void listOperations(HttpExchange exchange, Map<String, String> query)
+      throws IOException {
+    GenericJson filter = jsonFactory.fromString(query.get("filter"), GenericJson.class);
+    Object projectId = filter.get("project_id");
+    Set<Object> jobNames = new HashSet<>();
+    if (filter.get("job_names") instanceof Collection) {
+      jobNames.addAll((Collection<?>) filter.get("job_names"));
+    }
+
+    List<Operation> matching = new ArrayList<>();
+    synchronized (this) {
+      for (int i = operations.size() - 1; i >= 0; i--) {
+        Map<String, Object> metadata = operations.get(i).getMetadata();
+        if (metadata.get("projectId").equals(projectId)
+            && (jobNames.isEmpty() || jobNames.contains(metadata.get("transferJobName")))) {
+          matching.add(operations.get(i));
+        }
+      }
+    }
+
+    int offset = query.containsKey("pageToken") ? Integer.parseInt(query.get("pageToken")) : 0;
+    int pageSize =
+        query.containsKey("pageSize") ? Integer.parseInt(query.get("pageSize")) : 256;
+    int end = Math.min(matching.size(), offset + pageSize);
+    ListOperationsResponse response = new ListOperationsResponse();
+    if (offset < end) {
+      response.setOperations(new ArrayList<>(matching.subList(offset, end)));
+    }
+    if (end < matching.size()) {
+      response.setNextPageToken(String.valueOf(end));
+    }
+    send(exchange, response);
+  }
+
+  private <T> T parse(InputStream body, Class<T> type) throws IOException {
+    return new JsonObjectParser(jsonFactory).parseAndClose(body, StandardCharsets.UTF_8, type);
+  }
+
+  private void send(HttpExchange exchange, Object body) throws IOException {
+    sendJson(exchange, 200, jsonFactory.toByteArray(body));
+  }
+
+  private void sendError(HttpExchange exchange, int code, String message) throws IOException {
+    GenericJson error = new GenericJson();
+    error.put("code", code);
+    error.put("message", message);
+    GenericJson body = new GenericJson();
+    body.put("error", error);
+    sendJson(exchange, code, jsonFactory.toByteArray(body));
+  }
+
+  private static void sendJson(HttpExchange exchange, int code, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+    exchange.sendResponseHeaders(code, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery)
+      throws UnsupportedEncodingException {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String parameter : rawQuery.split("&")) {
+      int equals = parameter.indexOf('=');
+      if (equals > 0) {
+        query.put(
+            URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+            URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+      }
+    }
+    return query;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
+import com.google.api.services.storagetransfer.v1.model.Operation;
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.api.services.storagetransfer.v1.model.UpdateTransferJobRequest;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FakeStsServerTest {
+
+  private FakeStsServer server;
+  private Storagetransfer client;
+
+  @Before
+  public void setup() throws IOException {
+    server = new FakeStsServer().start();
+    ClientRegistry registry = new ClientRegistry(new NetHttpTransport());
+    server.install(registry);
+    client = registry.getStsClient(registry.getCredential());
+  }
+
+  @After
+  public void teardown() {
+    server.stop();
+  }
+
+  @Test
+  public void jobsAreCreatedUpdatedAndValidated() throws IOException {
+    Instant createdAt = Instant.now().minusSeconds(60);
+    TransferJob enabled = createJob();
+    TransferJob disabled = createJob();
+    client
+        .transferJobs()
+        .patch(
+            disabled.getName(),
+            new UpdateTransferJobRequest()
+                .setProjectId("project")
+                .setTransferJob(new TransferJob().setStatus("DISABLED"))
+                .setUpdateTransferJobFieldMask("status"))
+        .execute();
+
+    assertEquals(1, server.runEnabledJobs(true).size());
+
+    List<RetentionJob> jobs = new ArrayList<>();
+    jobs.add(retentionJob(enabled.getName(), createdAt));
+    jobs.add(retentionJob(disabled.getName(), createdAt));
+    AtomicInteger requestCount = new AtomicInteger();
+    List<Operation> operations =
+        StsUtil.getStsJobOperations(client, "project", jobs, requestCount);
+
+    assertEquals(1, operations.size());
+    assertEquals(enabled.getName(), operations.get(0).getMetadata().get("transferJobName"));
+    assertEquals(1, requestCount.get());
+    TransferJob fetched =
+        client.transferJobs().get(disabled.getName()).setProjectId("project").execute();
+    assertEquals("DISABLED", fetched.getStatus());
+  }
+
+  @Test
+  public void injectedErrorsReachTheClient() throws IOException {
+    server.getFaults().setErrors(1, 400);
+
+    try {
+      createJob();
+      fail();
+    } catch (GoogleJsonResponseException e) {
+      assertEquals(400, e.getStatusCode());
+    }
+    assertEquals(1, (int) server.getRequestCounts().get("POST transferJobs"));
+  }
+
+  private TransferJob createJob() throws IOException {
+    TransferJob job =
+        client
+            .transferJobs()
+            .create(new TransferJob().setProjectId("project").setStatus("ENABLED"))
+            .execute();
+    assertNotNull(job.getName());
+    return job;
+  }
+
+  private static RetentionJob retentionJob(String name, Instant createdAt) {
+    RetentionJob job = new RetentionJob();
+    job.setName(name);
+    job.setCreatedAt(Timestamp.from(createdAt));
+    return job;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and error injection shared by the local stand-ins of STS, GCS and Pub/Sub. Every call
+ * into a stand-in first waits a latency drawn between the minimum and maximum, then fails with
+ * the configured error status at the configured rate.
+ */
+public class FaultInjector {
+
+  private final Random random;
+  private volatile long minLatencyMillis;
+  private volatile long maxLatencyMillis;
+  private volatile double errorRate;
+  private volatile int errorStatus = 503;
+
+  public FaultInjector() {
+    this(new Random());
+  }
+
+  /** Constructor taking the random source, to replay the same faults between runs */
+  public FaultInjector(Random random) {
+    this.random = random;
+  }
+
+  public FaultInjector setLatencyMillis(long minLatencyMillis, long maxLatencyMillis) {
+    if (minLatencyMillis < 0 || maxLatencyMillis < minLatencyMillis) {
+      throw new IllegalArgumentException("Invalid latency range");
+    }
+    this.minLatencyMillis = minLatencyMillis;
+    this.maxLatencyMillis = maxLatencyMillis;
+    return this;
+  }
+
+  /**
+   * Sets how often calls fail and with which HTTP status, e.g. 429 for throttling or 503 for an
+   * unavailable backend.
+   */
+  public FaultInjector setErrors(double errorRate, int errorStatus) {
+    if (errorRate < 0 || errorRate > 1) {
+      throw new IllegalArgumentException("Error rate must be between 0 and 1");
+    }
+    this.errorRate = errorRate;
+    this.errorStatus = errorStatus;
+    return this;
+  }
+
+  /** Waits the injected latency of one call */
+  public void delay() {
+    long latency = minLatencyMillis;
+    if (maxLatencyMillis > minLatencyMillis) {
+      synchronized (random) {
+        latency += (long) (random.nextDouble() * (maxLatencyMillis - minLatencyMillis));
+      }
+    }
+    if (latency > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(latency);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Decides whether one call fails.
+   *
+   * @return the HTTP status the call fails with, or 0 when it succeeds
+   */
+  public int nextErrorStatus() {
+    if (errorRate == 0) {
+      return 0;
+    }
+    synchronized (random) {
+      return random.nextDouble() < errorRate ? errorStatus : 0;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+
+package com.google.gcs.sdrs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.api.client.http.HttpRequestInitializer;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StsRateLimiterTest {
+
+  private long now;
+
+  @Before
+  public void setup() {
+    now = 0;
+  }
+
+  @Test
+  public void limitIsHalvedOncePerIntervalOnThrottling() {
+    StsRateLimiter limiter = new StsRateLimiter(true, 8, 1, 32, 1000, () -> now);
+
+    limiter.onResponse(429);
+    assertEquals(4, limiter.getConcurrencyLimit());
+    limiter.onResponse(503);
+    assertEquals(4, limiter.getConcurrencyLimit());
+
+    now += 1000;
+    limiter.onResponse(503);
+    assertEquals(2, limiter.getConcurrencyLimit());
+    for (int i = 0; i < 5; i++) {
+      now += 1000;
+      limiter.onResponse(429);
+    }
+    assertEquals(1, limiter.getConcurrencyLimit());
+  }
+
+  @Test
+  public void limitGrowsByOneAfterALimitOfSuccesses() {
+    StsRateLimiter limiter = new StsRateLimiter(true, 2, 1, 3, 1000, () -> now);
+
+    limiter.onResponse(200);
+    limiter.onResponse(200);
+    assertEquals(2, limiter.getConcurrencyLimit());
+    limiter.onResponse(200);
+    assertEquals(3, limiter.getConcurrencyLimit());
+    limiter.onResponse(200);
+    limiter.onResponse(404);
+    assertEquals(3, limiter.getConcurrencyLimit());
+  }
+
+  @Test
+  public void projectsTakeTurnsWhenWaiting() throws Exception {
+    StsRateLimiter limiter = new StsRateLimiter(true, 1, 1, 1, 1000, () -> now);
+    ExecutorService executor = Executors.newCachedThreadPool();
+    List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch blocker = new CountDownLatch(1);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      futures.add(executor.submit(() -> limiter.execute("blocker", () -> block(blocker))));
+      awaitInFlight(limiter);
+      for (String project : Arrays.asList("big", "big", "big", "small")) {
+        int waiting = limiter.getWaiting();
+        futures.add(executor.submit(() -> limiter.execute(project, () -> record(calls, project))));
+        awaitWaiting(limiter, waiting + 1);
+      }
+
+      blocker.countDown();
+      for (Future<String> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+
+      assertEquals(Arrays.asList("big", "small", "big", "big"), calls);
+      assertEquals(0, limiter.getInFlight());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void disabledLimiterPassesCallsThrough() throws Exception {
+    StsRateLimiter limiter = new StsRateLimiter(false, 1, 1, 1, 1000, () -> now);
+    HttpRequestInitializer initializer = request -> {};
+
+    assertEquals("done", limiter.execute("project", () -> "done"));
+    assertEquals(0, limiter.getInFlight());
+    assertSame(initializer, limiter.observe(initializer));
+  }
+
+  private static String block(CountDownLatch blocker) throws IOException {
+    try {
+      blocker.await();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    }
+    return "blocker";
+  }
+
+  private static String record(List<String> calls, String project) {
+    calls.add(project);
+    return project;
+  }
+
+  private static void awaitInFlight(StsRateLimiter limiter) throws InterruptedException {
+    while (limiter.getInFlight() == 0) {
+      Thread.sleep(1);
+    }
+  }
+
+  private static void awaitWaiting(StsRateLimiter limiter, int waiting)
+      throws InterruptedException {
+    while (limiter.getWaiting() < waiting) {
+      Thread.sleep(1);
+    }
+  }
+}
@@ -21,12 +21,22 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import com.google.api.client.googleapis.util.Utils;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.Json;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
 import com.google.api.client.util.BackOff;
 import com.google.api.client.util.ExponentialBackOff;
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
 import com.google.api.services.storagetransfer.v1.model.Date;
 import com.google.api.services.storagetransfer.v1.model.ObjectConditions;
+import com.google.api.services.storagetransfer.v1.model.Operation;
 import com.google.api.services.storagetransfer.v1.model.Schedule;
 import com.google.api.services.storagetransfer.v1.model.TimeOfDay;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.sql.Timestamp;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -34,6 +44,7 @@ import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 
 public class StsUtilTest {
@@ -183,4 +194,67 @@ public class StsUtilTest {
       e.printStackTrace();
     }
   }
+
+  @Test
+  public void getStsJobOperationsListsManyJobsPerRequest() {
+    List<String> urls = new ArrayList<>();
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            urls.add(url);
+            String content =
+                url.contains("pageToken=next")
+                    ? operationsPage(null, operation("a", "01"), operation("b", "03"))
+                    : operationsPage(
+                        "next",
+                        operation("a", "04"),
+                        operation("b", "05"),
+                        operation("a", "03"),
+                        operation("unknown", "03"));
+            return new MockLowLevelHttpRequest()
+                .setResponse(
+                    new MockLowLevelHttpResponse()
+                        .setContentType(Json.MEDIA_TYPE)
+                        .setContent(content));
+          }
+        };
+    Storagetransfer client =
+        new Storagetransfer.Builder(transport, Utils.getDefaultJsonFactory(), null).build();
+    List<RetentionJob> jobs = new ArrayList<>();
+    jobs.add(retentionJob("a", "02"));
+    jobs.add(retentionJob("b", "02"));
+    jobs.add(retentionJob("a", "04"));
+    AtomicInteger requestCount = new AtomicInteger();
+
+    List<Operation> operations = StsUtil.getStsJobOperations(client, "project", jobs, requestCount);
+
+    assertEquals(2, requestCount.get());
+    assertEquals(2, urls.size());
+    assertEquals(2, operations.size());
+    assertEquals("transferOperations/transferJob-a-03", operations.get(0).getName());
+    assertEquals("transferOperations/transferJob-b-03", operations.get(1).getName());
+  }
+
+  private static RetentionJob retentionJob(String stsJobId, String day) {
+    RetentionJob job = new RetentionJob();
+    job.setName("transferJobs/" + stsJobId);
+    job.setCreatedAt(Timestamp.from(Instant.parse("2019-01-" + day + "T00:00:00Z")));
+    return job;
+  }
+
+  private static String operation(String stsJobId, String day) {
+    return String.format(
+        "{\"name\": \"transferOperations/transferJob-%s-%s\", \"metadata\": "
+            + "{\"transferJobName\": \"transferJobs/%s\", "
+            + "\"startTime\": \"2019-01-%sT00:00:00Z\"}}",
+        stsJobId, day, stsJobId, day);
+  }
+
+  private static String operationsPage(String nextPageToken, String... operations) {
+    return String.format(
+        "{\"operations\": [%s]%s}",
+        String.join(", ", operations),
+        nextPageToken == null ? "" : String.format(", \"nextPageToken\": \"%s\"", nextPageToken));
+  }
 }